@@ -8,6 +8,7 @@ export interface Customer {
   lastName: string;
   birthDate: Date;
   gender: "MALE" | "FEMALE" | "OTHER";
+  version?: number; // Sent back on updates, so that concurrent changes are detected
 }
 
 // Adapt API customer to our app model
@@ -17,7 +18,8 @@ export const adaptCustomerFromAPI = (apiCustomer: APICustomer): Customer => {
     firstName: apiCustomer.firstName,
     lastName: apiCustomer.lastName,
     birthDate: apiCustomer.birthDate ? new Date(apiCustomer.birthDate) : new Date(),
-    gender: mapGenderFromAPI(apiCustomer.gender as GenderAPI)
+    gender: mapGenderFromAPI(apiCustomer.gender as GenderAPI),
+    version: apiCustomer.version
   };
 };
 
@@ -28,7 +30,8 @@ export const adaptCustomerToAPI = (customer: Customer): APICustomer => {
     firstName: customer.firstName,
     lastName: customer.lastName,
     birthDate: customer.birthDate.toISOString().split('T')[0],
-    gender: mapGenderToAPI(customer.gender as any)
+    gender: mapGenderToAPI(customer.gender as any),
+    version: customer.version
   };
 };
 
@@ -12,6 +12,7 @@ export interface Reading {
   substitute: boolean;
   meterCount: number;
   kindOfMeter: string; // 'electricity', 'water', 'heating'
+  version?: number; // Sent back on updates, so that concurrent changes are detected
 }
 
 // Adapt API reading to our app model
@@ -24,7 +25,8 @@ export const adaptReadingFromAPI = (apiReading: APIReading): Reading => {
     meterId: apiReading.meterId,
     substitute: apiReading.substitute,
     meterCount: apiReading.meterCount,
-    kindOfMeter: mapMeterTypeFromAPI(apiReading.kindOfMeter)
+    kindOfMeter: mapMeterTypeFromAPI(apiReading.kindOfMeter),
+    version: apiReading.version
   };
 };
 
@@ -38,7 +40,8 @@ export const adaptReadingToAPI = (reading: Reading): APIReading => {
     meterId: reading.meterId,
     substitute: reading.substitute,
     meterCount: reading.meterCount,
-    kindOfMeter: mapMeterTypeToAPI(reading.kindOfMeter)
+    kindOfMeter: mapMeterTypeToAPI(reading.kindOfMeter),
+    version: reading.version
   };
 };
 
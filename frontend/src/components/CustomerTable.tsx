@@ -1,15 +1,16 @@
 
-import React, { useState } from 'react';
+import React from 'react';
 import { 
   Table, TableBody, TableCell, TableHead, TableHeader, TableRow 
 } from '@/components/ui/table';
 import { 
-  Pagination, PaginationContent, PaginationItem, PaginationLink, 
+  Pagination, PaginationContent, PaginationItem, 
   PaginationNext, PaginationPrevious 
 } from '@/components/ui/pagination';
 import { Button } from '@/components/ui/button';
-import { Edit, Trash2 } from 'lucide-react';
+import { ArrowDown, ArrowUp, Edit, Trash2 } from 'lucide-react';
 import { Customer } from '@/adapters/customer.adapter';
+import { CustomerSortAPI } from '@/types/api';
 
 /**
  * Props for CustomerTable component
@@ -19,68 +20,49 @@ interface CustomerTableProps {
   onEdit: (customer: Customer) => void;
   onDelete: (customer: Customer) => void;
   isLoading: boolean;
+  sort: CustomerSortAPI;
+  direction: 'asc' | 'desc';
+  onSort: (column: CustomerSortAPI) => void;
+  hasPreviousPage: boolean;
+  hasNextPage: boolean;
+  onPreviousPage: () => void;
+  onNextPage: () => void;
 }
 
 /**
  * CustomerTable Component
  * 
- * Displays customer data in a paginated table with edit/delete actions
+ * Displays one page of customers with edit/delete actions. Sorting and paging are
+ * done by the server; the table only reports which header or page button was clicked.
  */
 const CustomerTable: React.FC<CustomerTableProps> = ({ 
   customers, 
   onEdit, 
   onDelete,
-  isLoading 
+  isLoading,
+  sort,
+  direction,
+  onSort,
+  hasPreviousPage,
+  hasNextPage,
+  onPreviousPage,
+  onNextPage
 }) => {
-  // Pagination state
-  const [currentPage, setCurrentPage] = useState(1);
-  const itemsPerPage = 10;
-  
-  // Calculate pagination details
-  const totalPages = Math.ceil(customers.length / itemsPerPage);
-  const startIndex = (currentPage - 1) * itemsPerPage;
-  const paginatedCustomers = customers.slice(startIndex, startIndex + itemsPerPage);
-  
-  // Handle page change
-  const handlePageChange = (page: number) => {
-    if (page >= 1 && page <= totalPages) {
-      setCurrentPage(page);
-    }
-  };
-  
-  // Generate pagination items
-  const renderPaginationItems = () => {
-    const items = [];
-    const maxVisiblePages = 5;
-    
-    // Calculate range of pages to display
-    let startPage = Math.max(1, currentPage - Math.floor(maxVisiblePages / 2));
-    let endPage = Math.min(totalPages, startPage + maxVisiblePages - 1);
-    
-    // Adjust start page if end range is maxed out
-    if (endPage - startPage + 1 < maxVisiblePages) {
-      startPage = Math.max(1, endPage - maxVisiblePages + 1);
-    }
-    
-    // Generate page links
-    for (let i = startPage; i <= endPage; i++) {
-      items.push(
-        <PaginationItem key={i}>
-          <PaginationLink
-            isActive={currentPage === i}
-            onClick={(e) => {
-              e.preventDefault();
-              handlePageChange(i);
-            }}
-          >
-            {i}
-          </PaginationLink>
-        </PaginationItem>
-      );
-    }
-    
-    return items;
-  };
+  // Header that sorts by its column, showing the direction when it is the current one
+  const sortableHead = (column: CustomerSortAPI, label: string) => (
+    <TableHead>
+      <button
+        type="button"
+        className="flex items-center gap-1"
+        onClick={() => onSort(column)}
+      >
+        {label}
+        {sort === column && (direction === 'asc'
+          ? <ArrowUp className="h-3 w-3" />
+          : <ArrowDown className="h-3 w-3" />)}
+      </button>
+    </TableHead>
+  );
 
   return (
     <div className="space-y-4">
@@ -90,16 +72,16 @@ const CustomerTable: React.FC<CustomerTableProps> = ({
           <TableHeader>
             <TableRow>
               <TableHead>UUID</TableHead>
-              <TableHead>First Name</TableHead>
-              <TableHead>Last Name</TableHead>
-              <TableHead>Birth Date</TableHead>
+              {sortableHead('firstName', 'First Name')}
+              {sortableHead('lastName', 'Last Name')}
+              {sortableHead('birthDate', 'Birth Date')}
               <TableHead>Gender</TableHead>
               <TableHead className="text-right">Actions</TableHead>
             </TableRow>
           </TableHeader>
           <TableBody>
-            {paginatedCustomers.length > 0 ? (
-              paginatedCustomers.map((customer) => (
+            {customers.length > 0 ? (
+              customers.map((customer) => (
                 <TableRow key={customer.uuid}>
                   <TableCell className="font-mono text-xs">{customer.uuid}</TableCell>
                   <TableCell>{customer.firstName}</TableCell>
@@ -148,28 +130,26 @@ const CustomerTable: React.FC<CustomerTableProps> = ({
       </div>
       
       {/* Pagination controls */}
-      {totalPages > 1 && (
+      {(hasPreviousPage || hasNextPage) && (
         <Pagination>
           <PaginationContent>
             <PaginationItem>
               <PaginationPrevious 
                 onClick={(e) => {
                   e.preventDefault();
-                  handlePageChange(currentPage - 1);
+                  onPreviousPage();
                 }}
-                className={currentPage === 1 ? "pointer-events-none opacity-50" : ""}
+                className={!hasPreviousPage ? "pointer-events-none opacity-50" : ""}
               />
             </PaginationItem>
             
-            {renderPaginationItems()}
-            
             <PaginationItem>
               <PaginationNext 
                 onClick={(e) => {
                   e.preventDefault();
-                  handlePageChange(currentPage + 1);
+                  onNextPage();
                 }}
-                className={currentPage === totalPages ? "pointer-events-none opacity-50" : ""}
+                className={!hasNextPage ? "pointer-events-none opacity-50" : ""}
               />
             </PaginationItem>
           </PaginationContent>
@@ -0,0 +1,51 @@
+import { useQuery } from "@tanstack/react-query";
+import { getConsumption, getSummary } from "../services/api";
+import { adaptReadingsFromAPI } from "../adapters/reading.adapter";
+import { ConsumptionPeriod, KindOfMeter } from "../types/api";
+
+export const useAnalytics = () => {
+  // Query to fetch the dashboard figures, computed by the server
+  const useSummary = (filters?: {
+    start?: string;
+    end?: string;
+  }) => {
+    return useQuery({
+      queryKey: ["analytics", "summary", filters],
+      queryFn: async () => {
+        const response = await getSummary(filters);
+        return {
+          ...response.summary,
+          recent: adaptReadingsFromAPI(response.summary.recent),
+        };
+      },
+    });
+  };
+
+  // Query to fetch the consumption of one kind of meter over all customers
+  const useConsumption = (filters: {
+    kindOfMeter: KindOfMeter;
+    start?: string;
+    end?: string;
+    groupBy?: ConsumptionPeriod;
+  }) => {
+    return useQuery({
+      queryKey: ["analytics", "consumption", filters],
+      queryFn: async () => {
+        const response = await getConsumption({
+          ...filters,
+          groupBy: filters.groupBy ?? 'month',
+          byCustomer: false,
+        });
+        return response.consumption.map((entry) => ({
+          date: entry.period ?? '',
+          value: entry.consumption,
+        }));
+      },
+    });
+  };
+
+  return {
+    useSummary,
+    useConsumption,
+  };
+};
@@ -1,6 +1,6 @@
 
-import { useMutation, useQuery, useQueryClient } from "@tanstack/react-query";
-import { createCustomer, deleteCustomer, getCustomer, getCustomers, updateCustomer } from "../services/api";
+import { keepPreviousData, useMutation, useQuery, useQueryClient } from "@tanstack/react-query";
+import { createCustomer, deleteCustomer, getCustomer, getCustomerPage, getCustomers, updateCustomer } from "../services/api";
 import { Customer } from "../adapters/customer.adapter";
 import { adaptCustomerFromAPI, adaptCustomersFromAPI, adaptCustomerToAPI } from "../adapters/customer.adapter";
 import { toast } from "sonner";
@@ -33,6 +33,21 @@ export const useCustomers = () => {
     });
   };
 
+  // Query to fetch one page of customers, searched, sorted and paged by the server
+  const useCustomerPage = (params: Parameters<typeof getCustomerPage>[0]) => {
+    return useQuery({
+      queryKey: ["customers", "page", params],
+      queryFn: async () => {
+        const response = await getCustomerPage(params);
+        return {
+          customers: adaptCustomersFromAPI(response.customers),
+          next: response.next,
+        };
+      },
+      placeholderData: keepPreviousData,
+    });
+  };
+
   // Mutation to create a customer
   const createCustomerMutation = useMutation({
     mutationFn: async (customerData: Omit<Customer, "uuid">) => {
@@ -93,6 +108,7 @@ export const useCustomers = () => {
     isLoading,
     error,
     useCustomer,
+    useCustomerPage,
     createCustomer: createCustomerMutation.mutate,
     updateCustomer: updateCustomerMutation.mutate,
     deleteCustomer: deleteCustomerMutation.mutate,
@@ -73,6 +73,7 @@ export const useReadings = () => {
     },
     onSuccess: () => {
       queryClient.invalidateQueries({ queryKey: ["readings"] });
+      queryClient.invalidateQueries({ queryKey: ["analytics"] });
       toast.success("Reading created successfully");
     },
     onError: (error) => {
@@ -89,6 +90,7 @@ export const useReadings = () => {
     },
     onSuccess: (_, variables) => {
       queryClient.invalidateQueries({ queryKey: ["readings"] });
+      queryClient.invalidateQueries({ queryKey: ["analytics"] });
       queryClient.invalidateQueries({ queryKey: ["reading", variables.uuid] });
       toast.success("Reading updated successfully");
     },
@@ -105,6 +107,7 @@ export const useReadings = () => {
     },
     onSuccess: (uuid) => {
       queryClient.invalidateQueries({ queryKey: ["readings"] });
+      queryClient.invalidateQueries({ queryKey: ["analytics"] });
       queryClient.invalidateQueries({ queryKey: ["reading", uuid] });
       toast.success("Reading deleted successfully");
     },
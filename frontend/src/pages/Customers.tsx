@@ -1,6 +1,7 @@
 
 import React, { useState, useCallback, useEffect } from "react";
 import { Input } from "@/components/ui/input";
+import { Select, SelectContent, SelectItem, SelectTrigger, SelectValue } from "@/components/ui/select";
 import { Button } from "@/components/ui/button";
 import { Card, CardContent, CardHeader, CardTitle } from "@/components/ui/card";
 import { Search, Plus, Loader2 } from "lucide-react";
@@ -11,19 +12,30 @@ import CustomerTable from "@/components/CustomerTable";
 import CustomerDialog from "@/components/CustomerDialog";
 import DeleteConfirmation from "@/components/DeleteConfirmation";
 import { toast } from "sonner";
+import { CustomerSortAPI, GenderAPI } from "@/types/api";
+
+const PAGE_SIZE = 10;
 
 /**
  * Customers Page Component
  * 
  * Main page for customer management with CRUD operations
  * Features include:
- * - Searchable, paginated customer table
+ * - Customer table searched, sorted and paged by the server
  * - Create, update, and delete functionality
  * - Debounced search for better performance
  */
 const CustomersPage = () => {
   // State for search, dialog visibility and editing
   const [searchTerm, setSearchTerm] = useState("");
+  const [genderFilter, setGenderFilter] = useState<GenderAPI | "ALL">("ALL");
+  const [bornFrom, setBornFrom] = useState("");
+  const [bornTo, setBornTo] = useState("");
+  const [sort, setSort] = useState<CustomerSortAPI>("lastName");
+  const [direction, setDirection] = useState<"asc" | "desc">("asc");
+  // Cursors of the pages before the current one, and that of the current one
+  const [cursors, setCursors] = useState<string[]>([]);
+  const [cursor, setCursor] = useState<string | undefined>(undefined);
   const [isCreateDialogOpen, setIsCreateDialogOpen] = useState(false);
   const [isEditDialogOpen, setIsEditDialogOpen] = useState(false);
   const [isDeleteDialogOpen, setIsDeleteDialogOpen] = useState(false);
@@ -32,11 +44,9 @@ const CustomersPage = () => {
   // Debounced search term to reduce API calls
   const debouncedSearchTerm = useDebounce(searchTerm, 300);
 
-  // Get customers and mutation functions from hook
+  // Get mutation functions from hook
   const { 
-    customers,
-    isLoading, 
-    error,
+    useCustomerPage,
     createCustomer,
     updateCustomer,
     deleteCustomer,
@@ -45,17 +55,45 @@ const CustomersPage = () => {
     deleteCustomerLoading
   } = useCustomers();
 
-  // Filter customers based on search term
-  const filteredCustomers = React.useMemo(() => {
-    return customers.filter(customer => {
-      const searchLower = debouncedSearchTerm.toLowerCase();
-      return (
-        customer.uuid.toLowerCase().includes(searchLower) ||
-        customer.firstName.toLowerCase().includes(searchLower) ||
-        customer.lastName.toLowerCase().includes(searchLower)
-      );
-    });
-  }, [customers, debouncedSearchTerm]);
+  // Another search or order starts again at the first page
+  useEffect(() => {
+    setCursors([]);
+    setCursor(undefined);
+  }, [debouncedSearchTerm, genderFilter, bornFrom, bornTo, sort, direction]);
+
+  const { data: page, isLoading } = useCustomerPage({
+    search: debouncedSearchTerm.trim() || undefined,
+    gender: genderFilter === "ALL" ? undefined : genderFilter,
+    bornFrom: bornFrom || undefined,
+    bornTo: bornTo || undefined,
+    sort,
+    direction,
+    limit: PAGE_SIZE,
+    after: cursor,
+  });
+
+  const handleSort = useCallback((column: CustomerSortAPI) => {
+    if (column === sort) {
+      setDirection(direction === "asc" ? "desc" : "asc");
+    } else {
+      setSort(column);
+      setDirection("asc");
+    }
+  }, [sort, direction]);
+
+  const handleNextPage = useCallback(() => {
+    if (page?.next) {
+      setCursors([...cursors, cursor ?? ""]);
+      setCursor(page.next);
+    }
+  }, [page, cursors, cursor]);
+
+  const handlePreviousPage = useCallback(() => {
+    if (cursors.length > 0) {
+      setCursor(cursors[cursors.length - 1] || undefined);
+      setCursors(cursors.slice(0, -1));
+    }
+  }, [cursors]);
 
   /**
    * Handle creating a new customer
@@ -96,7 +134,8 @@ const CustomersPage = () => {
         firstName: data.firstName,
         lastName: data.lastName,
         birthDate: new Date(data.birthDate),
-        gender: data.gender
+        gender: data.gender,
+        version: selectedCustomer.version
       });
       setIsEditDialogOpen(false);
       toast.success("Customer updated successfully");
@@ -157,23 +196,61 @@ const CustomersPage = () => {
             <div className="relative">
               <Search className="absolute left-2.5 top-2.5 h-4 w-4 text-muted-foreground" />
               <Input
-                placeholder="Search by UUID, name..."
+                placeholder="Search by first or last name..."
                 className="pl-8"
                 value={searchTerm}
                 onChange={(e) => setSearchTerm(e.target.value)}
               />
             </div>
             <p className="text-xs text-muted-foreground mt-1">
-              Search updates after typing pauses (300ms debounce)
+              Names starting with the search; updates after typing pauses (300ms debounce)
             </p>
           </div>
 
+          {/* Gender and birth date filters */}
+          <div className="mb-6 grid grid-cols-1 md:grid-cols-3 gap-4">
+            <Select
+              value={genderFilter}
+              onValueChange={(value) => setGenderFilter(value as GenderAPI | "ALL")}
+            >
+              <SelectTrigger>
+                <SelectValue placeholder="All genders" />
+              </SelectTrigger>
+              <SelectContent>
+                <SelectItem value="ALL">All genders</SelectItem>
+                <SelectItem value={GenderAPI.M}>Male</SelectItem>
+                <SelectItem value={GenderAPI.W}>Female</SelectItem>
+                <SelectItem value={GenderAPI.D}>Diverse</SelectItem>
+                <SelectItem value={GenderAPI.U}>Unknown</SelectItem>
+              </SelectContent>
+            </Select>
+            <Input
+              type="date"
+              aria-label="Born from"
+              value={bornFrom}
+              onChange={(e) => setBornFrom(e.target.value)}
+            />
+            <Input
+              type="date"
+              aria-label="Born to"
+              value={bornTo}
+              onChange={(e) => setBornTo(e.target.value)}
+            />
+          </div>
+
           {/* Customer data table */}
           <CustomerTable 
-            customers={filteredCustomers} 
+            customers={page?.customers ?? []} 
             onEdit={handleEditCustomer}
             onDelete={handleDeleteClick}
             isLoading={isLoading}
+            sort={sort}
+            direction={direction}
+            onSort={handleSort}
+            hasPreviousPage={cursors.length > 0}
+            hasNextPage={!!page?.next}
+            onPreviousPage={handlePreviousPage}
+            onNextPage={handleNextPage}
           />
         </CardContent>
       </Card>
@@ -7,202 +7,50 @@ import { Label } from "@/components/ui/label";
 import { DatePickerWithRange } from "@/components/ui/date-range-picker";
 import { Download, File, FileText } from "lucide-react"; // Fixed imports - removed FileJson and FileCsv
 import { toast } from "sonner";
-import { useCustomers } from "@/hooks/useCustomers";
-import { useReadings } from "@/hooks/useReadings";
 import { addDays } from "date-fns";
 import { DateRange } from "react-day-picker";
-import { adaptCustomerToAPI } from "@/adapters/customer.adapter";
-import { adaptReadingToAPI } from "@/adapters/reading.adapter";
+import { getExportUrl } from "@/services/api";
+import { KindOfMeter } from "@/types/api";
 
 /**
  * Export Page Component
  * 
- * Provides functionality to export customer and reading data in various formats (CSV, JSON, XML)
+ * Provides functionality to export customer and reading data in various formats (CSV, NDJSON, XML)
  * Allows filtering by date range and meter type for readings
+ * The files are streamed by the server, so exports are not limited by what fits into the browser
  */
 const ExportPage = () => {
   // State for tracking export options
   const [dataType, setDataType] = useState<string | undefined>(undefined);
   const [meterType, setMeterType] = useState<string | undefined>(undefined);
-  const [exportFormat, setExportFormat] = useState<string>("csv");
+  const [exportFormat, setExportFormat] = useState<'csv' | 'ndjson' | 'xml'>("csv");
   const [date, setDate] = useState<DateRange | undefined>({
     from: new Date(),
     to: addDays(new Date(), 30),
   });
 
-  // Fetch data using hooks
-  const { customers } = useCustomers();
-  const { useFilteredReadings } = useReadings();
-  
-  // Get readings with optional filters
-  const { data: readings = [] } = useFilteredReadings({
-    kindOfMeter: meterType,
-    start: date?.from ? date.from.toISOString().split('T')[0] : undefined,
-    end: date?.to ? date.to.toISOString().split('T')[0] : undefined
-  });
-
-  /**
-   * Generate CSV content from data array
-   * @param data Array of objects to convert to CSV
-   * @returns CSV formatted string
-   */
-  const generateCSV = (data: any[]): string => {
-    if (data.length === 0) return '';
-    
-    // Extract headers from first item
-    const headers = Object.keys(data[0]);
-    
-    // Build CSV header row
-    let csv = headers.join(',') + '\n';
-    
-    // Build data rows
-    data.forEach(item => {
-      const row = headers.map(header => {
-        const value = item[header];
-        
-        // Handle different types of values
-        if (value === null || value === undefined) {
-          return '';
-        } else if (typeof value === 'object') {
-          if (value instanceof Date) {
-            return value.toISOString().split('T')[0];
-          } else {
-            // Return stringified version wrapped in quotes
-            return `"${JSON.stringify(value).replace(/"/g, '""')}"`;
-          }
-        }
-        
-        // Convert to string and handle commas
-        return `"${String(value).replace(/"/g, '""')}"`;
-      }).join(',');
-      
-      csv += row + '\n';
-    });
-    
-    return csv;
-  };
-
-  /**
-   * Generate XML data from object array
-   * @param data Array of objects to convert to XML
-   * @param rootElement Name of the root XML element
-   * @param itemElement Name of each item element
-   * @returns XML formatted string
-   */
-  const generateXML = (data: any[], rootElement: string, itemElement: string): string => {
-    if (data.length === 0) return `<?xml version="1.0" encoding="UTF-8"?><${rootElement}></${rootElement}>`;
-    
-    let xml = `<?xml version="1.0" encoding="UTF-8"?>\n<${rootElement}>\n`;
-    
-    data.forEach(item => {
-      xml += `  <${itemElement}>\n`;
-      
-      // Process each property
-      Object.entries(item).forEach(([key, value]) => {
-        if (value === null || value === undefined) {
-          xml += `    <${key}></${key}>\n`;
-        } else if (typeof value === 'object') {
-          if (value instanceof Date) {
-            xml += `    <${key}>${value.toISOString().split('T')[0]}</${key}>\n`;
-          } else {
-            // For nested objects, stringify them (simplification)
-            xml += `    <${key}>${JSON.stringify(value).replace(/</g, '&lt;').replace(/>/g, '&gt;')}</${key}>\n`;
-          }
-        } else {
-          // Escape XML special characters
-          const stringValue = String(value).replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;');
-          xml += `    <${key}>${stringValue}</${key}>\n`;
-        }
-      });
-      
-      xml += `  </${itemElement}>\n`;
-    });
-    
-    xml += `</${rootElement}>`;
-    
-    return xml;
-  };
-
   /**
    * Handle export data based on selected options
-   * Creates and downloads the export file
+   * Lets the browser download the file from the export endpoint
    */
   const handleExport = () => {
-    try {
-      let exportData: any[] = [];
-      let filename = '';
-      let rootElement = '';
-      let itemElement = '';
-      
-      // Prepare data based on selection
-      if (dataType === 'customers') {
-        exportData = customers.map(customer => adaptCustomerToAPI(customer));
-        filename = 'customers';
-        rootElement = 'customers';
-        itemElement = 'customer';
-      } else if (dataType === 'readings') {
-        exportData = readings.map(reading => adaptReadingToAPI(reading));
-        filename = 'readings';
-        rootElement = 'readings';
-        itemElement = 'reading';
-        
-        // If meter type is specified, add to filename
-        if (meterType) {
-          filename += `_${meterType}`;
-        }
-      } else {
-        toast.error("Please select a data type to export");
-        return;
-      }
-      
-      // Add date range to filename if available
-      if (date?.from) {
-        const dateStr = date.from.toISOString().split('T')[0];
-        filename += `_${dateStr}`;
-        
-        if (date.to) {
-          const toStr = date.to.toISOString().split('T')[0];
-          filename += `_to_${toStr}`;
-        }
-      }
-      
-      let content: string;
-      let mimeType: string;
-      
-      // Generate content based on format
-      if (exportFormat === 'csv') {
-        content = generateCSV(exportData);
-        mimeType = 'text/csv';
-        filename += '.csv';
-      } else if (exportFormat === 'json') {
-        content = JSON.stringify(exportData, null, 2);
-        mimeType = 'application/json';
-        filename += '.json';
-      } else if (exportFormat === 'xml') {
-        content = generateXML(exportData, rootElement, itemElement);
-        mimeType = 'text/xml';
-        filename += '.xml';
-      } else {
-        toast.error("Unsupported export format");
-        return;
-      }
-      
-      // Create download link
-      const blob = new Blob([content], { type: mimeType });
-      const url = URL.createObjectURL(blob);
-      const a = document.createElement('a');
-      a.href = url;
-      a.download = filename;
-      a.click();
-      
-      // Clean up
-      URL.revokeObjectURL(url);
-      
-      toast.success(`Successfully exported ${exportData.length} records`);
-      
-    } catch (error: any) {
-      toast.error(`Export failed: ${error.message}`);
+    if (dataType !== 'customers' && dataType !== 'readings') {
+      toast.error("Please select a data type to export");
+      return;
     }
+
+    const url = getExportUrl(dataType, exportFormat, {
+      kindOfMeter: meterType as KindOfMeter | undefined,
+      start: date?.from ? date.from.toISOString().split('T')[0] : undefined,
+      end: date?.to ? date.to.toISOString().split('T')[0] : undefined
+    });
+
+    // The server names the file in its Content-Disposition header
+    const a = document.createElement('a');
+    a.href = url;
+    a.click();
+
+    toast.success("Export started");
   };
 
   return (
@@ -278,11 +126,11 @@ const ExportPage = () => {
                 <File className="mr-2 h-4 w-4" /> CSV
               </Button>
               <Button 
-                variant={exportFormat === 'json' ? 'default' : 'outline'}
+                variant={exportFormat === 'ndjson' ? 'default' : 'outline'}
                 className="flex-1"
-                onClick={() => setExportFormat('json')}
+                onClick={() => setExportFormat('ndjson')}
               >
-                <File className="mr-2 h-4 w-4" /> JSON
+                <File className="mr-2 h-4 w-4" /> NDJSON
               </Button>
               <Button 
                 variant={exportFormat === 'xml' ? 'default' : 'outline'}
@@ -333,16 +181,16 @@ const ExportPage = () => {
             <Card className="cursor-pointer hover:bg-muted/50" onClick={() => {
               setDataType('readings');
               setMeterType('STROM');
-              setExportFormat('json');
+              setExportFormat('ndjson');
               toast.success("Template applied: Electricity Readings");
             }}>
               <CardHeader className="pb-2">
                 <CardTitle className="text-lg flex items-center">
-                  <File className="mr-2 h-4 w-4" /> Electricity Readings (JSON)
+                  <File className="mr-2 h-4 w-4" /> Electricity Readings (NDJSON)
                 </CardTitle>
               </CardHeader>
               <CardContent className="text-sm text-muted-foreground">
-                Export all electricity meter readings in JSON format.
+                Export all electricity meter readings as JSON, one reading per line.
               </CardContent>
             </Card>
             
@@ -162,6 +162,7 @@ const MetersPage = () => {
         substitute: data.substitute,
         comment: data.comment || null,
         customer: selectedCustomer || null,
+        version: selectedReading.version,
       });
       
       setIsEditDialogOpen(false);
@@ -5,11 +5,13 @@ import { Button } from "@/components/ui/button";
 import { Tabs, TabsContent, TabsList, TabsTrigger } from "@/components/ui/tabs";
 import { useNavigate } from 'react-router-dom';
 import { useCustomers } from '@/hooks/useCustomers';
-import { useReadings } from '@/hooks/useReadings';
+import { useAnalytics } from '@/hooks/useAnalytics';
+import ConsumptionChart from '@/components/Dashboard/ConsumptionChart';
+import { KindOfMeter } from '@/types/api';
 import { Calendar } from "lucide-react";
 import { DateRange } from "react-day-picker";
 import { DatePickerWithRange } from "@/components/ui/date-range-picker";
-import { format, subDays } from "date-fns";
+import { endOfMonth, format, startOfMonth, subDays } from "date-fns";
 
 /**
  * Dashboard Page Component
@@ -26,28 +28,33 @@ const Dashboard = () => {
     to: new Date()
   });
 
-  // Get customers and readings data
-  const { customers, isLoading: customersLoading } = useCustomers();
-  const { useFilteredReadings } = useReadings();
-  const { data: readings = [], isLoading: readingsLoading } = useFilteredReadings({
+  const range = {
     start: dateRange?.from ? format(dateRange.from, 'yyyy-MM-dd') : undefined,
     end: dateRange?.to ? format(dateRange.to, 'yyyy-MM-dd') : undefined
-  });
+  };
+
+  // Get customers and the reading figures; the server aggregates the readings
+  const { customers, isLoading: customersLoading } = useCustomers();
+  const { useSummary, useConsumption } = useAnalytics();
+  const { data: summary, isLoading: readingsLoading } = useSummary(range);
+  // The monthly charts cover whole months, which the server reads from its per month aggregate
+  const months = {
+    start: dateRange?.from ? format(startOfMonth(dateRange.from), 'yyyy-MM-dd') : undefined,
+    end: dateRange?.to ? format(endOfMonth(dateRange.to), 'yyyy-MM-dd') : undefined
+  };
+  const { data: electricity = [] } = useConsumption({ ...months, kindOfMeter: KindOfMeter.STROM });
+  const { data: water = [] } = useConsumption({ ...months, kindOfMeter: KindOfMeter.WASSER });
+  const { data: heating = [] } = useConsumption({ ...months, kindOfMeter: KindOfMeter.HEIZUNG });
 
   // Calculate summary metrics
-  const customerCount = customers.length;
-  const readingCount = readings.length;
+  const customerCount = summary?.customers ?? customers.length;
+  const readingCount = summary?.readings ?? 0;
   
   // Count meter types
-  const meterTypeCounts = readings.reduce((acc, reading) => {
-    acc[reading.kindOfMeter] = (acc[reading.kindOfMeter] || 0) + 1;
-    return acc;
-  }, {} as Record<string, number>);
+  const meterTypeCounts = (summary?.readingsByKind ?? {}) as Record<string, number>;
 
-  // Calculate recent activity
-  const recentReadings = [...readings]
-    .sort((a, b) => b.dateOfReading.getTime() - a.dateOfReading.getTime())
-    .slice(0, 5);
+  // Recent activity
+  const recentReadings = summary?.recent ?? [];
 
   // Calculate average readings per customer
   const readingsPerCustomer = customerCount > 0 
@@ -141,6 +148,31 @@ const Dashboard = () => {
         </Card>
       </div>
 
+      {/* Monthly consumption over all customers */}
+      <div className="grid gap-4 md:grid-cols-3">
+        <ConsumptionChart
+          title="Electricity"
+          description="Consumption per month"
+          data={electricity}
+          color={{ main: "#eab308", light: "#fef08a" }}
+          unit="kWh"
+        />
+        <ConsumptionChart
+          title="Water"
+          description="Consumption per month"
+          data={water}
+          color={{ main: "#3b82f6", light: "#bfdbfe" }}
+          unit="m³"
+        />
+        <ConsumptionChart
+          title="Heating"
+          description="Consumption per month"
+          data={heating}
+          color={{ main: "#ef4444", light: "#fecaca" }}
+          unit="MWh"
+        />
+      </div>
+
       {/* Data tabs and quick actions */}
       <div className="grid gap-4 md:grid-cols-7">
         <Tabs defaultValue="customers" className="col-span-7 md:col-span-4 lg:col-span-5">
@@ -272,9 +304,12 @@ const Dashboard = () => {
  */
 const getMeterTypeName = (type: string): string => {
   switch (type) {
-    case 'HEIZUNG': return 'Heating';
-    case 'STROM': return 'Electricity';
-    case 'WASSER': return 'Water';
+    case 'HEIZUNG':
+    case 'heating': return 'Heating';
+    case 'STROM':
+    case 'electricity': return 'Electricity';
+    case 'WASSER':
+    case 'water': return 'Water';
     default: return 'Unknown';
   }
 };
@@ -1,8 +1,8 @@
 
 import { toast } from "sonner";
 import { 
-  APICustomer, APICustomerList, APICustomerReading, APICustomerWrapper, 
-  APIReading, APIReadingList, APIReadingWrapper, GenderAPI, KindOfMeter,
+  APICustomer, APICustomerList, APICustomerPage, APICustomerReading, CustomerSortAPI, APICustomerWrapper, 
+  APIConsumptionList, APIReading, APIReadingList, APIReadingWrapper, APISummary, ConsumptionPeriod, GenderAPI, KindOfMeter,
   mapGenderFromAPI, mapGenderToAPI, mapMeterTypeFromAPI, mapMeterTypeToAPI
 } from "../types/api";
 
@@ -41,6 +41,38 @@ export const getCustomers = async (): Promise<APICustomerList> => {
   }
 };
 
+/**
+ * One page of customers, filtered, sorted and paged by the server. Pass the next cursor of
+ * a page as after to get the following one.
+ */
+export const getCustomerPage = async (
+  params: {
+    search?: string;
+    gender?: GenderAPI;
+    bornFrom?: string;
+    bornTo?: string;
+    sort?: CustomerSortAPI;
+    direction?: 'asc' | 'desc';
+    limit?: number;
+    after?: string;
+  }
+): Promise<APICustomerPage> => {
+  try {
+    const url = new URL(`${API_BASE_URL}/customers`);
+
+    Object.entries(params).forEach(([key, value]) => {
+      if (value) {
+        url.searchParams.append(key, String(value));
+      }
+    });
+
+    const response = await fetch(url.toString());
+    return handleResponse(response);
+  } catch (error) {
+    return handleError(error as Error, 'Failed to fetch customers');
+  }
+};
+
 export const getCustomer = async (uuid: string): Promise<APICustomerWrapper> => {
   try {
     const response = await fetch(`${API_BASE_URL}/customers/${uuid}`);
@@ -118,6 +150,34 @@ export const getReadings = async (
   }
 };
 
+/**
+ * URL of a server-side export. The server streams the file, so the browser can download
+ * it directly instead of building it from a fetched array.
+ */
+export const getExportUrl = (
+  dataType: 'readings' | 'customers',
+  format: 'csv' | 'ndjson' | 'xml',
+  params?: {
+    customer?: string;
+    start?: string;
+    end?: string;
+    kindOfMeter?: KindOfMeter;
+  }
+): string => {
+  const url = new URL(`${API_BASE_URL}/export/${dataType}`);
+  url.searchParams.append('format', format);
+
+  if (params && dataType === 'readings') {
+    Object.entries(params).forEach(([key, value]) => {
+      if (value) {
+        url.searchParams.append(key, value);
+      }
+    });
+  }
+
+  return url.toString();
+};
+
 export const getReading = async (uuid: string): Promise<APIReadingWrapper> => {
   try {
     const response = await fetch(`${API_BASE_URL}/readings/${uuid}`);
@@ -168,6 +228,59 @@ export const deleteReading = async (uuid: string): Promise<APIReadingWrapper> =>
   }
 };
 
+// Analytics API functions
+export const getConsumption = async (
+  params?: {
+    customer?: string;
+    kindOfMeter?: KindOfMeter;
+    start?: string;
+    end?: string;
+    groupBy?: ConsumptionPeriod;
+    byCustomer?: boolean;
+  }
+): Promise<APIConsumptionList> => {
+  try {
+    let url = new URL(`${API_BASE_URL}/analytics/consumption`);
+
+    if (params) {
+      Object.entries(params).forEach(([key, value]) => {
+        if (value !== undefined) {
+          url.searchParams.append(key, String(value));
+        }
+      });
+    }
+
+    const response = await fetch(url.toString());
+    return handleResponse(response);
+  } catch (error) {
+    return handleError(error as Error, 'Failed to fetch consumption');
+  }
+};
+
+export const getSummary = async (
+  params?: {
+    start?: string;
+    end?: string;
+  }
+): Promise<APISummary> => {
+  try {
+    let url = new URL(`${API_BASE_URL}/analytics/summary`);
+
+    if (params) {
+      Object.entries(params).forEach(([key, value]) => {
+        if (value) {
+          url.searchParams.append(key, value);
+        }
+      });
+    }
+
+    const response = await fetch(url.toString());
+    return handleResponse(response);
+  } catch (error) {
+    return handleError(error as Error, 'Failed to fetch summary');
+  }
+};
+
 // Database setup function (for testing)
 export const setupDatabase = async (): Promise<void> => {
   try {
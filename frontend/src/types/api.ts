@@ -84,6 +84,7 @@ export interface APICustomer {
   lastName: string;
   birthDate?: string | null;
   gender: GenderAPI;
+  version?: number;
 }
 
 export interface APICustomerWrapper {
@@ -100,6 +101,13 @@ export interface APICustomerList {
   }>;
 }
 
+// One page of GET /customers; next is the cursor of the following page, if there may be one
+export interface APICustomerPage extends APICustomerList {
+  next?: string;
+}
+
+export type CustomerSortAPI = 'lastName' | 'firstName' | 'birthDate';
+
 // API Reading types
 export interface APIReading {
   id?: string | null;
@@ -110,6 +118,7 @@ export interface APIReading {
   substitute: boolean;
   meterCount: number;
   kindOfMeter: KindOfMeter;
+  version?: number;
 }
 
 export interface APIReadingWrapper {
@@ -124,3 +133,29 @@ export interface APICustomerReading {
   customer: APICustomer;
   readings: APIReading[];
 }
+
+// API analytics types
+export type ConsumptionPeriod = 'day' | 'month' | 'year' | 'total';
+
+export interface APIConsumption {
+  customer: string | null;
+  kindOfMeter: KindOfMeter;
+  period: string | null;
+  start: string | null;
+  consumption: number;
+  readings: number;
+}
+
+export interface APIConsumptionList {
+  consumption: APIConsumption[];
+}
+
+export interface APISummary {
+  summary: {
+    customers: number;
+    readings: number;
+    readingsByKind: Partial<Record<KindOfMeter, number>>;
+    consumptionByKind: Partial<Record<KindOfMeter, number>>;
+    recent: APIReading[];
+  };
+}
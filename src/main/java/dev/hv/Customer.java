@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import dev.hv.model.Gender;
 import dev.hv.model.ICustomer;
@@ -16,6 +17,9 @@ public class Customer implements ICustomer {
   @JsonSerialize(as = LocalDate.class)
   @JsonFormat(pattern = "yyyy-MM-dd")
   private LocalDate birthDate;
+  // Row version for optimistic locking; null when unknown, e.g. for new customers
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long version;
 
   public Customer() {
     this.id = UUID.randomUUID(); // Generate a new UUID for the customer
@@ -78,4 +82,13 @@ public class Customer implements ICustomer {
   public void setBirthDate(LocalDate BirthDate) {
     this.birthDate = BirthDate;
   }
+
+  // Getter and Setter for version
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
 }
@@ -1,6 +1,7 @@
 package dev.hv;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import dev.hv.model.ICustomer;
@@ -23,6 +24,9 @@ public class Reading implements IReading, IId {
   private double meterCount;
   private String meterId;
   private boolean substitute;
+  // Row version for optimistic locking; null when unknown, e.g. for new readings
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long version;
 
   public Reading() {
     this.id = UUID.randomUUID(); // Generate a new UUID for the reading
@@ -123,6 +127,14 @@ public class Reading implements IReading, IId {
     return substitute;
   }
 
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
   @Override
   public String printDateOfReading() {
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd LLLL yyyy");
@@ -0,0 +1,72 @@
+package dev.hv;
+
+import dev.hv.model.ICustomer;
+import dev.hv.model.KindOfMeter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Immutable, compact form of a {@link Reading} for bulk paths. Ids are packed into their
+ * two halves, the date is an epoch day and the customer is only referenced by id, so a
+ * reading is one object plus its strings instead of a Reading with a UUID, a LocalDate
+ * and a boxed version.
+ * <p>
+ * The nil UUID stands for no customer, {@link #NO_DATE} for no date and
+ * {@link #NO_VERSION} for an unknown version.
+ */
+public record ReadingRecord(long idMost, long idLeast, long customerMost, long customerLeast, int epochDay,
+    KindOfMeter kindOfMeter, double meterCount, String meterId, String comment, boolean substitute,
+    long version) {
+
+  public static final int NO_DATE = Integer.MIN_VALUE;
+  public static final long NO_VERSION = -1;
+
+  public static ReadingRecord of(Reading reading) {
+    UUID id = reading.getId();
+    UUID customer = reading.getCustomer() instanceof Customer c ? c.getId() : null;
+    LocalDate date = reading.getDateOfReading();
+    Long version = reading.getVersion();
+    return new ReadingRecord(
+        id.getMostSignificantBits(), id.getLeastSignificantBits(),
+        customer != null ? customer.getMostSignificantBits() : 0,
+        customer != null ? customer.getLeastSignificantBits() : 0,
+        date != null ? (int) date.toEpochDay() : NO_DATE,
+        reading.getKindOfMeter(), reading.getMeterCount(), reading.getMeterId(), reading.getComment(),
+        reading.getSubstitute(), version != null ? version : NO_VERSION);
+  }
+
+  public static ReadingRecord of(UUID id, String comment, UUID customer, LocalDate dateOfReading,
+      KindOfMeter kindOfMeter, double meterCount, String meterId, boolean substitute) {
+    return new ReadingRecord(
+        id.getMostSignificantBits(), id.getLeastSignificantBits(),
+        customer != null ? customer.getMostSignificantBits() : 0,
+        customer != null ? customer.getLeastSignificantBits() : 0,
+        dateOfReading != null ? (int) dateOfReading.toEpochDay() : NO_DATE,
+        kindOfMeter, meterCount, meterId, comment, substitute, NO_VERSION);
+  }
+
+  public UUID id() {
+    return new UUID(idMost, idLeast);
+  }
+
+  public UUID customer() {
+    return customerMost == 0 && customerLeast == 0 ? null : new UUID(customerMost, customerLeast);
+  }
+
+  public LocalDate dateOfReading() {
+    return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+  }
+
+  /**
+   * The reading as the API and the DAOs use it, with the given customer.
+   */
+  public Reading toReading(ICustomer customer) {
+    Reading reading = new Reading(id(), comment, customer, dateOfReading(), kindOfMeter, meterCount, meterId,
+        substitute);
+    if (version != NO_VERSION) {
+      reading.setVersion(version);
+    }
+    return reading;
+  }
+}
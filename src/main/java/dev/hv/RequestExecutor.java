@@ -0,0 +1,77 @@
+package dev.hv;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the HTTP server. Each request runs on its own thread, but only
+ * {@code maxConcurrent} of them are handled at the same time. The others wait in
+ * arrival order, so a burst of requests queues here instead of running into the
+ * connection pool's timeout.
+ * <p>
+ * With virtual threads a waiting request costs a few hundred bytes; with platform
+ * threads it holds one thread of the fixed pool.
+ */
+public class RequestExecutor implements Executor {
+
+  public enum Mode {
+    VIRTUAL, PLATFORM
+  }
+
+  private final ExecutorService delegate;
+  private final Semaphore permits;
+  private final Mode mode;
+
+  public RequestExecutor(Mode mode, int maxConcurrent, int platformThreads) {
+    this.mode = mode;
+    this.permits = new Semaphore(maxConcurrent, true);
+    this.delegate = switch (mode) {
+      case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+      case PLATFORM -> Executors.newFixedThreadPool(platformThreads, platformFactory());
+    };
+  }
+
+  private static ThreadFactory platformFactory() {
+    return Thread.ofPlatform().name("http-", 0).daemon(true).factory();
+  }
+
+  @Override
+  public void execute(Runnable request) {
+    delegate.execute(() -> {
+      permits.acquireUninterruptibly();
+      try {
+        request.run();
+      } finally {
+        permits.release();
+      }
+    });
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  public int getQueueLength() {
+    return permits.getQueueLength();
+  }
+
+  public void shutdown() {
+    delegate.shutdown();
+    try {
+      if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+        delegate.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      delegate.shutdownNow();
+    }
+  }
+}
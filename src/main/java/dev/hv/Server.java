@@ -1,27 +1,54 @@
 package dev.hv;
 
 import com.sun.net.httpserver.HttpServer;
+import dev.hv.dao.DbConnection;
+import dev.hv.metrics.MetricRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.glassfish.jersey.jdkhttp.JdkHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
 import java.net.URI;
+import java.util.Locale;
 
 public class Server {
   static HttpServer server;
+  static RequestExecutor executor;
 
   private static final Logger logger = LogManager.getLogger(Server.class);
 
   public static void startServer(String url) {
     final String pack = "dev.hv.endpoints";
-    logger.debug("Server started on: {}", url);
     final ResourceConfig rc = new ResourceConfig().packages(pack);
-    server = JdkHttpServerFactory.createHttpServer(URI.create(url), rc);
+    server = JdkHttpServerFactory.createHttpServer(URI.create(url), rc, false);
+    executor = createExecutor();
+    server.setExecutor(executor);
+    server.start();
+
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.gauge("hv_http_available_permits", "Requests that may still start right away",
+        executor::getAvailablePermits);
+    registry.gauge("hv_http_queued_requests", "Requests waiting for a permit", executor::getQueueLength);
+    logger.debug("Server started on: {} ({} threads)", url, executor.getMode());
+  }
+
+  /**
+   * Reads the executor settings from system properties:
+   * {@code hv.server.executor} (virtual or platform, default virtual),
+   * {@code hv.server.maxConcurrent} (default: size of the connection pool) and
+   * {@code hv.server.threads} (pool size in platform mode, default maxConcurrent).
+   */
+  private static RequestExecutor createExecutor() {
+    RequestExecutor.Mode mode = RequestExecutor.Mode.valueOf(
+        System.getProperty("hv.server.executor", "virtual").toUpperCase(Locale.ROOT));
+    int maxConcurrent = Integer.getInteger("hv.server.maxConcurrent", DbConnection.getInstance().getMaxPoolSize());
+    int threads = Integer.getInteger("hv.server.threads", maxConcurrent);
+    return new RequestExecutor(mode, maxConcurrent, threads);
   }
 
   public static void stopServer() {
     server.stop(0);
+    executor.shutdown();
   }
 
 }
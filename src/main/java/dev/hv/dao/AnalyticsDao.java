@@ -0,0 +1,311 @@
+package dev.hv.dao;
+
+import dev.hv.Reading;
+import dev.hv.metrics.SqlTimer;
+import dev.hv.model.KindOfMeter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Aggregates over the readings that are computed by the database, so that clients never
+ * have to download the raw meter history.
+ * <p>
+ * Consumption is the difference between consecutive meter counts of the same meter, booked
+ * on the date of the later reading. A meter exchange starts a new series: the first
+ * reading of a meter id, a reading commented with {@value #METER_EXCHANGE} (as written by
+ * the CSV import) and a count below its predecessor never subtract the previous count.
+ * Readings without a kind of meter belong to no series and are left out.
+ */
+public class AnalyticsDao {
+
+  public enum Period {
+    DAY("YEAR(dateOfReading) AS periodYear, MONTH(dateOfReading) AS periodMonth, DAY(dateOfReading) AS periodDay",
+        null),
+    MONTH("YEAR(dateOfReading) AS periodYear, MONTH(dateOfReading) AS periodMonth, 1 AS periodDay",
+        "FLOOR(yearMonth / 100) AS periodYear, MOD(yearMonth, 100) AS periodMonth, 1 AS periodDay"),
+    YEAR("YEAR(dateOfReading) AS periodYear, 1 AS periodMonth, 1 AS periodDay",
+        "FLOOR(yearMonth / 100) AS periodYear, 1 AS periodMonth, 1 AS periodDay"),
+    TOTAL("0 AS periodYear, 0 AS periodMonth, 0 AS periodDay",
+        "0 AS periodYear, 0 AS periodMonth, 0 AS periodDay");
+
+    private final String columns;
+    // Over MeterMonth; days cannot be told apart there
+    private final String monthColumns;
+
+    Period(String columns, String monthColumns) {
+      this.columns = columns;
+      this.monthColumns = monthColumns;
+    }
+
+    String label(LocalDate start) {
+      return switch (this) {
+        case DAY -> start.toString();
+        case MONTH -> start.toString().substring(0, 7);
+        case YEAR -> Integer.toString(start.getYear());
+        case TOTAL -> null;
+      };
+    }
+
+    // Epoch day of the first day of the period that contains the day, and of the next period
+    int startDay(int day) {
+      return switch (this) {
+        case DAY -> day;
+        case MONTH -> (int) LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay();
+        case YEAR -> (int) LocalDate.ofEpochDay(day).withDayOfYear(1).toEpochDay();
+        case TOTAL -> 0;
+      };
+    }
+
+    int nextDay(int startDay) {
+      return switch (this) {
+        case DAY -> startDay + 1;
+        case MONTH -> (int) LocalDate.ofEpochDay(startDay).plusMonths(1).toEpochDay();
+        case YEAR -> (int) LocalDate.ofEpochDay(startDay).plusYears(1).toEpochDay();
+        case TOTAL -> Integer.MAX_VALUE;
+      };
+    }
+  }
+
+  /**
+   * Consumption of one customer (null when summed over all customers) and kind of meter in
+   * the period starting at {@code start}. {@code readings} counts the readings that added
+   * to it.
+   */
+  public record Consumption(UUID customer, KindOfMeter kindOfMeter, String period, LocalDate start,
+      double consumption, int readings) {
+  }
+
+  /**
+   * {@code consumptionByKind} covers the whole months of the range.
+   */
+  public record Summary(int customers, int readings, Map<KindOfMeter, Integer> readingsByKind,
+      Map<KindOfMeter, Double> consumptionByKind, List<Reading> recent) {
+  }
+
+  static final String METER_EXCHANGE = "Zählertausch";
+
+  private static final int RECENT_READINGS = 5;
+
+  /**
+   * Computed from the {@link ReadingColumns} when they are loaded. Otherwise reads the
+   * {@link MeterMonths} aggregate when the range is made up of whole months, so that the
+   * cost grows with the number of meters instead of the number of readings. Months in
+   * which the count restarts are computed from their readings there.
+   */
+  public List<Consumption> consumption(UUID customerId, KindOfMeter kindOfMeter, LocalDate startDate,
+      LocalDate endDate, Period period, boolean byCustomer) {
+    List<Consumption> fromColumns = ReadingColumns.getInstance()
+        .consumption(customerId, kindOfMeter, startDate, endDate, period, byCustomer);
+    if (fromColumns != null) {
+      return fromColumns;
+    }
+
+    boolean wholeMonths = (startDate == null || startDate.getDayOfMonth() == 1)
+        && (endDate == null || endDate.equals(endDate.with(TemporalAdjusters.lastDayOfMonth())));
+    if (period.monthColumns != null && wholeMonths) {
+      return consumptionByMonth(customerId, kindOfMeter, startDate, endDate, period, byCustomer);
+    }
+
+    List<Object> parameters = new ArrayList<>();
+    String groups = (byCustomer ? "customer, " : "") + "kindOfMeter, periodYear, periodMonth, periodDay";
+    StringBuilder sql = new StringBuilder()
+        .append("SELECT ").append(byCustomer ? "customer" : "NULL AS customer")
+        .append(", kindOfMeter, periodYear, periodMonth, periodDay, ")
+        .append("SUM(delta) AS consumption, COUNT(*) AS readings FROM (");
+    appendReadingDeltas(sql, parameters, customerId, kindOfMeter, startDate, endDate, period, "");
+    sql.append(") d GROUP BY ").append(groups).append(" ORDER BY ").append(groups);
+
+    return query("Analytics.consumption", sql.toString(), parameters, period);
+  }
+
+  // The consumption booked on each reading in the range, as customer, kindOfMeter, the
+  // period columns and delta
+  private static void appendReadingDeltas(StringBuilder sql, List<Object> parameters, UUID customerId,
+      KindOfMeter kindOfMeter, LocalDate startDate, LocalDate endDate, Period period, String condition) {
+    parameters.add("%" + METER_EXCHANGE + "%");
+
+    // Customer, kind and end date are part of the window partitions or lie after every
+    // row of them, so they can be filtered before LAG() runs
+    StringBuilder where = new StringBuilder("WHERE kindOfMeter IS NOT NULL ");
+    if (customerId != null) {
+      where.append("AND customer = ? ");
+      parameters.add(customerId);
+    }
+    if (kindOfMeter != null) {
+      where.append("AND kindOfMeter = ? ");
+      parameters.add(kindOfMeter.name());
+    }
+    if (endDate != null) {
+      where.append("AND dateOfReading <= ? ");
+      parameters.add(endDate);
+    }
+
+    sql.append("SELECT customer, kindOfMeter, ").append(period.columns).append(", delta ")
+        .append("FROM (SELECT customer, kindOfMeter, meterId, dateOfReading, ")
+        .append("CASE WHEN previous IS NULL OR comment LIKE ? THEN NULL ")
+        .append("WHEN meterCount < previous THEN meterCount ")
+        .append("ELSE meterCount - previous END AS delta ")
+        .append("FROM (SELECT customer, kindOfMeter, meterId, dateOfReading, meterCount, comment, ")
+        // Several readings on one day are taken in ascending order, a meter only counts up
+        .append("LAG(meterCount) OVER (PARTITION BY customer, kindOfMeter, meterId ")
+        .append("ORDER BY dateOfReading, meterCount, id) AS previous ")
+        .append("FROM Reading ").append(where).append(condition).append(") r) d ")
+        .append("WHERE delta IS NOT NULL ");
+    // The start date is applied after LAG() so that the first reading in range still
+    // subtracts its predecessor from before the range
+    if (startDate != null) {
+      sql.append("AND dateOfReading >= ? ");
+      parameters.add(startDate);
+    }
+  }
+
+  private List<Consumption> consumptionByMonth(UUID customerId, KindOfMeter kindOfMeter, LocalDate startDate,
+      LocalDate endDate, Period period, boolean byCustomer) {
+    List<Object> parameters = new ArrayList<>();
+    StringBuilder where = new StringBuilder("WHERE kindOfMeter IS NOT NULL ");
+    if (customerId != null) {
+      where.append("AND customer = ? ");
+      parameters.add(customerId);
+    }
+    if (kindOfMeter != null) {
+      where.append("AND kindOfMeter = ? ");
+      parameters.add(kindOfMeter.name());
+    }
+    if (endDate != null) {
+      where.append("AND yearMonth <= ? ");
+      parameters.add(endDate.getYear() * 100 + endDate.getMonthValue());
+    }
+
+    // Same rules as on the readings: the first month of a meter has no predecessor and a
+    // first count below the last count of the month before restarts the meter
+    String groups = (byCustomer ? "customer, " : "") + "kindOfMeter, periodYear, periodMonth, periodDay";
+    StringBuilder sql = new StringBuilder()
+        .append("SELECT ").append(byCustomer ? "customer" : "NULL AS customer")
+        .append(", kindOfMeter, periodYear, periodMonth, periodDay, ")
+        .append("SUM(delta) AS consumption, SUM(counted) AS readings ")
+        .append("FROM (SELECT customer, kindOfMeter, ").append(period.monthColumns).append(", ")
+        .append("lastCount - firstCount + CASE WHEN previous IS NULL THEN 0 ")
+        .append("WHEN firstCount < previous THEN firstCount ")
+        .append("ELSE firstCount - previous END AS delta, ")
+        .append("readings - CASE WHEN previous IS NULL THEN 1 ELSE 0 END AS counted ")
+        .append("FROM (SELECT customer, kindOfMeter, yearMonth, firstCount, lastCount, readings, resets, ")
+        .append("LAG(lastCount) OVER (PARTITION BY meterId ORDER BY yearMonth) AS previous ")
+        .append("FROM MeterMonth ").append(where).append(") r ")
+        // The last count of a month with resets is still right for the month after it
+        .append("WHERE resets = 0 ");
+    if (startDate != null) {
+      sql.append("AND yearMonth >= ? ");
+      parameters.add(startDate.getYear() * 100 + startDate.getMonthValue());
+    }
+    // First and last count say nothing about months with resets, their readings do
+    sql.append("UNION ALL SELECT customer, kindOfMeter, periodYear, periodMonth, periodDay, delta, 1 AS counted ")
+        .append("FROM (");
+    appendReadingDeltas(sql, parameters, customerId, kindOfMeter, startDate, endDate, period,
+        "AND meterId IN (SELECT meterId FROM MeterMonth WHERE resets > 0) ");
+    sql.append("AND EXISTS (SELECT 1 FROM MeterMonth m WHERE m.meterId = d.meterId ")
+        .append("AND m.yearMonth = YEAR(d.dateOfReading) * 100 + MONTH(d.dateOfReading) AND m.resets > 0)")
+        .append(") s) u ")
+        .append("GROUP BY ").append(groups)
+        .append(" HAVING SUM(counted) > 0")
+        .append(" ORDER BY ").append(groups);
+
+    return query("Analytics.consumptionByMonth", sql.toString(), parameters, period);
+  }
+
+  private static List<Consumption> query(String name, String sql, List<Object> parameters, Period period) {
+    List<Consumption> result = new ArrayList<>();
+    try (SqlTimer timer = SqlTimer.start(name);
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.size(); i++) {
+        statement.setObject(i + 1, parameters.get(i));
+      }
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          LocalDate start = period == Period.TOTAL ? null : LocalDate.of(resultSet.getInt("periodYear"),
+              resultSet.getInt("periodMonth"), resultSet.getInt("periodDay"));
+          result.add(new Consumption(
+              resultSet.getObject("customer", UUID.class),
+              KindOfMeter.valueOf(resultSet.getString("kindOfMeter")),
+              start != null ? period.label(start) : null,
+              start,
+              resultSet.getDouble("consumption"),
+              resultSet.getInt("readings")));
+        }
+      }
+      timer.rows(result.size());
+    } catch (SQLException e) {
+      throw new RuntimeException("AnalyticsDao consumption failure: " + e.getMessage(), e);
+    }
+    return result;
+  }
+
+  /**
+   * Figures for the dashboard: reading counts and total consumption per kind of meter in
+   * the range, and the latest readings.
+   */
+  public Summary summary(LocalDate startDate, LocalDate endDate) {
+    StringBuilder sql = new StringBuilder("SELECT kindOfMeter, COUNT(*) FROM Reading ");
+    List<Object> parameters = new ArrayList<>();
+    if (startDate != null) {
+      sql.append("WHERE dateOfReading >= ? ");
+      parameters.add(startDate);
+    }
+    if (endDate != null) {
+      sql.append(parameters.isEmpty() ? "WHERE " : "AND ").append("dateOfReading <= ? ");
+      parameters.add(endDate);
+    }
+    sql.append("GROUP BY kindOfMeter");
+
+    int customers;
+    int readings = 0;
+    Map<KindOfMeter, Integer> readingsByKind = new EnumMap<>(KindOfMeter.class);
+    try (SqlTimer timer = SqlTimer.start("Analytics.summary");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM Customer");
+          ResultSet resultSet = statement.executeQuery()) {
+        customers = resultSet.next() ? resultSet.getInt(1) : 0;
+      }
+      try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+        for (int i = 0; i < parameters.size(); i++) {
+          statement.setObject(i + 1, parameters.get(i));
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            String kind = resultSet.getString(1);
+            int count = resultSet.getInt(2);
+            // Readings without a kind only count towards the total
+            if (kind != null) {
+              readingsByKind.put(KindOfMeter.valueOf(kind), count);
+            }
+            readings += count;
+          }
+        }
+      }
+      timer.rows(readingsByKind.size());
+    } catch (SQLException e) {
+      throw new RuntimeException("AnalyticsDao summary failure: " + e.getMessage(), e);
+    }
+
+    // Widened to whole months, so that it comes from the aggregate
+    LocalDate monthStart = startDate != null ? startDate.withDayOfMonth(1) : null;
+    LocalDate monthEnd = endDate != null ? endDate.with(TemporalAdjusters.lastDayOfMonth()) : null;
+    Map<KindOfMeter, Double> consumptionByKind = new EnumMap<>(KindOfMeter.class);
+    for (Consumption consumption : consumption(null, null, monthStart, monthEnd, Period.TOTAL, false)) {
+      consumptionByKind.put(consumption.kindOfMeter(), consumption.consumption());
+    }
+    List<Reading> recent = new ReadingDao().findLatest(startDate, endDate, RECENT_READINGS);
+    return new Summary(customers, readings, readingsByKind, consumptionByKind, recent);
+  }
+}
@@ -0,0 +1,14 @@
+package dev.hv.dao;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a batch operation. {@code index} of a failure is the position of the item in
+ * the submitted list. A batch that was rolled back reports 0 processed items.
+ */
+public record BatchResult(int processed, List<Failure> failures) {
+
+  public record Failure(int index, UUID id, String error) {
+  }
+}
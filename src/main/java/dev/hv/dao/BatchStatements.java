@@ -0,0 +1,256 @@
+package dev.hv.dao;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Runs one statement for many items inside the caller's transaction. Items are sent as
+ * JDBC batches; only a batch that fails is replayed row by row to find the offending items.
+ */
+final class BatchStatements {
+
+  @FunctionalInterface
+  interface Binder<T> {
+    void bind(PreparedStatement statement, T item) throws SQLException;
+  }
+
+  @FunctionalInterface
+  interface Work {
+    int run(Connection connection, List<BatchResult.Failure> failures) throws SQLException;
+  }
+
+  static final int JDBC_BATCH_SIZE = 1000;
+  // Keeps the IN lists well below the placeholder limits of the drivers
+  static final int MAX_IN_LIST = 500;
+
+  private BatchStatements() {
+  }
+
+  /**
+   * Runs {@code work} in one transaction on a pooled connection. It is rolled back if
+   * {@code work} throws, or if any item failed and {@code partial} is false.
+   */
+  static BatchResult inTransaction(boolean partial, Work work) {
+    List<BatchResult.Failure> failures = new ArrayList<>();
+    try (Connection connection = DbConnection.getInstance().acquireConnection()) {
+      connection.setAutoCommit(false);
+      try {
+        int processed = work.run(connection, failures);
+        if (!partial && !failures.isEmpty()) {
+          connection.rollback();
+          return new BatchResult(0, failures);
+        }
+        connection.commit();
+        return new BatchResult(processed, failures);
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Batch failure: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Executes {@code sql} for the items at {@code indexes}. In atomic mode (partial false)
+   * it stops at the first failing item.
+   *
+   * @param unmatched failure of an item whose statement changed no row, like an update whose
+   *     version no longer matches; null if the update counts need not be checked
+   * @return the number of items that were stored
+   */
+  static <T> int execute(Connection connection, String sql, List<T> items, List<Integer> indexes,
+      Function<T, UUID> id, Binder<T> binder, String unmatched, boolean partial,
+      List<BatchResult.Failure> failures) throws SQLException {
+    int processed = 0;
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int from = 0; from < indexes.size(); from += JDBC_BATCH_SIZE) {
+        List<Integer> chunk = indexes.subList(from, Math.min(from + JDBC_BATCH_SIZE, indexes.size()));
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+          for (int index : chunk) {
+            binder.bind(statement, items.get(index));
+            statement.addBatch();
+          }
+          int[] counts = statement.executeBatch();
+          if (unmatched == null) {
+            connection.releaseSavepoint(savepoint);
+            processed += chunk.size();
+            continue;
+          }
+          if (hasCounts(counts, chunk.size())) {
+            connection.releaseSavepoint(savepoint);
+            for (int i = 0; i < counts.length; i++) {
+              if (counts[i] == 0) {
+                failures.add(new BatchResult.Failure(chunk.get(i), id.apply(items.get(chunk.get(i))), unmatched));
+                if (!partial) {
+                  return processed;
+                }
+              } else {
+                processed++;
+              }
+            }
+            continue;
+          }
+          // Without a count per item only the replay tells which ones changed nothing
+          connection.rollback(savepoint);
+        } catch (BatchUpdateException e) {
+          // Drivers disagree on what a failed batch leaves behind, so start the chunk over
+          statement.clearBatch();
+          connection.rollback(savepoint);
+        }
+
+        for (int index : chunk) {
+          T item = items.get(index);
+          try {
+            binder.bind(statement, item);
+            if (statement.executeUpdate() == 0 && unmatched != null) {
+              failures.add(new BatchResult.Failure(index, id.apply(item), unmatched));
+              if (!partial) {
+                return processed;
+              }
+              continue;
+            }
+            processed++;
+          } catch (SQLException e) {
+            failures.add(new BatchResult.Failure(index, id.apply(item), e.getMessage()));
+            if (!partial) {
+              return processed;
+            }
+          }
+        }
+      }
+    }
+    return processed;
+  }
+
+  private static boolean hasCounts(int[] counts, int items) {
+    if (counts.length != items) {
+      return false;
+    }
+    for (int count : counts) {
+      if (count < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the ids of {@code ids} that exist in {@code table}
+   */
+  static Set<UUID> existing(Connection connection, String table, Collection<UUID> ids) throws SQLException {
+    Set<UUID> found = new HashSet<>();
+    List<UUID> remaining = new ArrayList<>(ids);
+    for (int from = 0; from < remaining.size(); from += MAX_IN_LIST) {
+      List<UUID> batch = inList(remaining.subList(from, Math.min(from + MAX_IN_LIST, remaining.size())));
+      try (PreparedStatement statement = connection.prepareStatement(
+          "SELECT id FROM " + table + " WHERE id IN (" + placeholders(batch.size()) + ")")) {
+        for (int i = 0; i < batch.size(); i++) {
+          statement.setObject(i + 1, batch.get(i));
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            found.add(resultSet.getObject(1, UUID.class));
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Deletes the rows of {@code table} with the given ids; every id that does not exist is
+   * reported as a failure.
+   *
+   * @return the number of deleted rows
+   */
+  static int deleteAll(Connection connection, String table, List<UUID> ids, List<BatchResult.Failure> failures)
+      throws SQLException {
+    Set<UUID> found = existing(connection, table, ids);
+    for (int i = 0; i < ids.size(); i++) {
+      if (!found.contains(ids.get(i))) {
+        failures.add(new BatchResult.Failure(i, ids.get(i), "Not found"));
+      }
+    }
+
+    int deleted = 0;
+    List<UUID> remaining = new ArrayList<>(found);
+    for (int from = 0; from < remaining.size(); from += MAX_IN_LIST) {
+      List<UUID> batch = inList(remaining.subList(from, Math.min(from + MAX_IN_LIST, remaining.size())));
+      try (PreparedStatement statement = connection.prepareStatement(
+          "DELETE FROM " + table + " WHERE id IN (" + placeholders(batch.size()) + ")")) {
+        for (int i = 0; i < batch.size(); i++) {
+          statement.setObject(i + 1, batch.get(i));
+        }
+        deleted += statement.executeUpdate();
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * @return the positions of the items whose id exists in {@code table}; the others are
+   *     reported as failures
+   */
+  static <T> List<Integer> existingIndexes(Connection connection, String table, List<T> items,
+      Function<T, UUID> id, List<BatchResult.Failure> failures) throws SQLException {
+    Set<UUID> found = existing(connection, table, items.stream().map(id).filter(v -> v != null).toList());
+    List<Integer> indexes = new ArrayList<>(items.size());
+    for (int i = 0; i < items.size(); i++) {
+      UUID itemId = id.apply(items.get(i));
+      if (found.contains(itemId)) {
+        indexes.add(i);
+      } else {
+        failures.add(new BatchResult.Failure(i, itemId, itemId == null ? "Missing id" : "Not found"));
+      }
+    }
+    return indexes;
+  }
+
+  static List<Integer> allIndexes(int size) {
+    List<Integer> indexes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      indexes.add(i);
+    }
+    return indexes;
+  }
+
+  /**
+   * Pads {@code values} to the next power of two, at most {@link #MAX_IN_LIST}, by repeating
+   * the last value. An IN list over the padded values matches the same rows, and the few
+   * list lengths that remain keep the statements in the prepared statement caches.
+   */
+  static <T> List<T> inList(List<T> values) {
+    int size = values.size() <= 1 ? values.size()
+        : Math.min(Integer.highestOneBit(values.size() - 1) << 1, MAX_IN_LIST);
+    if (size == values.size()) {
+      return values;
+    }
+    List<T> padded = new ArrayList<>(size);
+    padded.addAll(values);
+    T last = values.get(values.size() - 1);
+    while (padded.size() < size) {
+      padded.add(last);
+    }
+    return padded;
+  }
+
+  static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+}
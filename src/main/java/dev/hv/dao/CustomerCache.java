@@ -0,0 +1,165 @@
+package dev.hv.dao;
+
+import dev.hv.Customer;
+import dev.hv.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of customers by id. Holds at most {@code maxSize} entries, drops
+ * the least recently used one when full and reloads entries older than {@code ttl}.
+ * <p>
+ * Cached customers are shared between requests and must not be modified. Loads run
+ * outside the lock; a load that overlaps an invalidation is not stored, so a
+ * concurrent update can never be overwritten with the old row.
+ */
+public final class CustomerCache {
+
+  public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+  }
+
+  private record Entry(Customer customer, long loadedAt) {
+  }
+
+  private static final CustomerCache INSTANCE = new CustomerCache(
+      Integer.getInteger("hv.customerCache.maxSize", 10_000),
+      Duration.ofSeconds(Long.getLong("hv.customerCache.ttlSeconds", 300)),
+      System::nanoTime);
+
+  static {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.counterFunction("hv_customer_cache_hits_total", "Customer lookups answered from the cache",
+        () -> INSTANCE.hits.get());
+    registry.counterFunction("hv_customer_cache_misses_total", "Customer lookups that went to the database",
+        () -> INSTANCE.misses.get());
+    registry.counterFunction("hv_customer_cache_evictions_total", "Customers dropped because the cache was full",
+        () -> INSTANCE.evictions.get());
+    registry.gauge("hv_customer_cache_size", "Customers in the cache", () -> INSTANCE.stats().size());
+  }
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LongSupplier clock;
+  private final LinkedHashMap<UUID, Entry> entries;
+  private long generation;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  CustomerCache(int maxSize, Duration ttl, LongSupplier clock) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttl.toNanos();
+    this.clock = clock;
+    // Access order turns the map into an LRU list
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+        if (size() > CustomerCache.this.maxSize) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public static CustomerCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return the cached customer, or the one returned by {@code loader}; null if the loader
+   *     does not find it
+   */
+  public Customer get(UUID id, Function<UUID, Customer> loader) {
+    long loadGeneration;
+    synchronized (this) {
+      Customer cached = lookup(id);
+      if (cached != null) {
+        hits.incrementAndGet();
+        return cached;
+      }
+      loadGeneration = generation;
+    }
+    misses.incrementAndGet();
+    Customer customer = loader.apply(id);
+    if (customer != null) {
+      store(Map.of(id, customer), loadGeneration);
+    }
+    return customer;
+  }
+
+  /**
+   * Resolves many ids with a single call to {@code loader} for all of the ids that are not
+   * cached. Ids that neither the cache nor the loader know are missing from the result.
+   */
+  public Map<UUID, Customer> getAll(Collection<UUID> ids,
+      Function<Collection<UUID>, Map<UUID, Customer>> loader) {
+    Map<UUID, Customer> result = new HashMap<>();
+    List<UUID> missing;
+    long loadGeneration;
+    synchronized (this) {
+      for (UUID id : ids) {
+        Customer cached = lookup(id);
+        if (cached != null) {
+          result.put(id, cached);
+        }
+      }
+      missing = ids.stream().filter(id -> !result.containsKey(id)).distinct().toList();
+      loadGeneration = generation;
+    }
+    hits.addAndGet(result.size());
+    if (missing.isEmpty()) {
+      return result;
+    }
+    misses.addAndGet(missing.size());
+    Map<UUID, Customer> loaded = loader.apply(missing);
+    store(loaded, loadGeneration);
+    result.putAll(loaded);
+    return result;
+  }
+
+  public synchronized void invalidate(UUID id) {
+    generation++;
+    entries.remove(id);
+  }
+
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  public synchronized Stats stats() {
+    return new Stats(hits.get(), misses.get(), evictions.get(), entries.size(), maxSize);
+  }
+
+  private Customer lookup(UUID id) {
+    Entry entry = entries.get(id);
+    if (entry == null) {
+      return null;
+    }
+    if (clock.getAsLong() - entry.loadedAt() > ttlNanos) {
+      entries.remove(id);
+      return null;
+    }
+    return entry.customer();
+  }
+
+  private synchronized void store(Map<UUID, Customer> customers, long loadGeneration) {
+    if (loadGeneration != generation) {
+      return;
+    }
+    long now = clock.getAsLong();
+    customers.forEach((id, customer) -> entries.put(id, new Entry(customer, now)));
+  }
+}
@@ -1,27 +1,54 @@
 package dev.hv.dao;
 
 import dev.hv.Customer;
+import dev.hv.metrics.SqlTimer;
 import dev.hv.model.Gender;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class CustomerDao implements IDao<Customer> {
 
-  private final Connection connection = DbConnection.getInstance().getConnection();
+  // Keeps the IN lists of readAll() well below the placeholder limits of the drivers
+  private static final int MAX_IN_LIST = 500;
+
+  // Positions of the columns in CUSTOMERS
+  private static final int ID = 0;
+  private static final int FIRST_NAME = 1;
+  private static final int LAST_NAME = 2;
+  private static final int BIRTH_DATE = 3;
+  private static final int GENDER = 4;
+  private static final int VERSION = 5;
+
+  // SELECT * lists the columns in table order, which depends on the migrations
+  private static final RowMapper<Customer> CUSTOMERS = RowMapper.of(row -> {
+    Customer customer = new Customer(row.uuid(ID), row.string(FIRST_NAME), row.string(LAST_NAME),
+        row.gender(GENDER), row.date(BIRTH_DATE));
+    customer.setVersion(row.longValue(VERSION));
+    return customer;
+  }, "id", "firstName", "lastName", "birthDate", "gender", "version");
+  // Rows per round trip of export(); with a fetch size the driver streams instead of buffering
+  private static final int EXPORT_FETCH_SIZE = 500;
 
   @Override
   public void create(Customer customer) {
     // String sql ="INSERT INTO Customer (UUID, firstName, lastName, birthDate,
     // gender) VALUES (UUID, firstName, lastName, birthDate, gender);";
 
-    try (PreparedStatement statement = connection.prepareStatement("""
+    try (SqlTimer timer = SqlTimer.start("Customer.insert");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement("""
         INSERT INTO Customer (id, firstName, lastName, birthDate, gender)
         VALUES (?, ?, ?, ?, ? )
         """)) {
@@ -29,9 +56,11 @@ public class CustomerDao implements IDao<Customer> {
       statement.setString(2, customer.getFirstName());
       statement.setString(3, customer.getLastName());
       statement.setObject(4, customer.getBirthDate());
-      statement.setObject(5, customer.getGender());
+      statement.setString(5, customer.getGender() != null ? customer.getGender().name() : null);
 
       int rowsInserted = statement.executeUpdate();
+      timer.rows(rowsInserted);
+      TableVersions.getInstance().changed(TableVersions.Table.CUSTOMER);
 
       if (rowsInserted == 0) {
         // Handle the case where no rows were updated
@@ -46,8 +75,14 @@ public class CustomerDao implements IDao<Customer> {
 
   @Override
   public Customer read(UUID id) {
+    return CustomerCache.getInstance().get(id, this::load);
+  }
 
-    try (PreparedStatement statement = connection.prepareStatement("""
+  private Customer load(UUID id) {
+
+    try (SqlTimer timer = SqlTimer.start("Customer.select");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement("""
         SELECT *
         FROM Customer
         WHERE id = ?
@@ -56,17 +91,10 @@ public class CustomerDao implements IDao<Customer> {
       statement.setObject(1, id);
 
       try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = CUSTOMERS.row(resultSet);
         if (resultSet.next()) {
-          // Assuming your Customer class has the following fields: firstName, lastName,
-          // birthDate, gender
-          String firstName = resultSet.getString("firstName");
-          String lastName = resultSet.getString("lastName");
-          LocalDate birthDate = resultSet.getObject("birthDate", LocalDate.class);
-          String genderString = resultSet.getString("gender");
-          Gender gender = Gender.valueOf(genderString);
-
-          // Create and return the Customer object
-          return new Customer(id, firstName, lastName, gender, birthDate);
+          timer.rows(1);
+          return CUSTOMERS.map(row);
         } else {
           // No customer found
           return null;
@@ -77,31 +105,83 @@ public class CustomerDao implements IDao<Customer> {
     }
   }
 
-  @Override
-  public void update(Customer customer) {
-    // String sql ="";
+  /**
+   * Resolves the customers of many readings at once, through the cache.
+   */
+  public Map<UUID, Customer> readAll(Collection<UUID> ids) {
+    return CustomerCache.getInstance().getAll(ids, this::loadAll);
+  }
 
-    try (PreparedStatement statement = connection.prepareStatement("""
+  private Map<UUID, Customer> loadAll(Collection<UUID> ids) {
+    Map<UUID, Customer> customers = new HashMap<>();
+    List<UUID> remaining = new ArrayList<>(ids);
+
+    try (SqlTimer timer = SqlTimer.start("Customer.selectMany");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      for (int from = 0; from < remaining.size(); from += MAX_IN_LIST) {
+        List<UUID> batch = BatchStatements.inList(
+            remaining.subList(from, Math.min(from + MAX_IN_LIST, remaining.size())));
+
+        try (PreparedStatement statement = connection.prepareStatement(
+            "SELECT * FROM Customer WHERE id IN (" + BatchStatements.placeholders(batch.size()) + ")")) {
+          for (int i = 0; i < batch.size(); i++) {
+            statement.setObject(i + 1, batch.get(i));
+          }
+          try (ResultSet resultSet = statement.executeQuery()) {
+            RowMapper.Row row = CUSTOMERS.row(resultSet);
+            while (resultSet.next()) {
+              Customer customer = CUSTOMERS.map(row);
+              customers.put(customer.getId(), customer);
+            }
+          }
+        }
+      }
+      timer.rows(customers.size());
+    } catch (SQLException e) {
+      throw new RuntimeException("CustomerDao read failure: " + e.getMessage(), e);
+    }
+    return customers;
+  }
+
+  @Override
+  public boolean update(Customer customer) {
+    // Without a version the update is unconditional
+    Long version = customer.getVersion();
+    String sql = """
         UPDATE Customer
-        SET firstName = ?, lastName = ?, birthDate = ?, gender = ?
+        SET firstName = ?, lastName = ?, birthDate = ?, gender = ?, version = version + 1
         WHERE id = ?
-        """)) {
+        """ + (version != null ? "AND version = ?" : "");
+
+    try (SqlTimer timer = SqlTimer.start("Customer.update");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
       statement.setString(1, customer.getFirstName());
       statement.setString(2, customer.getLastName());
       statement.setObject(3, customer.getBirthDate());
-      statement.setObject(4, customer.getGender());
+      statement.setString(4, customer.getGender() != null ? customer.getGender().name() : null);
       statement.setObject(5, customer.getId());
+      if (version != null) {
+        statement.setLong(6, version);
+      }
 
       int rowsUpdated = statement.executeUpdate();
-
-      if (rowsUpdated > 1) {
-        // Handle the case where multiple rows were updated
-        throw new RuntimeException("Not only one row were effected. More than one row was updated." + customer.getId());
-      }
+      timer.rows(rowsUpdated);
       if (rowsUpdated == 0) {
-        // Handle the case where no rows were updated
-        throw new RuntimeException("No Row wos were Updated" + customer.getId());
+        // Only a versioned update needs to know why nothing matched
+        if (version != null
+            && !BatchStatements.existing(connection, "Customer", List.of(customer.getId())).isEmpty()) {
+          throw new VersionConflictException("Customer", customer.getId(), version);
+        }
+        return false;
+      }
+      CustomerCache.getInstance().invalidate(customer.getId());
+      // Readings embed their customer
+      TableVersions.getInstance().changedAll();
+      if (version != null) {
+        customer.setVersion(version + 1);
       }
+      return true;
     } catch (SQLException e) {
       throw new RuntimeException("CustomerDao update Failure: " + e);
     }
@@ -112,25 +192,100 @@ public class CustomerDao implements IDao<Customer> {
     // String sql ="DELETE FROM Customers WHERE CustomerName='Alfreds
     // Futterkiste';";
 
-    try (PreparedStatement statement = connection.prepareStatement("""
+    int rowsUpdated;
+    try (SqlTimer timer = SqlTimer.start("Customer.delete");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement("""
         DELETE FROM Customer
         WHERE id = ?
         """)) {
       statement.setObject(1, id);
 
-      int rowsUpdated = statement.executeUpdate();
-
-      if (rowsUpdated == 0) {
-        // Handle the case where no rows were updated
-        throw new RuntimeException("No customer found with the provided ID");
-      }
+      rowsUpdated = statement.executeUpdate();
+      timer.rows(rowsUpdated);
+      CustomerCache.getInstance().invalidate(id);
+      TableVersions.getInstance().changedAll();
     } catch (SQLException e) {
       throw new RuntimeException("CustomerDao delete Failure: " + e);
     }
+
+    if (rowsUpdated == 0) {
+      // Handle the case where no rows were updated
+      throw new RuntimeException("No customer found with the provided ID");
+    }
+    // ON DELETE SET NULL took the customer from its readings
+    ReadingColumns.getInstance().refreshCustomers(List.of(id));
+  }
+
+  @Override
+  public BatchResult createAll(List<Customer> customers, boolean partial) {
+    String sql = "INSERT INTO Customer (id, firstName, lastName, birthDate, gender) VALUES (?, ?, ?, ?, ?)";
+
+    try (SqlTimer timer = SqlTimer.start("Customer.insertMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) ->
+          BatchStatements.execute(connection, sql, customers, BatchStatements.allIndexes(customers.size()),
+              Customer::getId, (statement, customer) -> {
+                statement.setObject(1, customer.getId());
+                statement.setString(2, customer.getFirstName());
+                statement.setString(3, customer.getLastName());
+                statement.setObject(4, customer.getBirthDate());
+                statement.setString(5, customer.getGender() != null ? customer.getGender().name() : null);
+              }, null, partial, failures));
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      TableVersions.getInstance().changed(TableVersions.Table.CUSTOMER);
+    }
+  }
+
+  @Override
+  public BatchResult updateAll(List<Customer> customers, boolean partial) {
+    // Like update, but in one statement for customers with and without a version
+    String sql = "UPDATE Customer SET firstName = ?, lastName = ?, birthDate = ?, gender = ?, version = version + 1 WHERE id = ? AND version = COALESCE(?, version)";
+
+    try (SqlTimer timer = SqlTimer.start("Customer.updateMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) -> {
+        List<Integer> indexes = BatchStatements.existingIndexes(connection, "Customer", customers, Customer::getId,
+            failures);
+        if (!partial && !failures.isEmpty()) {
+          return 0;
+        }
+        return BatchStatements.execute(connection, sql, customers, indexes, Customer::getId, (statement, customer) -> {
+          statement.setString(1, customer.getFirstName());
+          statement.setString(2, customer.getLastName());
+          statement.setObject(3, customer.getBirthDate());
+          statement.setString(4, customer.getGender() != null ? customer.getGender().name() : null);
+          statement.setObject(5, customer.getId());
+          statement.setObject(6, customer.getVersion(), Types.BIGINT);
+        }, "Version conflict", partial, failures);
+      });
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      // After the commit, so that no concurrent load can put the old rows back
+      customers.forEach(customer -> CustomerCache.getInstance().invalidate(customer.getId()));
+      TableVersions.getInstance().changedAll();
+    }
+  }
+
+  @Override
+  public BatchResult deleteAll(List<UUID> ids, boolean partial) {
+    try (SqlTimer timer = SqlTimer.start("Customer.deleteMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) ->
+          BatchStatements.deleteAll(connection, "Customer", ids, failures));
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      ids.forEach(id -> CustomerCache.getInstance().invalidate(id));
+      TableVersions.getInstance().changedAll();
+      ReadingColumns.getInstance().refreshCustomers(ids);
+    }
   }
 
   public List<Customer> findAll() {
-    try (PreparedStatement statement = connection.prepareStatement("""
+    try (SqlTimer timer = SqlTimer.start("Customer.findAll");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement("""
         SELECT *
         FROM Customer
         """)) {
@@ -138,23 +293,136 @@ public class CustomerDao implements IDao<Customer> {
       List<Customer> customers = new ArrayList<Customer>();
 
       try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = CUSTOMERS.row(resultSet);
         while (resultSet.next()) {
-          // Assuming your Customer class has the following fields: firstName, lastName,
-          // birthDate, gender
-          UUID id = (UUID) resultSet.getObject("id");
-          String firstName = resultSet.getString("firstName");
-          String lastName = resultSet.getString("lastName");
-          LocalDate birthDate = resultSet.getObject("birthDate", LocalDate.class);
-          String genderString = resultSet.getString("gender");
-          Gender gender = Gender.valueOf(genderString);
-
-          // Create and return the Customer object
-          customers.add(new Customer(id, firstName, lastName, gender, birthDate));
+          customers.add(CUSTOMERS.map(row));
         }
       }
+      timer.rows(customers.size());
       return customers;
     } catch (SQLException e) {
       throw new RuntimeException("CustomerDao read failure: " + e.getMessage(), e);
     }
   }
+
+  /**
+   * Customers that match all given filters, null meaning any, ordered by {@code sort} and
+   * then by id. With a {@code limit} above 0 it returns at most that many, starting after
+   * the key {@code after}. Each order has an index, so a page costs the same however many
+   * customers there are.
+   *
+   * @param search prefix of the last or the first name
+   */
+  public List<Customer> findPage(String search, Gender gender, LocalDate bornFrom, LocalDate bornTo,
+      CustomerSort sort, boolean descending, CustomerKey after, int limit) {
+    StringBuilder sql = new StringBuilder("SELECT * FROM Customer ");
+
+    List<Object> parameters = new ArrayList<>();
+    boolean hasCondition = false;
+
+    if (search != null && !search.isEmpty()) {
+      String pattern = search.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+      sql.append(hasCondition ? "AND " : "WHERE ");
+      sql.append("(lastName LIKE ? ESCAPE '!' OR firstName LIKE ? ESCAPE '!') ");
+      parameters.add(pattern);
+      parameters.add(pattern);
+      hasCondition = true;
+    }
+    if (gender != null) {
+      sql.append(hasCondition ? "AND " : "WHERE ");
+      sql.append("gender = ? ");
+      parameters.add(gender.name());
+      hasCondition = true;
+    }
+    if (bornFrom != null) {
+      sql.append(hasCondition ? "AND " : "WHERE ");
+      sql.append("birthDate >= ? ");
+      parameters.add(bornFrom);
+      hasCondition = true;
+    }
+    if (bornTo != null) {
+      sql.append(hasCondition ? "AND " : "WHERE ");
+      sql.append("birthDate <= ? ");
+      parameters.add(bornTo);
+      hasCondition = true;
+    }
+    if (after != null) {
+      sql.append(hasCondition ? "AND " : "WHERE ");
+      sql.append(after(sort, descending, after, parameters));
+    }
+    String direction = descending ? " DESC" : "";
+    sql.append("ORDER BY ").append(sort.column).append(direction).append(", id").append(direction).append(' ');
+    if (limit > 0) {
+      sql.append("LIMIT ? ");
+      parameters.add(limit);
+    }
+
+    try (SqlTimer timer = SqlTimer.start("Customer.find");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+      for (int i = 0; i < parameters.size(); i++) {
+        statement.setObject(i + 1, parameters.get(i));
+      }
+
+      List<Customer> customers = new ArrayList<>(limit > 0 ? limit : 16);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = CUSTOMERS.row(resultSet);
+        while (resultSet.next()) {
+          customers.add(CUSTOMERS.map(row));
+        }
+      }
+      timer.rows(customers.size());
+      return customers;
+    } catch (SQLException e) {
+      throw new RuntimeException("CustomerDao read failure: " + e.getMessage(), e);
+    }
+  }
+
+  // Customers without birth date come first in ascending order and last in descending order,
+  // as NULLs do in MariaDB
+  private static String after(CustomerSort sort, boolean descending, CustomerKey after, List<Object> parameters) {
+    String column = sort.column;
+    String next = descending ? "<" : ">";
+    Object value = after.value();
+    if (sort == CustomerSort.BIRTH_DATE) {
+      value = after.birthDate();
+      if (value == null) {
+        parameters.add(after.id());
+        return descending ? "(birthDate IS NULL AND id < ?) " : "(birthDate IS NOT NULL OR id > ?) ";
+      }
+    }
+    parameters.add(value);
+    parameters.add(value);
+    parameters.add(after.id());
+    return "(" + column + " " + next + " ? OR (" + column + " = ? AND id " + next + " ?)"
+        + (sort == CustomerSort.BIRTH_DATE && descending ? " OR birthDate IS NULL" : "") + ") ";
+  }
+
+  /**
+   * Hands every customer to the handler straight from a forward-only cursor, ordered by id.
+   * The connection stays checked out until the handler has seen the last row.
+   */
+  public void export(RowHandler<Customer> handler) throws IOException {
+    try (SqlTimer timer = SqlTimer.start("Customer.export");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement("""
+        SELECT *
+        FROM Customer
+        ORDER BY id
+        """, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(EXPORT_FETCH_SIZE);
+
+      int rows = 0;
+      try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = CUSTOMERS.row(resultSet);
+        while (resultSet.next()) {
+          handler.handle(CUSTOMERS.map(row));
+          rows++;
+        }
+      }
+      timer.rows(rows);
+    } catch (SQLException e) {
+      throw new RuntimeException("CustomerDao export failure: " + e.getMessage(), e);
+    }
+  }
 }
@@ -0,0 +1,55 @@
+package dev.hv.dao;
+
+import dev.hv.Customer;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Position of a customer in one of the {@link CustomerSort} orders, used for keyset
+ * pagination. Written as {@code value,uuid} in the {@code after} query parameter; the value
+ * is the sort column of the customer and may itself contain commas. A customer without
+ * birth date has an empty value.
+ */
+public record CustomerKey(String value, UUID id) {
+
+  public static CustomerKey of(Customer customer, CustomerSort sort) {
+    String value = switch (sort) {
+      case LAST_NAME -> customer.getLastName();
+      case FIRST_NAME -> customer.getFirstName();
+      case BIRTH_DATE -> customer.getBirthDate() != null ? customer.getBirthDate().toString() : "";
+    };
+    return new CustomerKey(value, customer.getId());
+  }
+
+  public static CustomerKey parse(String value, CustomerSort sort) {
+    // UUIDs have no commas, names may have
+    int separator = value.lastIndexOf(',');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Expected <value>,<id> but got: " + value);
+    }
+    CustomerKey key = new CustomerKey(value.substring(0, separator),
+        UUID.fromString(value.substring(separator + 1).trim()));
+    if (sort == CustomerSort.BIRTH_DATE && key.birthDate() == null && !key.value().isEmpty()) {
+      throw new IllegalArgumentException("Invalid date in cursor: " + value);
+    }
+    return key;
+  }
+
+  /**
+   * @return the value as date, or null if it is none
+   */
+  LocalDate birthDate() {
+    try {
+      return value.isEmpty() ? null : LocalDate.parse(value);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return value + "," + id;
+  }
+}
@@ -0,0 +1,29 @@
+package dev.hv.dao;
+
+/**
+ * Orders of {@link CustomerDao#findPage}. Each is a column followed by the id, so that the
+ * order is total and a page can continue after a {@link CustomerKey}.
+ */
+public enum CustomerSort {
+  LAST_NAME("lastName"),
+  FIRST_NAME("firstName"),
+  BIRTH_DATE("birthDate");
+
+  final String column;
+
+  CustomerSort(String column) {
+    this.column = column;
+  }
+
+  /**
+   * @param value the column name as used in the JSON, e.g. {@code lastName}
+   */
+  public static CustomerSort parse(String value) {
+    for (CustomerSort sort : values()) {
+      if (sort.column.equalsIgnoreCase(value)) {
+        return sort;
+      }
+    }
+    throw new IllegalArgumentException("Unknown sort: " + value);
+  }
+}
@@ -1,5 +1,8 @@
 package dev.hv.dao;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.hv.metrics.PoolMetricsTracker;
 import dev.hv.model.IDatabaseConnection;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,10 +18,19 @@ import java.util.Properties;
 
 public class DbConnection implements IDatabaseConnection {
 
+  // Maintenance connection for schema changes; DAOs borrow from the pool instead
   private Connection connection;
+  private HikariDataSource dataSource;
 
   private static DbConnection INSTANCE;
   private static final String DB_Properties = "/db.properties";
+
+  private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+  private static final long DEFAULT_IDLE_TIMEOUT_MS = 600_000;
+  private static final long DEFAULT_CONNECTION_TIMEOUT_MS = 30_000;
+  private static final long DEFAULT_VALIDATION_TIMEOUT_MS = 5_000;
+  // Room for every Reading filter shape, the padded IN lists and the customer pages
+  private static final int DEFAULT_STATEMENT_CACHE_SIZE = 512;
   static MariaDBContainer<?> mariaDb;
 
   private static final Logger logger = LogManager.getLogger(DbConnection.class);
@@ -26,7 +38,7 @@ public class DbConnection implements IDatabaseConnection {
   private DbConnection() {
   }
 
-  public static DbConnection getInstance() {
+  public static synchronized DbConnection getInstance() {
     if (INSTANCE == null) {
       INSTANCE = new DbConnection();
     }
@@ -49,6 +61,26 @@ public class DbConnection implements IDatabaseConnection {
     return connection;
   }
 
+  /**
+   * Borrows a connection from the pool. The caller has to close it (try-with-resources)
+   * to hand it back.
+   */
+  @Override
+  public Connection acquireConnection() {
+    if (dataSource == null || dataSource.isClosed()) {
+      throw new IllegalStateException("Connection pool is not open");
+    }
+    try {
+      return dataSource.getConnection();
+    } catch (SQLException e) {
+      throw new RuntimeException("Could not acquire a pooled connection: " + e.getMessage(), e);
+    }
+  }
+
+  public int getMaxPoolSize() {
+    return dataSource != null ? dataSource.getMaximumPoolSize() : DEFAULT_POOL_SIZE;
+  }
+
   @Override
   public IDatabaseConnection openConnection(Properties properties) {
     // if (connection == null || connection.isClosed()) {
@@ -82,9 +114,57 @@ public class DbConnection implements IDatabaseConnection {
       throw new RuntimeException(e);
     }
     // }
+    dataSource = createPool(properties, dbUrl, dbUser, dbPassword);
     return this;
   }
 
+  private static HikariDataSource createPool(Properties properties, String dbUrl, String dbUser, String dbPassword) {
+    Properties prop = properties != null ? properties : new Properties();
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("hv-pool");
+    config.setJdbcUrl(dbUrl);
+    config.setUsername(dbUser);
+    config.setPassword(dbPassword);
+    config.setMaximumPoolSize(intProperty(prop, "db.pool.maxSize", DEFAULT_POOL_SIZE));
+    config.setMinimumIdle(intProperty(prop, "db.pool.minIdle", Math.min(2, config.getMaximumPoolSize())));
+    config.setIdleTimeout(longProperty(prop, "db.pool.idleTimeoutMs", DEFAULT_IDLE_TIMEOUT_MS));
+    config.setConnectionTimeout(longProperty(prop, "db.pool.connectionTimeoutMs", DEFAULT_CONNECTION_TIMEOUT_MS));
+    // Connections are checked with Connection.isValid() before they are handed out
+    config.setValidationTimeout(longProperty(prop, "db.pool.validationTimeoutMs", DEFAULT_VALIDATION_TIMEOUT_MS));
+
+    // MariaDB prepares each statement once per connection on the server and keeps it in the
+    // driver's cache, so repeated SQL texts skip parsing and planning
+    if (dbUrl.startsWith("jdbc:mariadb:")) {
+      config.addDataSourceProperty("useServerPrepStmts",
+          String.valueOf(booleanProperty(prop, "db.pool.serverPrepStmts", true)));
+      config.addDataSourceProperty("cachePrepStmts", "true");
+      config.addDataSourceProperty("prepStmtCacheSize",
+          String.valueOf(intProperty(prop, "db.pool.statementCacheSize", DEFAULT_STATEMENT_CACHE_SIZE)));
+    }
+
+    config.setMetricsTrackerFactory(PoolMetricsTracker::new);
+
+    HikariDataSource pool = new HikariDataSource(config);
+    logger.debug("Connection pool started with max {} connections", config.getMaximumPoolSize());
+    return pool;
+  }
+
+  private static int intProperty(Properties properties, String key, int defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private static boolean booleanProperty(Properties properties, String key, boolean defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+
+  private static long longProperty(Properties properties, String key, long defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+  }
+
   @Override
   public void createAllTables() {
     String createCustomer = "CREATE TABLE IF NOT EXISTS Customer " +
@@ -106,17 +186,31 @@ public class DbConnection implements IDatabaseConnection {
     try (Statement stmt = connection.createStatement()) {
       stmt.executeUpdate(createCustomer);
       stmt.executeUpdate(createReading);
+      SchemaMigrations.migrate(connection);
+      TableVersions.getInstance().changedAll();
     } catch (SQLException e) {
       throw new RuntimeException("createAllTables wasn't successful: " + e);
     }
+    if (ReadingColumns.ENABLED) {
+      ReadingColumns.getInstance().load();
+    }
   }
 
   @Override
   public void truncateAllTables() {
-    String truncateAllTables = "TRUNCATE TABLE Reading, Customer";
-
     try (Statement stmt = connection.createStatement()) {
-      stmt.executeUpdate(truncateAllTables);
+      // Customer is referenced by fk_Reading_Customer and cannot be truncated while the check is on
+      stmt.executeUpdate("SET FOREIGN_KEY_CHECKS = 0");
+      try {
+        stmt.executeUpdate("TRUNCATE TABLE Reading");
+        stmt.executeUpdate("TRUNCATE TABLE Customer");
+        stmt.executeUpdate("TRUNCATE TABLE " + MeterMonths.TABLE);
+      } finally {
+        stmt.executeUpdate("SET FOREIGN_KEY_CHECKS = 1");
+      }
+      CustomerCache.getInstance().invalidateAll();
+      ReadingColumns.getInstance().clear();
+      TableVersions.getInstance().changedAll();
     } catch (SQLException e) {
       throw new RuntimeException("truncateAllTables wasn't successful: " + e);
     }
@@ -124,16 +218,24 @@ public class DbConnection implements IDatabaseConnection {
 
   @Override
   public void removeAllTables() {
-    String removeAllTables = "DROP TABLE IF EXISTS Reading, Customer";
+    // Tables with foreign keys go first; the migrations run again on createAllTables
+    String removeAllTables = "DROP TABLE IF EXISTS Reading, " + MeterMonths.TABLE + ", Customer, "
+        + SchemaMigrations.VERSION_TABLE;
 
     try (Statement stmt = connection.createStatement()) {
       stmt.executeUpdate(removeAllTables);
+      CustomerCache.getInstance().invalidateAll();
+      ReadingColumns.getInstance().clear();
+      TableVersions.getInstance().changedAll();
     } catch (SQLException e) {
       throw new RuntimeException("removeAllTables wasn't successful: " + e);
     }
   }
 
   public void closeConnection() {
+    if (dataSource != null) {
+      dataSource.close();
+    }
     try {
       connection.close();
     } catch (SQLException e) {
@@ -1,10 +1,28 @@
 package dev.hv.dao;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface IDao<T> {
     void create(T obj);
     T read(UUID id);
-    void update(T obj);
+    /**
+     * Stores the object under its id. If the object carries a version, it is only stored
+     * while the stored row still has that version.
+     *
+     * @return false if there is no object with the id
+     * @throws VersionConflictException if the stored version differs from the given one
+     */
+    boolean update(T obj);
     void delete(UUID id);
+
+    /**
+     * Stores all objects in one transaction. With {@code partial} the items that could be
+     * stored are committed and the others reported, otherwise any failure rolls back all.
+     */
+    BatchResult createAll(List<T> objs, boolean partial);
+
+    BatchResult updateAll(List<T> objs, boolean partial);
+
+    BatchResult deleteAll(List<UUID> ids, boolean partial);
 }
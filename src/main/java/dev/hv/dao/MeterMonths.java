@@ -0,0 +1,314 @@
+package dev.hv.dao;
+
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.ReadingRecord;
+import dev.hv.model.KindOfMeter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Maintains the MeterMonth table: per meter and month the first and last reading, the
+ * number of readings and of substitute readings. It is kept up to date in the transaction
+ * that changes the readings, so aggregates over the whole history only have to read one
+ * row per meter and month.
+ * <p>
+ * {@code resets} counts the readings that restart the count within the month, a meter
+ * exchange or a count below the reading before it. First and last count say nothing about
+ * such a month, so {@link AnalyticsDao} computes it from its readings. When new readings
+ * fall between existing ones of the month, their neighbours are not known and a reset is
+ * assumed; that only costs the detour over the readings until the month is recomputed.
+ * <p>
+ * New readings are merged into the rows with an upsert, which is safe for concurrent
+ * writers. After an update or delete the first or last reading may be gone, so the affected
+ * rows are recomputed from their readings instead. Keys are always locked in ascending
+ * order to keep concurrent imports free of deadlocks.
+ */
+public final class MeterMonths {
+
+  public record Key(String meterId, int yearMonth) implements Comparable<Key> {
+
+    static Key of(String meterId, LocalDate date) {
+      return new Key(meterId, date.getYear() * 100 + date.getMonthValue());
+    }
+
+    LocalDate firstDay() {
+      return LocalDate.of(yearMonth / 100, yearMonth % 100, 1);
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      int byMeter = meterId.compareTo(other.meterId);
+      return byMeter != 0 ? byMeter : Integer.compare(yearMonth, other.yearMonth);
+    }
+  }
+
+  /**
+   * The fields of a reading that go into the aggregate.
+   */
+  public record Sample(String meterId, KindOfMeter kindOfMeter, UUID customer, LocalDate dateOfReading,
+      double meterCount, boolean exchange, boolean substitute) {
+
+    // The order in which AnalyticsDao takes the readings of a meter
+    static final Comparator<Sample> ORDER = Comparator.comparing(Sample::dateOfReading)
+        .thenComparingDouble(Sample::meterCount);
+
+    public static Sample of(Reading reading) {
+      UUID customer = reading.getCustomer() instanceof Customer c ? c.getId() : null;
+      return new Sample(reading.getMeterId(), reading.getKindOfMeter(), customer, reading.getDateOfReading(),
+          reading.getMeterCount(), exchange(reading.getComment()), reading.getSubstitute());
+    }
+
+    public static Sample of(ReadingRecord row) {
+      return new Sample(row.meterId(), row.kindOfMeter(), row.customer(), row.dateOfReading(), row.meterCount(),
+          exchange(row.comment()), row.substitute());
+    }
+
+    private static boolean exchange(String comment) {
+      return comment != null && comment.contains(AnalyticsDao.METER_EXCHANGE);
+    }
+
+    boolean counted() {
+      return meterId != null && dateOfReading != null;
+    }
+  }
+
+  private static final class Aggregate {
+    KindOfMeter kindOfMeter;
+    UUID customer;
+    LocalDate firstDate;
+    double firstCount;
+    LocalDate lastDate;
+    double lastCount;
+    int readings;
+    int substitutes;
+    int resets;
+
+    // The samples have to arrive in Sample.ORDER
+    void add(Sample sample) {
+      LocalDate date = sample.dateOfReading();
+      double count = sample.meterCount();
+      if (sample.exchange() || (readings > 0 && count < lastCount)) {
+        resets++;
+      }
+      if (readings == 0 || date.isBefore(firstDate) || (date.equals(firstDate) && count < firstCount)) {
+        firstDate = date;
+        firstCount = count;
+      }
+      if (readings == 0 || date.isAfter(lastDate) || (date.equals(lastDate) && count > lastCount)) {
+        lastDate = date;
+        lastCount = count;
+      }
+      kindOfMeter = sample.kindOfMeter();
+      customer = sample.customer();
+      readings++;
+      if (sample.substitute()) {
+        substitutes++;
+      }
+    }
+  }
+
+  static final String TABLE = "MeterMonth";
+
+  private static final String MERGE = "INSERT INTO MeterMonth (meterId, yearMonth, kindOfMeter, customer, "
+      + "firstDate, firstCount, lastDate, lastCount, readings, substitutes, resets) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+      + "ON DUPLICATE KEY UPDATE "
+      + "kindOfMeter = VALUES(kindOfMeter), "
+      + "customer = VALUES(customer), "
+      // Resets first, then counts before dates: MariaDB assigns left to right and already
+      // sees the new values. New readings after or before all others only add the reset at
+      // the seam, new readings in between are assumed to add one.
+      + "resets = resets + VALUES(resets) + CASE "
+      + "WHEN lastDate < VALUES(firstDate) OR (lastDate = VALUES(firstDate) AND lastCount <= VALUES(firstCount)) "
+      + "THEN CASE WHEN lastCount > VALUES(firstCount) THEN 1 ELSE 0 END "
+      + "WHEN firstDate > VALUES(lastDate) OR (firstDate = VALUES(lastDate) AND firstCount >= VALUES(lastCount)) "
+      + "THEN CASE WHEN firstCount < VALUES(lastCount) THEN 1 ELSE 0 END "
+      + "ELSE 1 END, "
+      + "firstCount = CASE WHEN firstDate > VALUES(firstDate) "
+      + "OR (firstDate = VALUES(firstDate) AND firstCount > VALUES(firstCount)) "
+      + "THEN VALUES(firstCount) ELSE firstCount END, "
+      + "firstDate = LEAST(firstDate, VALUES(firstDate)), "
+      + "lastCount = CASE WHEN lastDate < VALUES(lastDate) "
+      + "OR (lastDate = VALUES(lastDate) AND lastCount < VALUES(lastCount)) "
+      + "THEN VALUES(lastCount) ELSE lastCount END, "
+      + "lastDate = GREATEST(lastDate, VALUES(lastDate)), "
+      + "readings = readings + VALUES(readings), "
+      + "substitutes = substitutes + VALUES(substitutes)";
+
+  private static final String SELECT_SAMPLES = "SELECT meterId, kindOfMeter, customer, dateOfReading, meterCount, "
+      + "comment, substitute FROM Reading WHERE meterId = ? AND dateOfReading >= ? AND dateOfReading < ? "
+      + "AND meterCount IS NOT NULL ORDER BY dateOfReading, meterCount FOR UPDATE";
+
+  // Shared with the migration that added the resets column
+  static final String REBUILD = "INSERT INTO MeterMonth (meterId, yearMonth, kindOfMeter, customer, "
+      + "firstDate, firstCount, lastDate, lastCount, readings, substitutes, resets) "
+      + "SELECT meterId, yearMonth, MAX(kindOfMeter), MAX(customer), "
+      + "MIN(dateOfReading), MAX(CASE WHEN firstRow = 1 THEN meterCount END), "
+      + "MAX(dateOfReading), MAX(CASE WHEN lastRow = 1 THEN meterCount END), "
+      + "COUNT(*), SUM(CASE WHEN substitute THEN 1 ELSE 0 END), "
+      + "SUM(CASE WHEN comment LIKE '%" + AnalyticsDao.METER_EXCHANGE + "%' OR meterCount < previous "
+      + "THEN 1 ELSE 0 END) "
+      + "FROM (SELECT meterId, YEAR(dateOfReading) * 100 + MONTH(dateOfReading) AS yearMonth, kindOfMeter, "
+      + "customer, dateOfReading, meterCount, comment, substitute, "
+      + "ROW_NUMBER() OVER (PARTITION BY meterId, YEAR(dateOfReading), MONTH(dateOfReading) "
+      + "ORDER BY dateOfReading, meterCount) AS firstRow, "
+      + "ROW_NUMBER() OVER (PARTITION BY meterId, YEAR(dateOfReading), MONTH(dateOfReading) "
+      + "ORDER BY dateOfReading DESC, meterCount DESC) AS lastRow, "
+      + "LAG(meterCount) OVER (PARTITION BY meterId, YEAR(dateOfReading), MONTH(dateOfReading) "
+      + "ORDER BY dateOfReading, meterCount) AS previous "
+      + "FROM Reading WHERE dateOfReading IS NOT NULL AND meterCount IS NOT NULL) r "
+      + "GROUP BY meterId, yearMonth";
+
+  private MeterMonths() {
+  }
+
+  /**
+   * Merges newly inserted readings into their months.
+   */
+  public static void add(Connection connection, Collection<Sample> samples) throws SQLException {
+    Map<Key, Aggregate> aggregates = new TreeMap<>();
+    for (Sample sample : samples.stream().filter(Sample::counted).sorted(Sample.ORDER).toList()) {
+      aggregates.computeIfAbsent(Key.of(sample.meterId(), sample.dateOfReading()), key -> new Aggregate())
+          .add(sample);
+    }
+    if (aggregates.isEmpty()) {
+      return;
+    }
+
+    try (PreparedStatement statement = connection.prepareStatement(MERGE)) {
+      for (Map.Entry<Key, Aggregate> entry : aggregates.entrySet()) {
+        bind(statement, entry.getKey(), entry.getValue());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+
+  /**
+   * Recomputes the given months from their readings, after readings were changed or deleted.
+   */
+  public static void refresh(Connection connection, Collection<Key> keys) throws SQLException {
+    SortedSet<Key> sorted = new TreeSet<>(keys);
+    try (PreparedStatement delete = connection.prepareStatement(
+            "DELETE FROM MeterMonth WHERE meterId = ? AND yearMonth = ?");
+        PreparedStatement select = connection.prepareStatement(SELECT_SAMPLES);
+        PreparedStatement insert = connection.prepareStatement(MERGE)) {
+      for (Key key : sorted) {
+        // The locking read sees the latest committed readings whatever the snapshot of the
+        // transaction is, and waits for imports that are still writing to this month. The
+        // readings are locked before the MeterMonth row, the same order an import uses.
+        Aggregate aggregate = new Aggregate();
+        select.setString(1, key.meterId());
+        select.setObject(2, key.firstDay());
+        select.setObject(3, key.firstDay().plusMonths(1));
+        try (ResultSet resultSet = select.executeQuery()) {
+          while (resultSet.next()) {
+            String kind = resultSet.getString("kindOfMeter");
+            aggregate.add(new Sample(
+                resultSet.getString("meterId"),
+                kind != null ? KindOfMeter.valueOf(kind) : null,
+                resultSet.getObject("customer", UUID.class),
+                resultSet.getObject("dateOfReading", LocalDate.class),
+                resultSet.getDouble("meterCount"),
+                Sample.exchange(resultSet.getString("comment")),
+                resultSet.getBoolean("substitute")));
+          }
+        }
+        delete.setString(1, key.meterId());
+        delete.setInt(2, key.yearMonth());
+        delete.executeUpdate();
+        if (aggregate.readings > 0) {
+          bind(insert, key, aggregate);
+          insert.executeUpdate();
+        }
+      }
+    }
+  }
+
+  /**
+   * Looks up and locks the months of existing readings before they are changed.
+   */
+  static List<Key> keysOf(Connection connection, Collection<UUID> readingIds) throws SQLException {
+    List<Key> keys = new ArrayList<>();
+    List<UUID> ids = new ArrayList<>(readingIds);
+    for (int from = 0; from < ids.size(); from += BatchStatements.MAX_IN_LIST) {
+      List<UUID> batch = BatchStatements.inList(
+          ids.subList(from, Math.min(from + BatchStatements.MAX_IN_LIST, ids.size())));
+      try (PreparedStatement statement = connection.prepareStatement(
+          "SELECT meterId, dateOfReading FROM Reading WHERE id IN ("
+              + BatchStatements.placeholders(batch.size()) + ") FOR UPDATE")) {
+        for (int i = 0; i < batch.size(); i++) {
+          statement.setObject(i + 1, batch.get(i));
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            String meterId = resultSet.getString(1);
+            LocalDate date = resultSet.getObject(2, LocalDate.class);
+            if (meterId != null && date != null) {
+              keys.add(Key.of(meterId, date));
+            }
+          }
+        }
+      }
+    }
+    return keys;
+  }
+
+  static List<Key> keysOf(Collection<Sample> samples) {
+    return samples.stream().filter(Sample::counted).map(s -> Key.of(s.meterId(), s.dateOfReading())).toList();
+  }
+
+  /**
+   * Recomputes the whole table from the readings, e.g. after readings were written past the
+   * DAOs.
+   *
+   * @return the number of meter months
+   */
+  public static int rebuild() {
+    try (Connection connection = DbConnection.getInstance().acquireConnection()) {
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate("DELETE FROM MeterMonth");
+        int rows = statement.executeUpdate(REBUILD);
+        connection.commit();
+        return rows;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("MeterMonth rebuild failure: " + e.getMessage(), e);
+    }
+  }
+
+  private static void bind(PreparedStatement statement, Key key, Aggregate aggregate) throws SQLException {
+    statement.setString(1, key.meterId());
+    statement.setInt(2, key.yearMonth());
+    statement.setString(3, aggregate.kindOfMeter != null ? aggregate.kindOfMeter.name() : null);
+    statement.setObject(4, aggregate.customer);
+    statement.setObject(5, aggregate.firstDate);
+    statement.setDouble(6, aggregate.firstCount);
+    statement.setObject(7, aggregate.lastDate);
+    statement.setDouble(8, aggregate.lastCount);
+    statement.setInt(9, aggregate.readings);
+    statement.setInt(10, aggregate.substitutes);
+    statement.setInt(11, aggregate.resets);
+  }
+}
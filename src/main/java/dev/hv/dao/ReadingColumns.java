@@ -0,0 +1,449 @@
+package dev.hv.dao;
+
+import dev.hv.metrics.MetricRegistry;
+import dev.hv.metrics.SqlTimer;
+import dev.hv.model.KindOfMeter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional in-process replica of the reading time series for the consumption analytics,
+ * keyed by meter id. Each series holds the readings of one customer, kind of meter and
+ * meter id in the order the consumption is computed in, as primitive columns in direct
+ * buffers outside the heap: epoch days as ints, meter counts as doubles and bitsets for
+ * substitute readings and meter exchanges. A scan creates no objects per row and the
+ * garbage collector never has to trace the readings.
+ * <p>
+ * Switched on with {@code -Dhv.readingColumns=true}; it is then loaded when the tables are
+ * created and ReadingDao refreshes the meters it wrote after every commit. Series are never
+ * changed in place: a refresh builds new columns for its meters and swaps them in, so a
+ * reader always sees whole series. Like MeterMonth it leaves out readings without a date, and
+ * readings without a kind of meter, which belong to no consumption series.
+ */
+public final class ReadingColumns {
+
+  public static final boolean ENABLED = Boolean.getBoolean("hv.readingColumns");
+
+  private static final int FETCH_SIZE = 1000;
+
+  private static final String SELECT_SERIES = "SELECT customer, kindOfMeter, meterId, dateOfReading, meterCount, "
+      + "substitute, comment FROM Reading WHERE dateOfReading IS NOT NULL AND kindOfMeter IS NOT NULL ";
+
+  // Order of the LAG() window in AnalyticsDao
+  private static final String ORDER_SERIES = "ORDER BY customer, kindOfMeter, meterId, dateOfReading, meterCount, id";
+
+  private static final Logger logger = LogManager.getLogger(ReadingColumns.class);
+  private static final ReadingColumns INSTANCE = new ReadingColumns();
+
+  static {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.gauge("hv_reading_columns_rows", "Readings in the in-memory columns", () -> INSTANCE.stats()[0]);
+    registry.gauge("hv_reading_columns_bytes", "Off-heap bytes of the in-memory columns",
+        () -> INSTANCE.stats()[1]);
+  }
+
+  /**
+   * Consecutive rows in direct buffers. Rows are only appended while a block is built and
+   * never changed once its series are published.
+   */
+  static final class Block {
+    private IntBuffer days;
+    private DoubleBuffer counts;
+    private LongBuffer substitutes;
+    private LongBuffer exchanges;
+    private int size;
+
+    Block(int capacity) {
+      allocate(Math.max(capacity, 64));
+    }
+
+    private void allocate(int capacity) {
+      IntBuffer oldDays = days;
+      DoubleBuffer oldCounts = counts;
+      LongBuffer oldSubstitutes = substitutes;
+      LongBuffer oldExchanges = exchanges;
+      days = direct(capacity * Integer.BYTES).asIntBuffer();
+      counts = direct(capacity * Double.BYTES).asDoubleBuffer();
+      substitutes = direct(words(capacity) * Long.BYTES).asLongBuffer();
+      exchanges = direct(words(capacity) * Long.BYTES).asLongBuffer();
+      if (oldDays != null) {
+        days.put(0, oldDays, 0, size);
+        counts.put(0, oldCounts, 0, size);
+        substitutes.put(0, oldSubstitutes, 0, words(size));
+        exchanges.put(0, oldExchanges, 0, words(size));
+      }
+    }
+
+    private static ByteBuffer direct(int bytes) {
+      return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static int words(int bits) {
+      return (bits + 63) >>> 6;
+    }
+
+    void add(int day, double count, boolean substitute, boolean exchange) {
+      if (size == days.capacity()) {
+        allocate(size * 2);
+      }
+      days.put(size, day);
+      counts.put(size, count);
+      if (substitute) {
+        set(substitutes, size);
+      }
+      if (exchange) {
+        set(exchanges, size);
+      }
+      size++;
+    }
+
+    private static void set(LongBuffer bits, int row) {
+      bits.put(row >>> 6, bits.get(row >>> 6) | 1L << row);
+    }
+
+    private static boolean get(LongBuffer bits, int row) {
+      return (bits.get(row >>> 6) & 1L << row) != 0;
+    }
+
+    int day(int row) {
+      return days.get(row);
+    }
+
+    double count(int row) {
+      return counts.get(row);
+    }
+
+    boolean substitute(int row) {
+      return get(substitutes, row);
+    }
+
+    boolean exchange(int row) {
+      return get(exchanges, row);
+    }
+
+    long bytes() {
+      return (long) days.capacity() * (Integer.BYTES + Double.BYTES) + 2L * substitutes.capacity() * Long.BYTES;
+    }
+  }
+
+  /**
+   * Rows {@code [offset, offset + length)} of a block, ordered by date and count.
+   */
+  record Series(UUID customer, KindOfMeter kindOfMeter, String meterId, Block block, int offset, int length) {
+
+    // First row on or after the day, like Arrays.binarySearch on the sorted days
+    int from(int day) {
+      int low = offset;
+      int high = offset + length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (block.day(middle) < day) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * Collects rows in series order into one block and cuts it into series.
+   */
+  static final class Builder {
+    private final Block block;
+    private final Map<String, List<Series>> meters = new HashMap<>();
+    private UUID customer;
+    private KindOfMeter kindOfMeter;
+    private String meterId;
+    private int start;
+
+    Builder(int capacity) {
+      block = new Block(capacity);
+    }
+
+    void add(UUID customer, KindOfMeter kindOfMeter, String meterId, LocalDate date, double count,
+        boolean substitute, String comment) {
+      if (this.meterId == null || !this.meterId.equals(meterId) || this.kindOfMeter != kindOfMeter
+          || !Objects.equals(this.customer, customer)) {
+        cut();
+        this.customer = customer;
+        this.kindOfMeter = kindOfMeter;
+        this.meterId = meterId;
+      }
+      block.add((int) date.toEpochDay(), count, substitute,
+          comment != null && comment.contains(AnalyticsDao.METER_EXCHANGE));
+    }
+
+    private void cut() {
+      if (block.size > start) {
+        meters.computeIfAbsent(meterId, m -> new ArrayList<>())
+            .add(new Series(customer, kindOfMeter, meterId, block, start, block.size - start));
+        start = block.size;
+      }
+    }
+
+    Map<String, List<Series>> build() {
+      cut();
+      return meters;
+    }
+  }
+
+  private record Group(UUID customer, KindOfMeter kindOfMeter, int day) {
+  }
+
+  // Order of the GROUP BY in AnalyticsDao; customers as in a UUID column of the database
+  private static final Comparator<Group> GROUP_ORDER = Comparator
+      .comparing((Group g) -> g.customer() != null ? g.customer().toString() : "")
+      .thenComparing(g -> g.kindOfMeter().name())
+      .thenComparingInt(Group::day);
+
+  private volatile Map<String, List<Series>> meters;
+
+  ReadingColumns() {
+  }
+
+  public static ReadingColumns getInstance() {
+    return INSTANCE;
+  }
+
+  public boolean isLoaded() {
+    return meters != null;
+  }
+
+  /**
+   * Replaces the replica with all readings of the database.
+   *
+   * @return the number of readings loaded
+   */
+  public synchronized int load() {
+    try (SqlTimer timer = SqlTimer.start("ReadingColumns.load");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      int rows;
+      try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM Reading");
+          ResultSet resultSet = statement.executeQuery()) {
+        rows = resultSet.next() ? resultSet.getInt(1) : 0;
+      }
+      Builder builder = new Builder(rows);
+      int loaded = read(connection, SELECT_SERIES + ORDER_SERIES, List.of(), builder);
+      install(builder.build());
+      timer.rows(loaded);
+      return loaded;
+    } catch (SQLException e) {
+      throw new RuntimeException("ReadingColumns load failure: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reloads the series of the meters from the committed readings. Refreshes are serialized,
+   * so the last one always read after the last commit it was called for.
+   */
+  public synchronized void refresh(Collection<String> meterIds) {
+    if (meters == null || meterIds.isEmpty()) {
+      return;
+    }
+    List<String> ids = new ArrayList<>(new TreeSet<>(meterIds));
+    try (SqlTimer timer = SqlTimer.start("ReadingColumns.refresh");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      Builder builder = new Builder(ids.size());
+      int rows = 0;
+      for (int from = 0; from < ids.size(); from += BatchStatements.MAX_IN_LIST) {
+        List<String> batch = BatchStatements.inList(
+            ids.subList(from, Math.min(from + BatchStatements.MAX_IN_LIST, ids.size())));
+        rows += read(connection, SELECT_SERIES + "AND meterId IN (" + BatchStatements.placeholders(batch.size())
+            + ") " + ORDER_SERIES, batch, builder);
+      }
+      Map<String, List<Series>> refreshed = builder.build();
+      for (String meterId : ids) {
+        List<Series> series = refreshed.get(meterId);
+        if (series != null) {
+          meters.put(meterId, List.copyOf(series));
+        } else {
+          meters.remove(meterId);
+        }
+      }
+      timer.rows(rows);
+    } catch (SQLException | RuntimeException e) {
+      // The write is committed, but a stale replica would give wrong answers, so fall back to
+      // the database until the next rebuild
+      meters = null;
+      logger.error("ReadingColumns refresh failed, the replica is dropped", e);
+    }
+  }
+
+  /**
+   * Reloads the series of the customers, after deleting them set the customer of their
+   * readings to NULL.
+   */
+  public synchronized void refreshCustomers(Collection<UUID> customers) {
+    Map<String, List<Series>> current = meters;
+    if (current == null || customers.isEmpty()) {
+      return;
+    }
+    Set<UUID> deleted = new HashSet<>(customers);
+    Set<String> meterIds = new HashSet<>();
+    current.forEach((meterId, series) -> {
+      for (Series one : series) {
+        if (one.customer() != null && deleted.contains(one.customer())) {
+          meterIds.add(meterId);
+          break;
+        }
+      }
+    });
+    refresh(meterIds);
+  }
+
+  /**
+   * Empties a loaded replica, after the tables were truncated or dropped.
+   */
+  public synchronized void clear() {
+    if (meters != null) {
+      meters = new ConcurrentHashMap<>();
+    }
+  }
+
+  void install(Map<String, List<Series>> series) {
+    Map<String, List<Series>> installed = new ConcurrentHashMap<>();
+    series.forEach((meterId, list) -> installed.put(meterId, List.copyOf(list)));
+    meters = installed;
+  }
+
+  private static int read(Connection connection, String sql, List<String> parameters, Builder builder)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(FETCH_SIZE);
+      for (int i = 0; i < parameters.size(); i++) {
+        statement.setString(i + 1, parameters.get(i));
+      }
+      int rows = 0;
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          double count = resultSet.getDouble(5);
+          builder.add(resultSet.getObject(1, UUID.class), KindOfMeter.valueOf(resultSet.getString(2)),
+              resultSet.getString(3), resultSet.getObject(4, LocalDate.class),
+              resultSet.wasNull() ? Double.NaN : count, resultSet.getBoolean(6), resultSet.getString(7));
+          rows++;
+        }
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * The consumption by the rules of {@link AnalyticsDao}, computed from the columns on the
+   * readings themselves, so ranges need not be whole months.
+   *
+   * @return null when the replica is not loaded
+   */
+  List<AnalyticsDao.Consumption> consumption(UUID customerId, KindOfMeter kindOfMeter, LocalDate startDate,
+      LocalDate endDate, AnalyticsDao.Period period, boolean byCustomer) {
+    Map<String, List<Series>> snapshot = meters;
+    if (snapshot == null) {
+      return null;
+    }
+    int startDay = startDate != null ? (int) startDate.toEpochDay() : Integer.MIN_VALUE;
+    int endDay = endDate != null ? (int) endDate.toEpochDay() : Integer.MAX_VALUE;
+
+    Map<Group, double[]> sums = new TreeMap<>(GROUP_ORDER);
+    for (List<Series> list : snapshot.values()) {
+      for (Series series : list) {
+        if ((customerId != null && !customerId.equals(series.customer()))
+            || (kindOfMeter != null && kindOfMeter != series.kindOfMeter())) {
+          continue;
+        }
+        Block block = series.block();
+        UUID customer = byCustomer ? series.customer() : null;
+        // The first row in range still subtracts its predecessor from before the range
+        int first = Math.max(series.from(startDay), series.offset() + 1);
+        int end = endDay == Integer.MAX_VALUE ? series.offset() + series.length() : series.from(endDay + 1);
+
+        // Rows are ordered by date, so a group only ends when its period does
+        int groupDay = 0;
+        int groupEnd = Integer.MIN_VALUE;
+        double consumption = 0;
+        int readings = 0;
+        for (int row = first; row < end; row++) {
+          if (block.exchange(row)) {
+            continue;
+          }
+          double count = block.count(row);
+          double previous = block.count(row - 1);
+          if (Double.isNaN(count) || Double.isNaN(previous)) {
+            continue;
+          }
+          int day = block.day(row);
+          if (day >= groupEnd) {
+            add(sums, customer, series.kindOfMeter(), groupDay, consumption, readings);
+            groupDay = period.startDay(day);
+            groupEnd = period.nextDay(groupDay);
+            consumption = 0;
+            readings = 0;
+          }
+          consumption += count < previous ? count : count - previous;
+          readings++;
+        }
+        add(sums, customer, series.kindOfMeter(), groupDay, consumption, readings);
+      }
+    }
+
+    List<AnalyticsDao.Consumption> result = new ArrayList<>(sums.size());
+    sums.forEach((group, sum) -> {
+      LocalDate start = period == AnalyticsDao.Period.TOTAL ? null : LocalDate.ofEpochDay(group.day());
+      result.add(new AnalyticsDao.Consumption(group.customer(), group.kindOfMeter(),
+          start != null ? period.label(start) : null, start, sum[0], (int) sum[1]));
+    });
+    return result;
+  }
+
+  private static void add(Map<Group, double[]> sums, UUID customer, KindOfMeter kindOfMeter, int day,
+      double consumption, int readings) {
+    if (readings > 0) {
+      double[] sum = sums.computeIfAbsent(new Group(customer, kindOfMeter, day), g -> new double[2]);
+      sum[0] += consumption;
+      sum[1] += readings;
+    }
+  }
+
+  // Readings and off-heap bytes; blocks shared by several series are counted once
+  private long[] stats() {
+    Map<String, List<Series>> snapshot = meters;
+    long rows = 0;
+    Map<Block, Boolean> blocks = new IdentityHashMap<>();
+    if (snapshot != null) {
+      for (List<Series> list : snapshot.values()) {
+        for (Series series : list) {
+          rows += series.length();
+          blocks.put(series.block(), Boolean.TRUE);
+        }
+      }
+    }
+    long bytes = blocks.keySet().stream().mapToLong(Block::bytes).sum();
+    return new long[] {rows, bytes};
+  }
+}
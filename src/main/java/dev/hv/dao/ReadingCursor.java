@@ -0,0 +1,156 @@
+package dev.hv.dao;
+
+import dev.hv.ReadingRecord;
+import dev.hv.model.KindOfMeter;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Flyweight over a batch of readings held in primitive arrays, one per column. The handler
+ * of {@link ReadingDao#streamRows} gets the same cursor for every row; its accessors read
+ * the current row without creating a Reading, a UUID or a LocalDate for it.
+ * <p>
+ * A cursor is only valid inside the handler and is refilled with the next batch
+ * afterwards. Use {@link #toRecord()} to keep a row.
+ */
+public final class ReadingCursor {
+
+  private final long[] idMost;
+  private final long[] idLeast;
+  private final long[] customerMost;
+  private final long[] customerLeast;
+  private final int[] epochDays;
+  private final KindOfMeter[] kinds;
+  private final double[] meterCounts;
+  private final String[] meterIds;
+  private final String[] comments;
+  private final boolean[] substitutes;
+  private final long[] versions;
+  private int size;
+  private int row;
+
+  ReadingCursor(int capacity) {
+    idMost = new long[capacity];
+    idLeast = new long[capacity];
+    customerMost = new long[capacity];
+    customerLeast = new long[capacity];
+    epochDays = new int[capacity];
+    kinds = new KindOfMeter[capacity];
+    meterCounts = new double[capacity];
+    meterIds = new String[capacity];
+    comments = new String[capacity];
+    substitutes = new boolean[capacity];
+    versions = new long[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    // Drop the strings of the last batch so they can be collected
+    Arrays.fill(meterIds, 0, size, null);
+    Arrays.fill(comments, 0, size, null);
+    size = 0;
+    row = -1;
+  }
+
+  /**
+   * Appends the current row of a result set of ReadingDao's select.
+   */
+  void add(RowMapper.Row row) throws SQLException {
+    int i = size++;
+    row.readUuid(ReadingDao.Column.ID);
+    idMost[i] = row.uuidMost();
+    idLeast[i] = row.uuidLeast();
+    boolean hasCustomer = row.readUuid(ReadingDao.Column.CUSTOMER);
+    customerMost[i] = hasCustomer ? row.uuidMost() : 0;
+    customerLeast[i] = hasCustomer ? row.uuidLeast() : 0;
+    LocalDate date = row.date(ReadingDao.Column.DATE_OF_READING);
+    epochDays[i] = date != null ? (int) date.toEpochDay() : ReadingRecord.NO_DATE;
+    kinds[i] = row.kindOfMeter(ReadingDao.Column.KIND_OF_METER);
+    meterCounts[i] = row.doubleValue(ReadingDao.Column.METER_COUNT);
+    meterIds[i] = row.string(ReadingDao.Column.METER_ID);
+    comments[i] = row.string(ReadingDao.Column.COMMENT);
+    substitutes[i] = row.booleanValue(ReadingDao.Column.SUBSTITUTE);
+    versions[i] = row.longValue(ReadingDao.Column.VERSION);
+  }
+
+  /**
+   * Moves to the next row of the batch.
+   *
+   * @return false after the last row
+   */
+  public boolean next() {
+    if (row + 1 >= size) {
+      return false;
+    }
+    row++;
+    return true;
+  }
+
+  public long idMost() {
+    return idMost[row];
+  }
+
+  public long idLeast() {
+    return idLeast[row];
+  }
+
+  /**
+   * Both halves 0 when the reading has no customer.
+   */
+  public long customerMost() {
+    return customerMost[row];
+  }
+
+  public long customerLeast() {
+    return customerLeast[row];
+  }
+
+  /**
+   * {@link ReadingRecord#NO_DATE} when the reading has no date.
+   */
+  public int epochDay() {
+    return epochDays[row];
+  }
+
+  public KindOfMeter kindOfMeter() {
+    return kinds[row];
+  }
+
+  public double meterCount() {
+    return meterCounts[row];
+  }
+
+  public String meterId() {
+    return meterIds[row];
+  }
+
+  public String comment() {
+    return comments[row];
+  }
+
+  public boolean substitute() {
+    return substitutes[row];
+  }
+
+  public long version() {
+    return versions[row];
+  }
+
+  public ReadingRecord toRecord() {
+    return new ReadingRecord(idMost[row], idLeast[row], customerMost[row], customerLeast[row], epochDays[row],
+        kinds[row], meterCounts[row], meterIds[row], comments[row], substitutes[row], versions[row]);
+  }
+
+  // Position of the current row for the next keyset page
+  ReadingKey key() {
+    int day = epochDays[row];
+    return new ReadingKey(day != ReadingRecord.NO_DATE ? LocalDate.ofEpochDay(day) : null,
+        new UUID(idMost[row], idLeast[row]));
+  }
+}
@@ -2,218 +2,632 @@ package dev.hv.dao;
 
 import dev.hv.Customer;
 import dev.hv.Reading;
-import dev.hv.model.Gender;
+import dev.hv.metrics.SqlTimer;
 import dev.hv.model.KindOfMeter;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 public class ReadingDao implements IDao<Reading> {
 
-  private final Connection connection = DbConnection.getInstance().getConnection();
+  static final int STREAM_BATCH_SIZE = 500;
+
+  // Customers are resolved through CustomerCache instead of being joined into every row
+  private static final String SELECT_READING = "SELECT id, " +
+      "comment, " +
+      "customer, " +
+      "dateOfReading, " +
+      "kindOfMeter, " +
+      "meterCount, " +
+      "meterId, " +
+      "substitute, " +
+      "version " +
+      "FROM Reading ";
+
+  private static final String INSERT_READING = "INSERT INTO Reading "
+      + "(id, comment, customer, dateOfReading, kindOfMeter, meterCount, meterId, substitute) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  // The export joins the customers, so its connection is the only one it needs
+  private static final String SELECT_EXPORT = "SELECT Reading.id, comment, customer, dateOfReading, kindOfMeter, "
+      + "meterCount, meterId, substitute, Reading.version, "
+      + "firstName, lastName, birthDate, gender, Customer.version AS customerVersion "
+      + "FROM Reading LEFT JOIN Customer ON Customer.id = Reading.customer ";
+
+  // Positions of the columns in READINGS, in the order of SELECT_READING
+  static final class Column {
+    static final int ID = 0;
+    static final int COMMENT = 1;
+    static final int CUSTOMER = 2;
+    static final int DATE_OF_READING = 3;
+    static final int KIND_OF_METER = 4;
+    static final int METER_COUNT = 5;
+    static final int METER_ID = 6;
+    static final int SUBSTITUTE = 7;
+    static final int VERSION = 8;
+
+    private Column() {
+    }
+  }
+
+  // Maps a row without its customer, which is resolved through CustomerCache
+  static final RowMapper<Reading> READINGS = RowMapper.of(row -> {
+    Reading reading = new Reading(
+        row.uuid(Column.ID),
+        row.string(Column.COMMENT),
+        null,
+        row.date(Column.DATE_OF_READING),
+        row.kindOfMeter(Column.KIND_OF_METER),
+        row.doubleValue(Column.METER_COUNT),
+        row.string(Column.METER_ID),
+        row.booleanValue(Column.SUBSTITUTE));
+    reading.setVersion(row.longValue(Column.VERSION));
+    return reading;
+  }, "id", "comment", "customer", "dateOfReading", "kindOfMeter", "meterCount", "meterId", "substitute", "version");
+
+  // The joined customer of an export row, null if the reading has none
+  private static final RowMapper<Customer> EXPORT_CUSTOMERS = RowMapper.of(row -> {
+    UUID id = row.uuid(0);
+    String firstName = row.string(1);
+    if (id == null || firstName == null) {
+      return null;
+    }
+    Customer customer = new Customer(id, firstName, row.string(2), row.gender(4), row.date(3));
+    customer.setVersion(row.longValue(5));
+    return customer;
+  }, "customer", "firstName", "lastName", "birthDate", "gender", "customerVersion");
+
+  // Bits of a filter combination, and of the shape of a select with cursor, limit and order
+  private static final int CUSTOMER = 1;
+  private static final int START_DATE = 2;
+  private static final int END_DATE = 4;
+  private static final int KIND = 8;
+  private static final int FILTERS = CUSTOMER | START_DATE | END_DATE | KIND;
+  private static final int AFTER = 16;
+  private static final int LIMIT = 32;
+  private static final int LATEST_FIRST = 64;
+  // The cursor is a reading without date
+  private static final int AFTER_NO_DATE = 128;
+
+  // Built once, so every filter combination has one SQL text that stays in the statement caches
+  private static final String[] SELECTS = new String[AFTER_NO_DATE << 1];
+  private static final String[] EXPORTS = new String[FILTERS + 1];
+
+  static {
+    for (int shape = 0; shape < SELECTS.length; shape++) {
+      SELECTS[shape] = buildSelect(shape);
+    }
+    for (int filters = 0; filters < EXPORTS.length; filters++) {
+      EXPORTS[filters] = SELECT_EXPORT + where(filters)
+          + "ORDER BY customer, kindOfMeter, meterId, dateOfReading, meterCount, Reading.id";
+    }
+  }
+
+  private final CustomerDao customerDao = new CustomerDao();
 
   // use PreparedStatement to avoid SQLException
   @Override
   public void create(Reading reading) {
-    String sql = "INSERT INTO Reading (id, comment, customer, dateOfReading, kindOfMeter, meterCount, meterId, substitute) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-    try (PreparedStatement statement = connection.prepareStatement(sql)) { // PreparedStatement checks sql command to
-                                                                           // avoid sql injections
-      statement.setObject(1, reading.getId());
-      statement.setString(2, reading.getComment());
-      statement.setObject(3, reading.getCustomer());
-      statement.setObject(4, reading.getDateOfReading());
-      statement.setObject(5, reading.getKindOfMeter());
-      statement.setDouble(6, reading.getMeterCount());
-      statement.setString(7, reading.getMeterId());
-      statement.setBoolean(8, reading.getSubstitute());
-
-      int insertedRows = statement.executeUpdate(); // indicates the number of rows affected
-      if (insertedRows != 1) {
-        throw new RuntimeException("Null or more than one rows would be changed."); // to console a RuntimeError when
-                                                                                    // null or more than one rows are
-                                                                                    // changed
-      }
+    // PreparedStatement checks sql command to avoid sql injections
+    try (SqlTimer timer = SqlTimer.start("Reading.insert");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      inTransaction(connection, () -> {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_READING)) {
+          bindInsert(statement, reading);
+
+          int insertedRows = statement.executeUpdate(); // indicates the number of rows affected
+          timer.rows(insertedRows);
+          if (insertedRows != 1) {
+            throw new RuntimeException("Null or more than one rows would be changed."); // to console a RuntimeError
+                                                                                        // when null or more than one
+                                                                                        // rows are changed
+          }
+        }
+        MeterMonths.add(connection, List.of(MeterMonths.Sample.of(reading)));
+        return true;
+      });
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
+    ReadingColumns.getInstance().refresh(meterIds(List.of(reading)));
   }
 
   @Override
   public Reading read(UUID id) {
-    String sql = "SELECT Reading.id, " +
-        "Reading.comment, " +
-        "Reading.customer, " +
-        "Reading.dateOfReading, " +
-        "Reading.kindOfMeter, " +
-        "Reading.meterCount, " +
-        "Reading.meterId, " +
-        "Reading.substitute, " +
-        "Customer.id, " +
-        "Customer.firstName, " +
-        "Customer.lastName, " +
-        "Customer.birthDate, " +
-        "Customer.gender " +
-        "FROM Reading " +
-        "JOIN Customer ON Reading.customer=Customer.id " +
-        "WHERE Reading.id = ?";
-
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    String sql = SELECT_READING + "WHERE id = ?";
+
+    Reading reading;
+    UUID customerId;
+    try (SqlTimer timer = SqlTimer.start("Reading.select");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
       statement.setObject(1, id);
 
       try (ResultSet resultSet = statement.executeQuery()) {
-        // logger.debug("Search for {} returned {} rows", id,
-        // resultSet.getString("kindOfMeter"));
-        if (resultSet.next()) {
-          return new Reading(
-              resultSet.getObject("Reading.id", UUID.class),
-              resultSet.getString("Reading.comment"),
-              new Customer(resultSet.getObject(
-                  "Customer.id", UUID.class),
-                  resultSet.getString("Customer.firstName"),
-                  resultSet.getString("Customer.lastName"),
-                  Gender.valueOf(resultSet.getString("Customer.gender")),
-                  resultSet.getObject("Customer.birthDate", LocalDate.class)),
-              resultSet.getObject("Reading.dateOfReading", LocalDate.class),
-              KindOfMeter.valueOf(resultSet.getString("Reading.kindOfMeter")),
-              resultSet.getDouble("Reading.meterCount"),
-              resultSet.getString("Reading.meterId"),
-              resultSet.getBoolean("Reading.substitute"));
-        } else {
+        if (!resultSet.next()) {
           return null;
         }
+        RowMapper.Row row = READINGS.row(resultSet);
+        reading = READINGS.map(row);
+        timer.rows(1);
+        customerId = row.uuid(Column.CUSTOMER);
       }
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
+    reading.setCustomer(customerId != null ? customerDao.read(customerId) : null);
+    return reading;
   }
 
   @Override
-  public void update(Reading reading) {
-    String sql = "UPDATE Reading SET comment = ?, customer = ?, dateOfReading = ?, kindOfMeter = ?, meterCount = ?, meterId = ?, substitute = ? WHERE id = ?";
-
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setString(1, reading.getComment());
-      statement.setObject(2, reading.getCustomer());
-      statement.setObject(3, reading.getDateOfReading());
-      statement.setObject(4, reading.getKindOfMeter());
-      statement.setDouble(5, reading.getMeterCount());
-      statement.setString(6, reading.getMeterId());
-      statement.setBoolean(7, reading.getSubstitute());
-      statement.setObject(8, reading.getId());
-
-      int insertedRows = statement.executeUpdate();
-      if (insertedRows != 1) {
-        throw new RuntimeException("Null or more than one rows would be changed.");
-      }
+  public boolean update(Reading reading) {
+    // Without a version the update is unconditional
+    Long version = reading.getVersion();
+    String sql = "UPDATE Reading SET comment = ?, customer = ?, dateOfReading = ?, kindOfMeter = ?, meterCount = ?, meterId = ?, substitute = ?, version = version + 1 WHERE id = ?"
+        + (version != null ? " AND version = ?" : "");
 
+    List<MeterMonths.Key> months = new ArrayList<>();
+    try (SqlTimer timer = SqlTimer.start("Reading.update");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      boolean updated = inTransaction(connection, () -> {
+        months.addAll(MeterMonths.keysOf(connection, List.of(reading.getId())));
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+          bindUpdate(statement, reading);
+          if (version != null) {
+            statement.setLong(9, version);
+          }
+
+          int updatedRows = statement.executeUpdate();
+          timer.rows(updatedRows);
+          if (updatedRows == 0) {
+            // Only a versioned update needs to know why nothing matched
+            if (version != null
+                && !BatchStatements.existing(connection, "Reading", List.of(reading.getId())).isEmpty()) {
+              throw new VersionConflictException("Reading", reading.getId(), version);
+            }
+            return false;
+          }
+        }
+        months.addAll(MeterMonths.keysOf(List.of(MeterMonths.Sample.of(reading))));
+        MeterMonths.refresh(connection, months);
+        if (version != null) {
+          reading.setVersion(version + 1);
+        }
+        return true;
+      });
+      if (updated) {
+        ReadingColumns.getInstance().refresh(meterIdsOf(months));
+      }
+      return updated;
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
-
   }
 
   @Override
   public void delete(UUID id) {
     String sql = "DELETE FROM Reading WHERE id=?";
 
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      statement.setObject(1, id);
-
-      int insertedRows = statement.executeUpdate();
-      if (insertedRows != 1) {
-        throw new RuntimeException("Null or more than one rows would be changed.");
-      }
+    List<MeterMonths.Key> months = new ArrayList<>();
+    try (SqlTimer timer = SqlTimer.start("Reading.delete");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      inTransaction(connection, () -> {
+        months.addAll(MeterMonths.keysOf(connection, List.of(id)));
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+          statement.setObject(1, id);
 
+          int insertedRows = statement.executeUpdate();
+          timer.rows(insertedRows);
+          if (insertedRows != 1) {
+            throw new RuntimeException("Null or more than one rows would be changed.");
+          }
+        }
+        MeterMonths.refresh(connection, months);
+        return true;
+      });
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
+    ReadingColumns.getInstance().refresh(meterIdsOf(months));
   }
 
-  public List<Reading> find(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter) {
-    List<Reading> results = new ArrayList<>();
-    StringBuilder sql = new StringBuilder(
-        "SELECT Reading.id, " +
-            "Reading.comment, " +
-            "Reading.customer, " +
-            "Reading.dateOfReading, " +
-            "Reading.kindOfMeter, " +
-            "Reading.meterCount, " +
-            "Reading.meterId, " +
-            "Reading.substitute, " +
-            "Customer.id, " +
-            "Customer.firstName, " +
-            "Customer.lastName, " +
-            "Customer.birthDate, " +
-            "Customer.gender " +
-            "FROM Reading " +
-            "JOIN Customer ON Reading.customer=Customer.id ");
-
-    List<Object> parameters = new ArrayList<>();
-    boolean hasCondition = false;
+  @FunctionalInterface
+  private interface Work {
+    /**
+     * @return whether anything was changed
+     */
+    boolean run() throws SQLException;
+  }
 
-    if (customerId != null) {
-      sql.append(hasCondition ? "AND " : "WHERE ");
-      sql.append("Reading.customer = ? ");
-      parameters.add(customerId);
-      hasCondition = true;
+  private static boolean inTransaction(Connection connection, Work work) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      boolean changed = work.run();
+      connection.commit();
+      if (changed) {
+        TableVersions.getInstance().changed(TableVersions.Table.READING);
+      }
+      return changed;
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
     }
-    if (startDate != null) {
-      sql.append(hasCondition ? "AND " : "WHERE ");
-      sql.append("Reading.dateOfReading >= ? ");
-      parameters.add(startDate);
-      hasCondition = true;
+  }
+
+  @Override
+  public BatchResult createAll(List<Reading> readings, boolean partial) {
+    try (SqlTimer timer = SqlTimer.start("Reading.insertMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) -> {
+        int processed = BatchStatements.execute(connection, INSERT_READING, readings,
+            BatchStatements.allIndexes(readings.size()), Reading::getId, ReadingDao::bindInsert, null, partial,
+            failures);
+        if (partial || failures.isEmpty()) {
+          MeterMonths.add(connection, samples(readings, failures));
+        }
+        return processed;
+      });
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      TableVersions.getInstance().changed(TableVersions.Table.READING);
+      ReadingColumns.getInstance().refresh(meterIds(readings));
     }
-    if (endDate != null) {
-      sql.append(hasCondition ? "AND " : "WHERE ");
-      sql.append("Reading.dateOfReading <= ? ");
-      parameters.add(endDate);
-      hasCondition = true;
+  }
+
+  @Override
+  public BatchResult updateAll(List<Reading> readings, boolean partial) {
+    // Like update, but in one statement for readings with and without a version
+    String sql = "UPDATE Reading SET comment = ?, customer = ?, dateOfReading = ?, kindOfMeter = ?, meterCount = ?, meterId = ?, substitute = ?, version = version + 1 WHERE id = ? AND version = COALESCE(?, version)";
+
+    List<MeterMonths.Key> months = new ArrayList<>();
+    try (SqlTimer timer = SqlTimer.start("Reading.updateMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) -> {
+        List<Integer> indexes = BatchStatements.existingIndexes(connection, "Reading", readings, Reading::getId,
+            failures);
+        if (!partial && !failures.isEmpty()) {
+          return 0;
+        }
+        months.addAll(MeterMonths.keysOf(connection, readings.stream().map(Reading::getId).toList()));
+        int processed = BatchStatements.execute(connection, sql, readings, indexes, Reading::getId,
+            (statement, reading) -> {
+              bindUpdate(statement, reading);
+              statement.setObject(9, reading.getVersion(), Types.BIGINT);
+            }, "Version conflict", partial, failures);
+        if (partial || failures.isEmpty()) {
+          months.addAll(MeterMonths.keysOf(samples(readings, failures)));
+          MeterMonths.refresh(connection, months);
+        }
+        return processed;
+      });
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      TableVersions.getInstance().changed(TableVersions.Table.READING);
+      ReadingColumns.getInstance().refresh(meterIdsOf(months));
     }
-    if (kindOfMeter != null) {
-      sql.append(hasCondition ? "AND " : "WHERE ");
-      sql.append("Reading.kindOfMeter = ? ");
-      parameters.add(kindOfMeter.name());
-    }
-
-    try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
-      for (int i = 0; i < parameters.size(); i++) {
-        Object param = parameters.get(i);
-        if (param instanceof LocalDate) {
-          statement.setObject(i + 1, param);
-        } else if (param instanceof KindOfMeter) {
-          statement.setString(i + 1, param.toString());
-        } else {
-          statement.setObject(i + 1, param);
+  }
+
+  @Override
+  public BatchResult deleteAll(List<UUID> ids, boolean partial) {
+    List<MeterMonths.Key> months = new ArrayList<>();
+    try (SqlTimer timer = SqlTimer.start("Reading.deleteMany")) {
+      BatchResult result = BatchStatements.inTransaction(partial, (connection, failures) -> {
+        months.addAll(MeterMonths.keysOf(connection, ids));
+        int deleted = BatchStatements.deleteAll(connection, "Reading", ids, failures);
+        if (partial || failures.isEmpty()) {
+          MeterMonths.refresh(connection, months);
         }
+        return deleted;
+      });
+      timer.rows(result.processed());
+      return result;
+    } finally {
+      TableVersions.getInstance().changed(TableVersions.Table.READING);
+      ReadingColumns.getInstance().refresh(meterIdsOf(months));
+    }
+  }
+
+  // Meters whose series in ReadingColumns have to be reloaded after a write
+  private static Set<String> meterIds(List<Reading> readings) {
+    Set<String> meterIds = new HashSet<>();
+    readings.forEach(reading -> {
+      if (reading.getMeterId() != null) {
+        meterIds.add(reading.getMeterId());
       }
+    });
+    return meterIds;
+  }
 
+  private static Set<String> meterIdsOf(List<MeterMonths.Key> months) {
+    Set<String> meterIds = new HashSet<>();
+    months.forEach(key -> meterIds.add(key.meterId()));
+    return meterIds;
+  }
+
+  private static List<MeterMonths.Sample> samples(List<Reading> readings, List<BatchResult.Failure> failures) {
+    Set<Integer> failed = new HashSet<>();
+    failures.forEach(failure -> failed.add(failure.index()));
+    List<MeterMonths.Sample> samples = new ArrayList<>(readings.size());
+    for (int i = 0; i < readings.size(); i++) {
+      if (!failed.contains(i)) {
+        samples.add(MeterMonths.Sample.of(readings.get(i)));
+      }
+    }
+    return samples;
+  }
+
+  private static void bindInsert(PreparedStatement statement, Reading reading) throws SQLException {
+    statement.setObject(1, reading.getId());
+    statement.setString(2, reading.getComment());
+    statement.setObject(3, customerId(reading));
+    statement.setObject(4, reading.getDateOfReading());
+    statement.setString(5, reading.getKindOfMeter() != null ? reading.getKindOfMeter().name() : null);
+    statement.setDouble(6, reading.getMeterCount());
+    statement.setString(7, reading.getMeterId());
+    statement.setBoolean(8, reading.getSubstitute());
+  }
+
+  private static void bindUpdate(PreparedStatement statement, Reading reading) throws SQLException {
+    statement.setString(1, reading.getComment());
+    statement.setObject(2, customerId(reading));
+    statement.setObject(3, reading.getDateOfReading());
+    statement.setString(4, reading.getKindOfMeter() != null ? reading.getKindOfMeter().name() : null);
+    statement.setDouble(5, reading.getMeterCount());
+    statement.setString(6, reading.getMeterId());
+    statement.setBoolean(7, reading.getSubstitute());
+    statement.setObject(8, reading.getId());
+  }
+
+  private static UUID customerId(Reading reading) {
+    return reading.getCustomer() instanceof Customer customer ? customer.getId() : null;
+  }
+
+  public List<Reading> find(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter) {
+    return query(customerId, startDate, endDate, kindOfMeter, null, 0, false);
+  }
+
+  /**
+   * Keyset pagination ordered by (dateOfReading, id). Pass the key of the last
+   * reading of the previous page as {@code after} to get the next page.
+   */
+  public List<Reading> findPage(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter,
+      ReadingKey after, int limit) {
+    return query(customerId, startDate, endDate, kindOfMeter, after, limit, false);
+  }
+
+  /**
+   * @return the {@code limit} readings with the latest dateOfReading, latest first
+   */
+  public List<Reading> findLatest(LocalDate startDate, LocalDate endDate, int limit) {
+    return query(null, startDate, endDate, null, null, limit, true);
+  }
+
+  /**
+   * Hands every matching reading to the handler, fetching {@code STREAM_BATCH_SIZE} rows
+   * at a time as keyset pages. No connection is held while the handler runs, so a slow
+   * client never blocks a pooled connection. Each batch is read into the primitive columns
+   * of one {@link ReadingCursor}, which the handler gets once per row; customers are left
+   * as ids for the handler to resolve.
+   */
+  public void streamRows(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter,
+      ReadingKey after, int limit, RowHandler<ReadingCursor> handler) throws IOException {
+    ReadingCursor cursor = new ReadingCursor(remainingBatch(limit));
+    ReadingKey key = after;
+    int remaining = limit;
+    while (true) {
+      int batchSize = remainingBatch(remaining);
+      fill(cursor, customerId, startDate, endDate, kindOfMeter, key, batchSize);
+      int rows = cursor.size();
+      while (cursor.next()) {
+        handler.handle(cursor);
+      }
+      if (rows < batchSize || (remaining > 0 && (remaining -= rows) == 0)) {
+        return;
+      }
+      // The cursor stays on the last row of the batch
+      key = cursor.key();
+    }
+  }
+
+  private static int remainingBatch(int remaining) {
+    return remaining > 0 ? Math.min(remaining, STREAM_BATCH_SIZE) : STREAM_BATCH_SIZE;
+  }
+
+  private static void fill(ReadingCursor cursor, UUID customerId, LocalDate startDate, LocalDate endDate,
+      KindOfMeter kindOfMeter, ReadingKey after, int limit) {
+    String sql = select(customerId, startDate, endDate, kindOfMeter, after, limit, false);
+    cursor.clear();
+    try (SqlTimer timer = SqlTimer.start("Reading.find");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      bind(statement, customerId, startDate, endDate, kindOfMeter, after, limit);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = READINGS.row(resultSet);
+        while (resultSet.next()) {
+          cursor.add(row);
+        }
+      }
+      timer.rows(cursor.size());
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Hands every matching reading to the handler straight from a forward-only cursor, grouped
+   * by customer, kind of meter and meter (readings without a customer first), each meter in
+   * date order. Only the current row is held in memory.
+   * <p>
+   * Unlike {@link #streamRows}, the connection stays checked out until the handler has seen
+   * the last row, so a slow client occupies it for the whole export. Customers are joined into
+   * the rows, as a second pooled connection per export could exhaust the pool.
+   */
+  public void export(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter,
+      RowHandler<Reading> handler) throws IOException {
+    String sql = EXPORTS[filters(customerId, startDate, endDate, kindOfMeter)];
+
+    try (SqlTimer timer = SqlTimer.start("Reading.export");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      // A positive fetch size makes the driver stream the result instead of buffering it
+      statement.setFetchSize(STREAM_BATCH_SIZE);
+      bind(statement, customerId, startDate, endDate, kindOfMeter, null, 0);
+
+      int rows = 0;
+      UUID customerOfRow = null;
+      Customer customer = null;
       try (ResultSet resultSet = statement.executeQuery()) {
-        while (resultSet.next())
-          results.add(new Reading(
-              resultSet.getObject("Reading.id", UUID.class),
-              resultSet.getString("Reading.comment"),
-              new Customer(resultSet.getObject(
-                  "Customer.id", UUID.class),
-                  resultSet.getString("Customer.firstName"),
-                  resultSet.getString("Customer.lastName"),
-                  Gender.valueOf(resultSet.getString("Customer.gender")),
-                  resultSet.getObject("Customer.birthDate", LocalDate.class)),
-              resultSet.getObject("Reading.dateOfReading", LocalDate.class),
-              KindOfMeter.valueOf(resultSet.getString("Reading.kindOfMeter")),
-              resultSet.getDouble("Reading.meterCount"),
-              resultSet.getString("Reading.meterId"),
-              resultSet.getBoolean("Reading.substitute")));
+        RowMapper.Row row = READINGS.row(resultSet);
+        RowMapper.Row customerRow = EXPORT_CUSTOMERS.row(resultSet);
+        while (resultSet.next()) {
+          Reading reading = READINGS.map(row);
+          UUID id = row.uuid(Column.CUSTOMER);
+          // Rows come sorted by customer, so each one is mapped once
+          if (!Objects.equals(id, customerOfRow)) {
+            customerOfRow = id;
+            customer = EXPORT_CUSTOMERS.map(customerRow);
+          }
+          reading.setCustomer(customer);
+          handler.handle(reading);
+          rows++;
+        }
       }
+      timer.rows(rows);
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
-    return results;
+  }
+
+  private List<Reading> query(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter,
+      ReadingKey after, int limit, boolean latestFirst) {
+    String sql = select(customerId, startDate, endDate, kindOfMeter, after, limit, latestFirst);
+
+    List<Reading> readings = new ArrayList<>(limit > 0 ? limit : 16);
+    List<UUID> customerIds = new ArrayList<>(limit > 0 ? limit : 16);
+    try (SqlTimer timer = SqlTimer.start("Reading.find");
+        Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      bind(statement, customerId, startDate, endDate, kindOfMeter, after, limit);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        RowMapper.Row row = READINGS.row(resultSet);
+        while (resultSet.next()) {
+          readings.add(READINGS.map(row));
+          customerIds.add(row.uuid(Column.CUSTOMER));
+        }
+      }
+      timer.rows(readings.size());
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+
+    // Resolved after the connection is back in the pool; usually every customer is cached
+    Set<UUID> distinct = new HashSet<>(customerIds);
+    distinct.remove(null);
+    Map<UUID, Customer> customers = customerDao.readAll(distinct);
+    for (int i = 0; i < readings.size(); i++) {
+      readings.get(i).setCustomer(customers.get(customerIds.get(i)));
+    }
+    return readings;
+  }
+
+  private static int filters(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter) {
+    return (customerId != null ? CUSTOMER : 0) | (startDate != null ? START_DATE : 0)
+        | (endDate != null ? END_DATE : 0) | (kindOfMeter != null ? KIND : 0);
+  }
+
+  private static String select(UUID customerId, LocalDate startDate, LocalDate endDate, KindOfMeter kindOfMeter,
+      ReadingKey after, int limit, boolean latestFirst) {
+    return SELECTS[filters(customerId, startDate, endDate, kindOfMeter) | (after != null ? AFTER : 0)
+        | (after != null && after.dateOfReading() == null ? AFTER_NO_DATE : 0)
+        | (limit > 0 ? LIMIT : 0) | (latestFirst ? LATEST_FIRST : 0)];
+  }
+
+  private static String buildSelect(int shape) {
+    StringBuilder sql = new StringBuilder(SELECT_READING).append(where(shape & FILTERS));
+    boolean after = (shape & AFTER) != 0;
+    boolean limit = (shape & LIMIT) != 0;
+
+    if (after) {
+      sql.append((shape & FILTERS) != 0 ? "AND " : "WHERE ");
+      if ((shape & AFTER_NO_DATE) != 0) {
+        // Readings without date come first, as NULLs sort first in MariaDB and H2
+        sql.append("(dateOfReading IS NOT NULL OR id > ?) ");
+      } else {
+        sql.append("(dateOfReading > ? OR (dateOfReading = ? AND id > ?)) ");
+      }
+    }
+    if ((shape & LATEST_FIRST) != 0) {
+      sql.append("ORDER BY dateOfReading DESC, id DESC ");
+    } else if (after || limit) {
+      sql.append("ORDER BY dateOfReading, id ");
+    }
+    if (limit) {
+      sql.append("LIMIT ? ");
+    }
+    return sql.toString();
+  }
+
+  private static String where(int filters) {
+    StringBuilder sql = new StringBuilder();
+    if ((filters & CUSTOMER) != 0) {
+      sql.append(sql.isEmpty() ? "WHERE " : "AND ").append("customer = ? ");
+    }
+    if ((filters & START_DATE) != 0) {
+      sql.append(sql.isEmpty() ? "WHERE " : "AND ").append("dateOfReading >= ? ");
+    }
+    if ((filters & END_DATE) != 0) {
+      sql.append(sql.isEmpty() ? "WHERE " : "AND ").append("dateOfReading <= ? ");
+    }
+    if ((filters & KIND) != 0) {
+      sql.append(sql.isEmpty() ? "WHERE " : "AND ").append("kindOfMeter = ? ");
+    }
+    return sql.toString();
+  }
+
+  // Sets the parameters in the order of the conditions of buildSelect()
+  private static void bind(PreparedStatement statement, UUID customerId, LocalDate startDate, LocalDate endDate,
+      KindOfMeter kindOfMeter, ReadingKey after, int limit) throws SQLException {
+    int index = 1;
+    if (customerId != null) {
+      statement.setObject(index++, customerId);
+    }
+    if (startDate != null) {
+      statement.setObject(index++, startDate);
+    }
+    if (endDate != null) {
+      statement.setObject(index++, endDate);
+    }
+    if (kindOfMeter != null) {
+      statement.setString(index++, kindOfMeter.name());
+    }
+    if (after != null) {
+      if (after.dateOfReading() != null) {
+        statement.setObject(index++, after.dateOfReading());
+        statement.setObject(index++, after.dateOfReading());
+      }
+      statement.setObject(index++, after.id());
+    }
+    if (limit > 0) {
+      statement.setInt(index, limit);
+    }
   }
 }
@@ -0,0 +1,38 @@
+package dev.hv.dao;
+
+import dev.hv.Reading;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Position of a reading in the (dateOfReading, id) order used for keyset pagination.
+ * Written as {@code yyyy-MM-dd,uuid} in the {@code after} query parameter, and as
+ * {@code ,uuid} for a reading without date; those come first, as NULLs do in MariaDB.
+ */
+public record ReadingKey(LocalDate dateOfReading, UUID id) {
+
+  public static ReadingKey of(Reading reading) {
+    return new ReadingKey(reading.getDateOfReading(), reading.getId());
+  }
+
+  public static ReadingKey parse(String value) {
+    int separator = value.indexOf(',');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Expected <dateOfReading>,<id> but got: " + value);
+    }
+    String date = value.substring(0, separator).trim();
+    try {
+      return new ReadingKey(date.isEmpty() ? null : LocalDate.parse(date),
+          UUID.fromString(value.substring(separator + 1).trim()));
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid date in cursor: " + value, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return (dateOfReading != null ? dateOfReading.toString() : "") + "," + id;
+  }
+}
@@ -0,0 +1,225 @@
+package dev.hv.dao;
+
+import dev.hv.model.Gender;
+import dev.hv.model.KindOfMeter;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Maps the rows of a result set by column position. The positions of the columns a mapping
+ * reads are resolved once per result set from its metadata, instead of looking up every
+ * label of every row. UUIDs are decoded from the column bytes and enums come from lookup
+ * tables, without the driver's getObject conversions.
+ *
+ * <pre>{@code
+ * RowMapper.Row row = MAPPER.row(resultSet);
+ * while (resultSet.next()) {
+ *   list.add(MAPPER.map(row));
+ * }
+ * }</pre>
+ */
+public final class RowMapper<T> {
+
+  @FunctionalInterface
+  public interface Mapping<T> {
+    T map(Row row) throws SQLException;
+  }
+
+  private static final EnumTable<KindOfMeter> KINDS = new EnumTable<>(KindOfMeter.class);
+  private static final EnumTable<Gender> GENDERS = new EnumTable<>(Gender.class);
+
+  private final String[] columns;
+  private final Mapping<T> mapping;
+
+  private RowMapper(Mapping<T> mapping, String[] columns) {
+    this.mapping = mapping;
+    this.columns = columns.clone();
+  }
+
+  /**
+   * @param columns labels of the columns {@code mapping} reads; the accessors of {@link Row}
+   *     take the index of a column in this list
+   */
+  public static <T> RowMapper<T> of(Mapping<T> mapping, String... columns) {
+    return new RowMapper<>(mapping, columns);
+  }
+
+  /**
+   * Resolves the columns in the result set. The row reads whatever row the result set is on.
+   */
+  public Row row(ResultSet resultSet) throws SQLException {
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    int[] positions = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      positions[i] = position(metaData, columns[i]);
+    }
+    return new Row(resultSet, positions);
+  }
+
+  public T map(Row row) throws SQLException {
+    return mapping.map(row);
+  }
+
+  private static int position(ResultSetMetaData metaData, String column) throws SQLException {
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      // Drivers and SQL modes differ in the case of unquoted names
+      if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+        return i;
+      }
+    }
+    throw new SQLException("Column " + column + " is not in the result");
+  }
+
+  public static final class Row {
+
+    private final ResultSet resultSet;
+    private final int[] positions;
+    private long uuidMost;
+    private long uuidLeast;
+
+    private Row(ResultSet resultSet, int[] positions) {
+      this.resultSet = resultSet;
+      this.positions = positions;
+    }
+
+    public UUID uuid(int column) throws SQLException {
+      return readUuid(column) ? new UUID(uuidMost, uuidLeast) : null;
+    }
+
+    /**
+     * Reads a UUID into {@link #uuidMost()} and {@link #uuidLeast()} without creating it.
+     *
+     * @return false if the column is NULL
+     */
+    public boolean readUuid(int column) throws SQLException {
+      byte[] bytes = resultSet.getBytes(positions[column]);
+      if (bytes == null) {
+        return false;
+      }
+      if (bytes.length == 16) {
+        // Binary UUID type, e.g. H2
+        uuidMost = bits(bytes, 0);
+        uuidLeast = bits(bytes, 8);
+      } else if (bytes.length == 36) {
+        // MariaDB sends the text form
+        uuidMost = hex(bytes, 0, 8) << 32 | hex(bytes, 9, 4) << 16 | hex(bytes, 14, 4);
+        uuidLeast = hex(bytes, 19, 4) << 48 | hex(bytes, 24, 12);
+      } else {
+        UUID uuid = UUID.fromString(new String(bytes, StandardCharsets.US_ASCII));
+        uuidMost = uuid.getMostSignificantBits();
+        uuidLeast = uuid.getLeastSignificantBits();
+      }
+      return true;
+    }
+
+    public long uuidMost() {
+      return uuidMost;
+    }
+
+    public long uuidLeast() {
+      return uuidLeast;
+    }
+
+    public String string(int column) throws SQLException {
+      return resultSet.getString(positions[column]);
+    }
+
+    public LocalDate date(int column) throws SQLException {
+      return resultSet.getObject(positions[column], LocalDate.class);
+    }
+
+    public double doubleValue(int column) throws SQLException {
+      return resultSet.getDouble(positions[column]);
+    }
+
+    public long longValue(int column) throws SQLException {
+      return resultSet.getLong(positions[column]);
+    }
+
+    public boolean booleanValue(int column) throws SQLException {
+      return resultSet.getBoolean(positions[column]);
+    }
+
+    /**
+     * @return null for NULL
+     * @throws IllegalArgumentException for a name that is not a KindOfMeter, like valueOf
+     */
+    public KindOfMeter kindOfMeter(int column) throws SQLException {
+      return KINDS.get(resultSet.getString(positions[column]));
+    }
+
+    /**
+     * @return null for NULL
+     * @throws IllegalArgumentException for a name that is not a Gender, like valueOf
+     */
+    public Gender gender(int column) throws SQLException {
+      return GENDERS.get(resultSet.getString(positions[column]));
+    }
+
+    private static long bits(byte[] bytes, int offset) {
+      long value = 0;
+      for (int i = offset; i < offset + 8; i++) {
+        value = value << 8 | (bytes[i] & 0xff);
+      }
+      return value;
+    }
+
+    private static long hex(byte[] bytes, int offset, int digits) {
+      long value = 0;
+      for (int i = offset; i < offset + digits; i++) {
+        int digit = Character.digit(bytes[i], 16);
+        if (digit < 0) {
+          throw new IllegalArgumentException("Invalid UUID: " + new String(bytes, StandardCharsets.US_ASCII));
+        }
+        value = value << 4 | digit;
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Finds enum constants by their first letter, which is unique for the enums of the model;
+   * names that share it fall back to valueOf.
+   */
+  private static final class EnumTable<E extends Enum<E>> {
+
+    private final Class<E> type;
+    private final Object[] byFirstLetter = new Object[128];
+
+    EnumTable(Class<E> type) {
+      this.type = type;
+      boolean[] shared = new boolean[byFirstLetter.length];
+      for (E constant : type.getEnumConstants()) {
+        char first = constant.name().charAt(0);
+        if (first >= byFirstLetter.length || shared[first]) {
+          continue;
+        }
+        if (byFirstLetter[first] != null) {
+          shared[first] = true;
+          byFirstLetter[first] = null;
+        } else {
+          byFirstLetter[first] = constant;
+        }
+      }
+    }
+
+    E get(String name) {
+      if (name == null) {
+        return null;
+      }
+      if (!name.isEmpty() && name.charAt(0) < byFirstLetter.length) {
+        @SuppressWarnings("unchecked")
+        E constant = (E) byFirstLetter[name.charAt(0)];
+        if (constant != null && constant.name().equals(name)) {
+          return constant;
+        }
+      }
+      return Enum.valueOf(type, name);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package dev.hv.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings an existing schema up to date. Every migration runs once; the applied versions
+ * are recorded in the SchemaVersion table. New migrations are appended to
+ * {@link #MIGRATIONS} with the next version number, existing ones are never changed.
+ */
+public final class SchemaMigrations {
+
+  /**
+   * Runs before the statements of a migration and may refuse it.
+   */
+  @FunctionalInterface
+  interface Precondition {
+    void check(Connection connection) throws SQLException;
+  }
+
+  record Migration(int version, String description, Precondition precondition, List<String> statements) {
+
+    Migration(int version, String description, List<String> statements) {
+      this(version, description, connection -> { }, statements);
+    }
+  }
+
+  // Opt-in for migration 2 to set the customer of readings with an unknown customer to NULL
+  static final String DETACH_ORPHANS = "hv.migrate.detachOrphanedReadings";
+
+  private static final Logger logger = LogManager.getLogger(SchemaMigrations.class);
+
+  static final String VERSION_TABLE = "SchemaVersion";
+
+  // MeterMonths.REBUILD as migration 3 shipped it, before the resets column
+  private static final String METER_MONTH_REBUILD_3 = "INSERT INTO MeterMonth (meterId, yearMonth, kindOfMeter, "
+      + "customer, firstDate, firstCount, lastDate, lastCount, readings, substitutes) "
+      + "SELECT meterId, yearMonth, MAX(kindOfMeter), MAX(customer), "
+      + "MIN(dateOfReading), MAX(CASE WHEN firstRow = 1 THEN meterCount END), "
+      + "MAX(dateOfReading), MAX(CASE WHEN lastRow = 1 THEN meterCount END), "
+      + "COUNT(*), SUM(CASE WHEN substitute THEN 1 ELSE 0 END) "
+      + "FROM (SELECT meterId, YEAR(dateOfReading) * 100 + MONTH(dateOfReading) AS yearMonth, kindOfMeter, "
+      + "customer, dateOfReading, meterCount, substitute, "
+      + "ROW_NUMBER() OVER (PARTITION BY meterId, YEAR(dateOfReading), MONTH(dateOfReading) "
+      + "ORDER BY dateOfReading, meterCount) AS firstRow, "
+      + "ROW_NUMBER() OVER (PARTITION BY meterId, YEAR(dateOfReading), MONTH(dateOfReading) "
+      + "ORDER BY dateOfReading DESC, meterCount DESC) AS lastRow "
+      + "FROM Reading WHERE dateOfReading IS NOT NULL AND meterCount IS NOT NULL) r "
+      + "GROUP BY meterId, yearMonth";
+
+  static final List<Migration> MIGRATIONS = List.of(
+      new Migration(1, "Indexes for the reading filters and keyset pagination", List.of(
+          "CREATE INDEX IF NOT EXISTS idx_reading_customer_kind_date ON Reading (customer, kindOfMeter, dateOfReading)",
+          "CREATE INDEX IF NOT EXISTS idx_reading_meter_date ON Reading (meterId, dateOfReading)",
+          "CREATE INDEX IF NOT EXISTS idx_reading_date_id ON Reading (dateOfReading, id)")),
+      // Readings outlive their customer, see DELETE /customers/{uuid}
+      new Migration(2, "Foreign key from Reading to Customer", SchemaMigrations::checkOrphanedReadings, List.of(
+          "ALTER TABLE Reading MODIFY customer UUID NULL",
+          "UPDATE Reading SET customer = NULL WHERE customer NOT IN (SELECT id FROM Customer)",
+          "ALTER TABLE Reading ADD CONSTRAINT fk_Reading_Customer FOREIGN KEY (customer) "
+              + "REFERENCES Customer (id) ON DELETE SET NULL")),
+      new Migration(3, "Per meter and month aggregate of the readings", List.of(
+          "CREATE TABLE IF NOT EXISTS " + MeterMonths.TABLE + " "
+              + "(meterId VARCHAR(50) NOT NULL, "
+              + "yearMonth INT NOT NULL, "
+              + "kindOfMeter VARCHAR(50), "
+              + "customer UUID, "
+              + "firstDate DATE NOT NULL, "
+              + "firstCount DOUBLE NOT NULL, "
+              + "lastDate DATE NOT NULL, "
+              + "lastCount DOUBLE NOT NULL, "
+              + "readings INT NOT NULL, "
+              + "substitutes INT NOT NULL, "
+              + "PRIMARY KEY (meterId, yearMonth), "
+              // Follows the readings of a deleted customer
+              + "CONSTRAINT fk_MeterMonth_Customer FOREIGN KEY (customer) "
+              + "REFERENCES Customer (id) ON DELETE SET NULL)",
+          "DELETE FROM " + MeterMonths.TABLE,
+          METER_MONTH_REBUILD_3)),
+      // Counted up by every update, for optimistic locking of PUT requests
+      new Migration(4, "Row versions of readings and customers", List.of(
+          "ALTER TABLE Customer ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0",
+          "ALTER TABLE Reading ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0")),
+      // One per order of CustomerDao.findPage; the name indexes also serve the prefix search
+      new Migration(5, "Indexes for the customer search, sort orders and keyset pagination", List.of(
+          "CREATE INDEX IF NOT EXISTS idx_customer_last_name_id ON Customer (lastName, id)",
+          "CREATE INDEX IF NOT EXISTS idx_customer_first_name_id ON Customer (firstName, id)",
+          "CREATE INDEX IF NOT EXISTS idx_customer_birth_date_id ON Customer (birthDate, id)")),
+      // Months in which the count restarts are computed from their readings, see AnalyticsDao
+      new Migration(6, "Count restarts per meter and month", List.of(
+          "ALTER TABLE " + MeterMonths.TABLE + " ADD COLUMN IF NOT EXISTS resets INT NOT NULL DEFAULT 0",
+          "DELETE FROM " + MeterMonths.TABLE,
+          MeterMonths.REBUILD)));
+
+  private SchemaMigrations() {
+  }
+
+  /**
+   * Applies all migrations newer than the recorded version.
+   *
+   * @return the number of migrations applied
+   */
+  public static int migrate(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " "
+          + "(version INT PRIMARY KEY NOT NULL, "
+          + "description VARCHAR(255) NOT NULL, "
+          + "appliedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+    }
+
+    int current = currentVersion(connection);
+    int applied = 0;
+    for (Migration migration : MIGRATIONS) {
+      if (migration.version() <= current) {
+        continue;
+      }
+      logger.debug("Applying schema migration {}: {}", migration.version(), migration.description());
+      migration.precondition().check(connection);
+      // DDL commits implicitly in MariaDB, so a failed migration is simply retried on the next start
+      try (Statement statement = connection.createStatement()) {
+        for (String sql : migration.statements()) {
+          statement.executeUpdate(sql);
+        }
+      }
+      try (PreparedStatement statement = connection.prepareStatement(
+          "INSERT INTO " + VERSION_TABLE + " (version, description) VALUES (?, ?)")) {
+        statement.setInt(1, migration.version());
+        statement.setString(2, migration.description());
+        statement.executeUpdate();
+      }
+      applied++;
+    }
+    return applied;
+  }
+
+  // The foreign key needs every customer of a reading to exist. Dropping references to
+  // missing customers changes existing data, so it only happens when asked for.
+  private static void checkOrphanedReadings(Connection connection) throws SQLException {
+    int orphans;
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM Reading "
+            + "WHERE customer IS NOT NULL AND customer NOT IN (SELECT id FROM Customer)")) {
+      orphans = resultSet.next() ? resultSet.getInt(1) : 0;
+    }
+    if (orphans == 0) {
+      return;
+    }
+    if (!Boolean.getBoolean(DETACH_ORPHANS)) {
+      throw new SQLException(orphans + " readings reference customers that do not exist. Create the customers, "
+          + "or start once with -D" + DETACH_ORPHANS + "=true to set the customer of these readings to NULL.");
+    }
+    logger.warn("Setting the customer of {} readings with an unknown customer to NULL", orphans);
+  }
+
+  public static int currentVersion(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM " + VERSION_TABLE)) {
+      return resultSet.next() ? resultSet.getInt(1) : 0;
+    }
+  }
+
+  public static int latestVersion() {
+    return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+  }
+}
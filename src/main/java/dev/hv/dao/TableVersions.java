@@ -0,0 +1,55 @@
+package dev.hv.dao;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counter per table, bumped after every committed write through the DAOs and the
+ * imports. Endpoints derive their ETags from it, so an unchanged collection can be answered
+ * with 304 without a query.
+ * <p>
+ * The counters only see writes of this process. Readers take the version before they
+ * query; writers bump it after the commit, so a response is never tagged with a version
+ * that is newer than its data.
+ */
+public final class TableVersions {
+
+  public enum Table {
+    CUSTOMER, READING
+  }
+
+  private static final TableVersions INSTANCE = new TableVersions();
+
+  // Tags of an earlier run of the server must not match
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+  private final Map<Table, AtomicLong> versions = new EnumMap<>(Table.class);
+
+  private TableVersions() {
+    for (Table table : Table.values()) {
+      versions.put(table, new AtomicLong());
+    }
+  }
+
+  public static TableVersions getInstance() {
+    return INSTANCE;
+  }
+
+  public long version(Table table) {
+    return versions.get(table).get();
+  }
+
+  public String epoch() {
+    return epoch;
+  }
+
+  public void changed(Table... tables) {
+    for (Table table : tables) {
+      versions.get(table).incrementAndGet();
+    }
+  }
+
+  public void changedAll() {
+    changed(Table.values());
+  }
+}
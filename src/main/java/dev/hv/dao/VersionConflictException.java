@@ -0,0 +1,16 @@
+package dev.hv.dao;
+
+import java.util.UUID;
+
+/**
+ * Thrown by {@link IDao#update} when the row was changed since the client read the version
+ * it sent along.
+ */
+public class VersionConflictException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public VersionConflictException(String table, UUID id, long version) {
+    super(table + " " + id + " is no longer at version " + version);
+  }
+}
@@ -0,0 +1,105 @@
+package dev.hv.endpoints;
+
+import dev.hv.dao.AnalyticsDao;
+import dev.hv.dao.MeterMonths;
+import dev.hv.dao.ReadingColumns;
+import dev.hv.model.KindOfMeter;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+@Path("analytics")
+public class Analytics {
+
+  /**
+   * Consumption per customer (or over all customers with byCustomer=false) and kind of
+   * meter, grouped by day, month, year or over the whole range (groupBy=total).
+   */
+  @GET
+  @Path("consumption")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getConsumption(
+      @QueryParam("customer") UUID customerId,
+      @QueryParam("kindOfMeter") KindOfMeter kindOfMeter,
+      @QueryParam("start") String startDate,
+      @QueryParam("end") String endDate,
+      @QueryParam("groupBy") @DefaultValue("month") String groupBy,
+      @QueryParam("byCustomer") @DefaultValue("true") boolean byCustomer) {
+
+    LocalDate start;
+    LocalDate end;
+    try {
+      start = startDate != null ? LocalDate.parse(startDate, DateTimeFormatter.ISO_DATE) : null;
+      end = endDate != null ? LocalDate.parse(endDate, DateTimeFormatter.ISO_DATE) : null;
+    } catch (Exception e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid date format. Use yyyy-MM-dd.").build();
+    }
+
+    AnalyticsDao.Period period;
+    try {
+      period = AnalyticsDao.Period.valueOf(groupBy.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid groupBy. Use day, month, year or total.").build();
+    }
+
+    return Response.status(Response.Status.OK)
+        .entity(Collections.singletonMap("consumption",
+            new AnalyticsDao().consumption(customerId, kindOfMeter, start, end, period, byCustomer)))
+        .build();
+  }
+
+  @GET
+  @Path("summary")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getSummary(@QueryParam("start") String startDate, @QueryParam("end") String endDate) {
+    LocalDate start;
+    LocalDate end;
+    try {
+      start = startDate != null ? LocalDate.parse(startDate, DateTimeFormatter.ISO_DATE) : null;
+      end = endDate != null ? LocalDate.parse(endDate, DateTimeFormatter.ISO_DATE) : null;
+    } catch (Exception e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid date format. Use yyyy-MM-dd.").build();
+    }
+
+    return Response.status(Response.Status.OK)
+        .entity(Collections.singletonMap("summary", new AnalyticsDao().summary(start, end)))
+        .build();
+  }
+
+  /**
+   * Recomputes the per meter and month aggregate, and the in-memory columns if they are on,
+   * from the readings, for readings that were written to the database directly.
+   */
+  @POST
+  @Path("rebuild")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response rebuild() {
+    long started = System.nanoTime();
+    int meterMonths = MeterMonths.rebuild();
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("meterMonths", meterMonths);
+    if (ReadingColumns.ENABLED) {
+      result.put("readingColumns", ReadingColumns.getInstance().load());
+    }
+    result.put("millis", (System.nanoTime() - started) / 1_000_000);
+    return Response.status(Response.Status.OK)
+        .entity(Collections.singletonMap("rebuild", result))
+        .build();
+  }
+}
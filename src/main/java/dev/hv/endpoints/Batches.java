@@ -0,0 +1,44 @@
+package dev.hv.endpoints;
+
+import dev.hv.dao.BatchResult;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared checks and responses of the {@code /batch} endpoints.
+ */
+final class Batches {
+
+  static final int MAX_ITEMS = Integer.getInteger("hv.batch.maxItems", 10_000);
+
+  private Batches() {
+  }
+
+  /**
+   * @return the error response for a missing or oversized list, or null if it can be processed
+   */
+  static Response validate(List<?> items, String property) {
+    if (items == null) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Missing '" + property + "' property").build();
+    }
+    if (items.size() > MAX_ITEMS) {
+      return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+          .entity("At most " + MAX_ITEMS + " " + property + " per batch").build();
+    }
+    if (items.contains(null)) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("'" + property + "' must not contain null").build();
+    }
+    return null;
+  }
+
+  /**
+   * A rolled back batch is answered with 400, a partial one with 200 and the failed items.
+   */
+  static Response respond(BatchResult result, boolean partial, Response.Status success) {
+    Response.Status status = !partial && !result.failures().isEmpty() ? Response.Status.BAD_REQUEST
+        : result.failures().isEmpty() ? success : Response.Status.OK;
+    return Response.status(status).entity(Collections.singletonMap("batch", result)).build();
+  }
+}
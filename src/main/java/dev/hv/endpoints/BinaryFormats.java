@@ -0,0 +1,122 @@
+package dev.hv.endpoints;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads and writes bodies as CBOR or Smile for clients that ask for them. Both are binary
+ * encodings of the JSON data model, so the mappers are copies of {@link JsonMapper} and
+ * the Jackson annotations of the model classes apply unchanged.
+ */
+@Provider
+@Produces({BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+@Consumes({BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+public class BinaryFormats implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+  public static final String APPLICATION_CBOR = "application/cbor";
+  public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+  public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+  public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+  // Jersey opens and closes the entity streams itself
+  private static final ObjectMapper cbor = JsonMapper.mapper().copyWith(new CBORFactory())
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+  private static final ObjectMapper smile = JsonMapper.mapper().copyWith(new SmileFactory())
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+  /**
+   * @return the mapper for JSON, CBOR or Smile, or null for any other media type
+   */
+  public static ObjectMapper mapper(MediaType mediaType) {
+    if (mediaType == null) {
+      return null;
+    }
+    if (mediaType.isCompatible(APPLICATION_CBOR_TYPE) && !mediaType.isWildcardType()) {
+      return cbor;
+    }
+    if (mediaType.isCompatible(APPLICATION_SMILE_TYPE) && !mediaType.isWildcardType()) {
+      return smile;
+    }
+    return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) ? JsonMapper.mapper() : null;
+  }
+
+  /**
+   * Picks the format of a response that is written by the resource itself, such as the
+   * streamed readings. JSON unless the client prefers CBOR or Smile.
+   *
+   * @param acceptable the Accept header of the request, most preferred first
+   */
+  static MediaType select(List<MediaType> acceptable) {
+    for (MediaType mediaType : acceptable) {
+      if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+        break;
+      }
+      if (mediaType.isCompatible(APPLICATION_CBOR_TYPE)) {
+        return APPLICATION_CBOR_TYPE;
+      }
+      if (mediaType.isCompatible(APPLICATION_SMILE_TYPE)) {
+        return APPLICATION_SMILE_TYPE;
+      }
+      if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+        break;
+      }
+    }
+    return MediaType.APPLICATION_JSON_TYPE;
+  }
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return isBinary(mediaType) && type != InputStream.class && type != String.class;
+  }
+
+  @Override
+  public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+    ObjectMapper mapper = mapper(mediaType);
+    try {
+      return mapper.readerFor(mapper.constructType(genericType)).readValue(entityStream);
+    } catch (JsonProcessingException e) {
+      throw new BadRequestException("Invalid " + mediaType + " body: " + e.getOriginalMessage(), e);
+    }
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return isBinary(mediaType) && !StreamingOutput.class.isAssignableFrom(type) && type != String.class
+        && type != byte[].class && !InputStream.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+    ObjectMapper mapper = mapper(mediaType);
+    mapper.writerFor(mapper.constructType(genericType)).writeValue(entityStream, value);
+  }
+
+  private static boolean isBinary(MediaType mediaType) {
+    return mediaType != null && !mediaType.isWildcardType() && !mediaType.isWildcardSubtype()
+        && (mediaType.isCompatible(APPLICATION_CBOR_TYPE) || mediaType.isCompatible(APPLICATION_SMILE_TYPE));
+  }
+}
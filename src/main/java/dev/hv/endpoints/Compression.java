@@ -0,0 +1,194 @@
+package dev.hv.endpoints;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.NotSupportedException;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses response bodies with gzip or deflate, whichever the client prefers in
+ * Accept-Encoding, and inflates request bodies sent with Content-Encoding.
+ * <p>
+ * Bodies are compressed while they are written. Only the first {@code hv.compression.threshold}
+ * bytes (default 1024) are held back to decide; smaller bodies are sent as they are.
+ */
+@Provider
+// After RequestMetrics, so that it counts the bytes that go over the wire
+@Priority(Priorities.USER + 100)
+public class Compression implements WriterInterceptor, ReaderInterceptor {
+
+  static final int THRESHOLD = Integer.getInteger("hv.compression.threshold", 1024);
+
+  private static final int BUFFER_SIZE = 8192;
+
+  @Context
+  private HttpHeaders requestHeaders;
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+    String encoding = context.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING) ? null
+        : negotiate(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+    context.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (encoding == null) {
+      context.proceed();
+      return;
+    }
+
+    ThresholdOutputStream output = new ThresholdOutputStream(context, encoding);
+    context.setOutputStream(output);
+    context.proceed();
+    // Writes the rest of the compressed body before RequestMetrics counts it; Jersey closes
+    // the stream afterwards
+    output.finish();
+  }
+
+  @Override
+  public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+    String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (encoding != null) {
+      switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+        case "gzip", "x-gzip" -> context.setInputStream(new GZIPInputStream(context.getInputStream(), BUFFER_SIZE));
+        case "deflate" -> context.setInputStream(new InflaterInputStream(context.getInputStream()));
+        case "identity" -> {
+        }
+        default -> throw new NotSupportedException("Unsupported Content-Encoding: " + encoding);
+      }
+      context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+    }
+    return context.proceed();
+  }
+
+  /**
+   * @return gzip or deflate by the q-values of the Accept-Encoding header (gzip on a tie),
+   *     or null if the client accepts neither
+   */
+  static String negotiate(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isBlank()) {
+      return null;
+    }
+    double gzip = -1;
+    double deflate = -1;
+    double any = -1;
+    for (String part : acceptEncoding.split(",")) {
+      String[] fields = part.split(";");
+      double q = 1;
+      for (int i = 1; i < fields.length; i++) {
+        String field = fields[i].trim();
+        if (field.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(field.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      switch (fields[0].trim().toLowerCase(Locale.ROOT)) {
+        case "gzip", "x-gzip" -> gzip = q;
+        case "deflate" -> deflate = q;
+        case "*" -> any = q;
+        default -> {
+        }
+      }
+    }
+    if (gzip < 0) {
+      gzip = any;
+    }
+    if (deflate < 0) {
+      deflate = any;
+    }
+    if (gzip > 0 && gzip >= deflate) {
+      return "gzip";
+    }
+    return deflate > 0 ? "deflate" : null;
+  }
+
+  /**
+   * Holds back the start of the body until it is known to exceed the threshold. The
+   * Content-Encoding header can still be set then, because nothing was written yet.
+   */
+  private static final class ThresholdOutputStream extends OutputStream {
+    private final WriterInterceptorContext context;
+    private final OutputStream target;
+    private final String encoding;
+    private byte[] buffer = new byte[THRESHOLD];
+    private int count;
+    private OutputStream out;
+    private boolean closed;
+
+    ThresholdOutputStream(WriterInterceptorContext context, String encoding) {
+      this.context = context;
+      this.target = context.getOutputStream();
+      this.encoding = encoding;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (out == null) {
+        if (count + len <= buffer.length) {
+          System.arraycopy(b, off, buffer, count, len);
+          count += len;
+          return;
+        }
+        start(true);
+      }
+      out.write(b, off, len);
+    }
+
+    // Flushes before the decision are ignored, they would force it too early
+    @Override
+    public void flush() throws IOException {
+      if (out != null) {
+        out.flush();
+      }
+    }
+
+    void finish() throws IOException {
+      if (out == null) {
+        start(false);
+      } else if (out instanceof DeflaterOutputStream deflater) {
+        deflater.finish();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      finish();
+      out.close();
+    }
+
+    private void start(boolean compress) throws IOException {
+      if (compress) {
+        context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        out = encoding.equals("gzip") ? new GZIPOutputStream(target, BUFFER_SIZE)
+            : new DeflaterOutputStream(target);
+      } else {
+        out = target;
+      }
+      out.write(buffer, 0, count);
+      buffer = null;
+    }
+  }
+}
@@ -12,7 +12,8 @@ public class Cors implements ContainerResponseFilter {
   public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
       throws IOException {
     responseContext.getHeaders().add("Access-Control-Allow-Origin", "*");
-    responseContext.getHeaders().add("Access-Control-Allow-Headers", "origin, content-type, accept, authorization");
+    responseContext.getHeaders().add("Access-Control-Allow-Headers", "origin, content-type, accept, authorization, if-none-match");
+    responseContext.getHeaders().add("Access-Control-Expose-Headers", "ETag");
     responseContext.getHeaders().add("Access-Control-Allow-Credentials", "true");
     responseContext.getHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, HEAD");
     responseContext.getHeaders().add("Access-Control-Max-Age", "1209600");
@@ -0,0 +1,9 @@
+package dev.hv.endpoints;
+
+import dev.hv.Customer;
+
+/**
+ * Request and response body {@code {"customer": {...}}}.
+ */
+public record CustomerEnvelope(Customer customer) {
+}
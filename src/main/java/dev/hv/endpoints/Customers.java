@@ -2,19 +2,32 @@ package dev.hv.endpoints;
 
 import dev.hv.Customer;
 import dev.hv.dao.CustomerDao;
+import dev.hv.dao.CustomerKey;
+import dev.hv.dao.CustomerSort;
+import dev.hv.dao.TableVersions;
+import dev.hv.dao.VersionConflictException;
+import dev.hv.model.Gender;
 import dev.hv.services.CSVReader;
+import dev.hv.services.ImportJob;
+import dev.hv.services.ImportResult;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
-import java.io.File;
 import java.io.InputStream;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Path("customers")
@@ -22,70 +35,144 @@ public class Customers {
 
   private static final Logger logger = LogManager.getLogger(Customers.class);
 
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  /**
+   * All customers, or with any of the parameters those that match, in the requested order.
+   * With limit or after a page is returned, plus the cursor of the next one if there may be
+   * more.
+   */
   @GET
-  @Produces(MediaType.APPLICATION_JSON)
-  public Response getCustomers() {
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response getCustomers(
+      @QueryParam("search") String search,
+      @QueryParam("gender") Gender gender,
+      @QueryParam("bornFrom") String bornFrom,
+      @QueryParam("bornTo") String bornTo,
+      @QueryParam("sort") @DefaultValue("lastName") String sort,
+      @QueryParam("direction") @DefaultValue("asc") String direction,
+      @QueryParam("limit") Integer limit,
+      @QueryParam("after") String after,
+      @Context Request request,
+      @Context HttpHeaders headers) {
+
+    LocalDate from = null;
+    LocalDate to = null;
+    try {
+      if (bornFrom != null) {
+        from = LocalDate.parse(bornFrom, DateTimeFormatter.ISO_DATE);
+      }
+      if (bornTo != null) {
+        to = LocalDate.parse(bornTo, DateTimeFormatter.ISO_DATE);
+      }
+    } catch (Exception e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid date format. Use yyyy-MM-dd.").build();
+    }
+
+    CustomerSort order;
+    try {
+      order = CustomerSort.parse(sort);
+    } catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid sort. Use lastName, firstName or birthDate.").build();
+    }
+    if (!direction.equals("asc") && !direction.equals("desc")) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Invalid direction. Use asc or desc.").build();
+    }
+    boolean descending = direction.equals("desc");
+
+    CustomerKey afterKey = null;
+    try {
+      if (after != null) {
+        afterKey = CustomerKey.parse(after, order);
+      }
+    } catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid cursor. Use after=<value of the sort column>,<id>.").build();
+    }
+    if (limit != null && limit <= 0) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("limit has to be positive").build();
+    }
+
+    EntityTag tag = ETags.of(TableVersions.Table.CUSTOMER, search, gender, from, to, order, descending, limit,
+        afterKey, BinaryFormats.select(headers.getAcceptableMediaTypes()));
+    Response notModified = ETags.notModified(request, tag);
+    if (notModified != null) {
+      return notModified;
+    }
 
     CustomerDao rd = new CustomerDao();
-    List<Customer> customers = rd.findAll();
+
+    if (limit != null || afterKey != null) {
+      int pageSize = Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+      List<Customer> page = rd.findPage(search, gender, from, to, order, descending, afterKey, pageSize);
+
+      Map<String, Object> entity = new LinkedHashMap<>();
+      entity.put("customers", page);
+      if (page.size() == pageSize) {
+        entity.put("next", CustomerKey.of(page.get(page.size() - 1), order).toString());
+      }
+      return ETags.tagged(Response.status(Response.Status.OK).entity(entity), tag).build();
+    }
+
+    List<Customer> customers = rd.findPage(search, gender, from, to, order, descending, null, 0);
 
     // Wrap in object to match OpenAPI schema
-    return Response.status(Response.Status.OK)
-        .entity(java.util.Collections.singletonMap("customers", customers))
+    return ETags.tagged(Response.status(Response.Status.OK)
+        .entity(java.util.Collections.singletonMap("customers", customers)), tag)
         .build();
   }
 
   @POST
-  @Consumes(MediaType.APPLICATION_JSON)
-  @Produces(MediaType.APPLICATION_JSON)
-  public Response postCustomer(String body) {
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response postCustomer(CustomerEnvelope body) {
+    if (body == null || body.customer() == null) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'customer' property").build();
+    }
     try {
-      // Parse JSON and extract "customer" object
-      var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-      var node = mapper.readTree(body).get("customer");
-      if (node == null) {
-        return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'customer' property").build();
-      }
-      Customer customer = mapper.treeToValue(node, Customer.class);
+      Customer customer = body.customer();
 
       CustomerDao dao = new CustomerDao();
       dao.create(customer);
 
       return Response.status(Response.Status.CREATED)
-          .entity(java.util.Collections.singletonMap("customer", customer))
+          .entity(new CustomerEnvelope(customer))
           .build();
     } catch (Exception e) {
       return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request body: " + e.getMessage()).build();
     }
   }
 
+  /**
+   * A customer with a version is only stored if nobody changed it since; otherwise 409.
+   */
   @PUT
-  @Consumes(MediaType.APPLICATION_JSON)
-  @Produces(MediaType.APPLICATION_JSON)
-  public Response putCustomer(String body) {
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response putCustomer(CustomerEnvelope body) {
+    if (body == null || body.customer() == null) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'customer' property").build();
+    }
     try {
-      var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-      var node = mapper.readTree(body).get("customer");
-      if (node == null) {
-        return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'customer' property").build();
-      }
-      Customer customer = mapper.treeToValue(node, Customer.class);
+      Customer customer = body.customer();
 
       if (customer.getId() == null) {
         return Response.status(Response.Status.BAD_REQUEST).entity("Missing customer id").build();
       }
 
       CustomerDao dao = new CustomerDao();
-      Customer existing = dao.read(customer.getId());
-      if (existing == null) {
+      if (!dao.update(customer)) {
         return Response.status(Response.Status.NOT_FOUND).entity("Customer not found").build();
       }
 
-      dao.update(customer);
-
       return Response.status(Response.Status.OK)
-          .entity(java.util.Collections.singletonMap("customer", customer))
+          .entity(new CustomerEnvelope(customer))
           .build();
+    } catch (VersionConflictException e) {
+      return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
     } catch (Exception e) {
       return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request body: " + e.getMessage()).build();
     }
@@ -93,7 +180,7 @@ public class Customers {
 
   @GET
   @Path("{id}")
-  @Produces(MediaType.APPLICATION_JSON)
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
   public Response getCustomer(@PathParam("id") UUID id) {
     CustomerDao customerDao = new CustomerDao();
     Customer customer = customerDao.read(id);
@@ -116,29 +203,82 @@ public class Customers {
     return Response.status(Response.Status.OK).build();
   }
 
+  /**
+   * Creates all customers in one transaction. With partial=true the valid customers are kept
+   * and the failed ones listed, otherwise nothing is stored if one of them fails.
+   */
+  @POST
+  @Path("batch")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response postCustomers(CustomersEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.customers() : null, "customers");
+    if (invalid != null) {
+      return invalid;
+    }
+    return Batches.respond(new CustomerDao().createAll(body.customers(), partial), partial,
+        Response.Status.CREATED);
+  }
+
+  @PUT
+  @Path("batch")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response putCustomers(CustomersEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.customers() : null, "customers");
+    if (invalid != null) {
+      return invalid;
+    }
+    return Batches.respond(new CustomerDao().updateAll(body.customers(), partial), partial, Response.Status.OK);
+  }
+
+  /**
+   * Readings of deleted customers are kept without a customer, as with DELETE /customers/{id}.
+   */
+  @POST
+  @Path("batch/delete")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response deleteCustomers(IdsEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.ids() : null, "ids");
+    if (invalid != null) {
+      return invalid;
+    }
+    return Batches.respond(new CustomerDao().deleteAll(body.ids(), partial), partial, Response.Status.OK);
+  }
+
   @POST
   @Path("import")
   @Consumes(MediaType.MULTIPART_FORM_DATA)
+  @Produces(MediaType.APPLICATION_JSON)
   public Response importData(@FormDataParam("file") InputStream fileInputStream,
-      @FormDataParam("file") FormDataContentDisposition fileMetaData) {
+      @FormDataParam("file") FormDataContentDisposition fileMetaData,
+      @QueryParam("wait") boolean wait) {
+    logger.debug("Importing upload {}", fileMetaData.getFileName());
+    return importCsv(fileInputStream, wait);
+  }
 
-    if (!fileMetaData.getType().equals("text/csv")) {
+  /**
+   * Queues the import and answers 202 with the job to poll under /imports/{id}.
+   * With wait=true the upload is parsed while it arrives and the request blocks until
+   * the import is done.
+   */
+  @POST
+  @Path("import")
+  @Consumes("text/csv")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response importCsv(InputStream body, @QueryParam("wait") boolean wait) {
+    if (!wait) {
+      return Imports.submit(ImportJob.Type.CUSTOMERS, body);
     }
 
-    File csv = new File(System.getProperty("java.io.tmpdir") + UUID.randomUUID().toString() + ".csv");
-
+    ImportResult result;
     try {
-      java.nio.file.Files.copy(
-          fileInputStream,
-          csv.toPath(),
-          StandardCopyOption.REPLACE_EXISTING);
+      result = CSVReader.parseCustomer(body);
     } catch (Exception e) {
-      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-          .entity("Error while saving the file: " + e.getMessage()).build();
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Error while importing the file: " + e.getMessage()).build();
     }
-
-    CSVReader.parseCustomer(csv.toPath());
-
-    return Response.ok("Data imported successfully").build();
+    return Response.ok(java.util.Collections.singletonMap("import", result)).build();
   }
 }
@@ -0,0 +1,11 @@
+package dev.hv.endpoints;
+
+import dev.hv.Customer;
+
+import java.util.List;
+
+/**
+ * Request body {@code {"customers": [...]}} of the batch endpoints.
+ */
+public record CustomersEnvelope(List<Customer> customers) {
+}
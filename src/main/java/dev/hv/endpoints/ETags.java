@@ -0,0 +1,52 @@
+package dev.hv.endpoints;
+
+import dev.hv.dao.TableVersions;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Arrays;
+
+/**
+ * Weak ETags for collection responses, derived from {@link TableVersions} and the filters
+ * of the request. They are computed before the query, so that a client with a current copy
+ * gets its 304 without a database round trip or serialization.
+ */
+final class ETags {
+
+  // Lets browsers keep the body but revalidate it on every use
+  private static final CacheControl REVALIDATE = revalidate();
+
+  private ETags() {
+  }
+
+  private static CacheControl revalidate() {
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setNoCache(true);
+    // On by default, but "no-cache" alone is what the responses always sent
+    cacheControl.setNoTransform(false);
+    return cacheControl;
+  }
+
+  static EntityTag of(TableVersions.Table table, Object... filters) {
+    TableVersions versions = TableVersions.getInstance();
+    String value = versions.epoch() + "-" + versions.version(table);
+    if (filters.length > 0) {
+      value += "-" + Integer.toHexString(Arrays.hashCode(filters));
+    }
+    return new EntityTag(value, true);
+  }
+
+  /**
+   * @return the 304 response if the client's copy is current, otherwise null
+   */
+  static Response notModified(Request request, EntityTag tag) {
+    Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+    return builder != null ? builder.cacheControl(REVALIDATE).build() : null;
+  }
+
+  static Response.ResponseBuilder tagged(Response.ResponseBuilder builder, EntityTag tag) {
+    return builder.tag(tag).cacheControl(REVALIDATE);
+  }
+}
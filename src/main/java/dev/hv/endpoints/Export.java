@@ -0,0 +1,212 @@
+package dev.hv.endpoints;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.dao.CustomerDao;
+import dev.hv.dao.ReadingDao;
+import dev.hv.dao.RowHandler;
+import dev.hv.model.KindOfMeter;
+import dev.hv.services.CSVWriter;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Downloads of readings and customers as CSV, NDJSON or XML. The rows go from a database
+ * cursor straight into the response, one at a time, so the size of an export is bounded
+ * neither by the heap of the server nor by that of the browser.
+ * <p>
+ * The CSV is the layout of the imports, see {@link CSVWriter}.
+ */
+@Path("export")
+public class Export {
+
+  static final String TEXT_CSV = "text/csv";
+  static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+
+  @FunctionalInterface
+  private interface Rows<T> {
+    void export(RowHandler<T> handler) throws IOException;
+  }
+
+  @FunctionalInterface
+  private interface XmlRow<T> {
+    void write(XMLStreamWriter xml, T row) throws XMLStreamException;
+  }
+
+  @GET
+  @Path("readings")
+  @Produces({TEXT_CSV, APPLICATION_NDJSON, MediaType.APPLICATION_XML})
+  public Response exportReadings(
+      @QueryParam("customer") UUID customerId,
+      @QueryParam("start") String startDate,
+      @QueryParam("end") String endDate,
+      @QueryParam("kindOfMeter") KindOfMeter kindOfMeter,
+      @QueryParam("format") @DefaultValue("csv") String format) {
+
+    LocalDate start = null;
+    LocalDate end = null;
+    try {
+      if (startDate != null) {
+        start = LocalDate.parse(startDate, DateTimeFormatter.ISO_DATE);
+      }
+      if (endDate != null) {
+        end = LocalDate.parse(endDate, DateTimeFormatter.ISO_DATE);
+      }
+    } catch (Exception e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid date format. Use yyyy-MM-dd.").build();
+    }
+
+    ReadingDao rd = new ReadingDao();
+    final LocalDate from = start;
+    final LocalDate to = end;
+    Rows<Reading> readings = handler -> rd.export(customerId, from, to, kindOfMeter, handler);
+    StreamingOutput body = switch (format) {
+      case "csv" -> output -> {
+        Writer writer = writer(output);
+        readings.export(new CSVWriter(writer)::writeReading);
+        writer.flush();
+      };
+      case "ndjson" -> ndjson(readings);
+      case "xml" -> xml("readings", readings, Export::writeReading);
+      default -> null;
+    };
+    return download(body, format, "readings");
+  }
+
+  @GET
+  @Path("customers")
+  @Produces({TEXT_CSV, APPLICATION_NDJSON, MediaType.APPLICATION_XML})
+  public Response exportCustomers(@QueryParam("format") @DefaultValue("csv") String format) {
+    CustomerDao cd = new CustomerDao();
+    Rows<Customer> customers = cd::export;
+    StreamingOutput body = switch (format) {
+      case "csv" -> output -> {
+        Writer writer = writer(output);
+        CSVWriter csv = new CSVWriter(writer);
+        csv.writeCustomerHeader();
+        customers.export(csv::writeCustomer);
+        writer.flush();
+      };
+      case "ndjson" -> ndjson(customers);
+      case "xml" -> xml("customers", customers, Export::writeCustomer);
+      default -> null;
+    };
+    return download(body, format, "customers");
+  }
+
+  private static Response download(StreamingOutput body, String format, String name) {
+    if (body == null) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Unsupported format " + format + ". Use csv, ndjson or xml.").build();
+    }
+    String type = switch (format) {
+      case "ndjson" -> APPLICATION_NDJSON;
+      case "xml" -> MediaType.APPLICATION_XML + "; charset=UTF-8";
+      default -> TEXT_CSV + "; charset=UTF-8";
+    };
+    return Response.status(Response.Status.OK)
+        .entity(body)
+        .type(type)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format + "\"")
+        .build();
+  }
+
+  private static Writer writer(OutputStream output) {
+    return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  // One JSON document per line
+  private static <T> StreamingOutput ndjson(Rows<T> rows) {
+    return output -> {
+      try (JsonGenerator json = JsonMapper.mapper().getFactory().createGenerator(output)) {
+        json.setRootValueSeparator(null);
+        rows.export(row -> {
+          json.writeObject(row);
+          json.writeRaw('\n');
+        });
+      }
+    };
+  }
+
+  private static <T> StreamingOutput xml(String root, Rows<T> rows, XmlRow<T> writeRow) {
+    return output -> {
+      Writer writer = writer(output);
+      try {
+        XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(writer);
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeStartElement(root);
+        rows.export(row -> {
+          try {
+            writeRow.write(xml, row);
+          } catch (XMLStreamException e) {
+            throw new IOException(e);
+          }
+        });
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      }
+      writer.flush();
+    };
+  }
+
+  // Same element names as the JSON properties; null values are left out
+  private static void writeReading(XMLStreamWriter xml, Reading reading) throws XMLStreamException {
+    xml.writeStartElement("reading");
+    element(xml, "id", reading.getId());
+    element(xml, "comment", reading.getComment());
+    if (reading.getCustomer() instanceof Customer customer) {
+      writeCustomer(xml, customer);
+    }
+    element(xml, "dateOfReading", reading.getDateOfReading());
+    element(xml, "kindOfMeter", reading.getKindOfMeter());
+    element(xml, "meterCount", reading.getMeterCount());
+    element(xml, "meterId", reading.getMeterId());
+    element(xml, "substitute", reading.getSubstitute());
+    xml.writeEndElement();
+  }
+
+  private static void writeCustomer(XMLStreamWriter xml, Customer customer) throws XMLStreamException {
+    xml.writeStartElement("customer");
+    element(xml, "id", customer.getId());
+    element(xml, "firstName", customer.getFirstName());
+    element(xml, "lastName", customer.getLastName());
+    element(xml, "birthDate", customer.getBirthDate());
+    element(xml, "gender", customer.getGender());
+    xml.writeEndElement();
+  }
+
+  private static void element(XMLStreamWriter xml, String name, Object value) throws XMLStreamException {
+    if (value != null) {
+      xml.writeStartElement(name);
+      xml.writeCharacters(value.toString());
+      xml.writeEndElement();
+    }
+  }
+}
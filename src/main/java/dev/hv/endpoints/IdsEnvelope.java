@@ -0,0 +1,10 @@
+package dev.hv.endpoints;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request body {@code {"ids": [...]}} of the batch deletes.
+ */
+public record IdsEnvelope(List<UUID> ids) {
+}
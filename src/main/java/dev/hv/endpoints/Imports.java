@@ -0,0 +1,70 @@
+package dev.hv.endpoints;
+
+import dev.hv.services.ImportJob;
+import dev.hv.services.ImportJobs;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+@Path("imports")
+public class Imports {
+
+  private static final Logger logger = LogManager.getLogger(Imports.class);
+
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getImports() {
+    List<ImportJob.Status> jobs = ImportJobs.getInstance().all().stream().map(ImportJob::status).toList();
+    return Response.status(Response.Status.OK)
+        .entity(Collections.singletonMap("imports", jobs))
+        .build();
+  }
+
+  @GET
+  @Path("{id}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getImport(@PathParam("id") UUID id) {
+    ImportJob job = ImportJobs.getInstance().get(id);
+    return job != null ? Response.status(Response.Status.OK).entity(Collections.singletonMap("import", job.status())).build()
+        : Response.status(Response.Status.NOT_FOUND).entity("Import not found").build();
+  }
+
+  @DELETE
+  @Path("{id}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response cancelImport(@PathParam("id") UUID id) {
+    ImportJob job = ImportJobs.getInstance().get(id);
+    if (job == null) {
+      return Response.status(Response.Status.NOT_FOUND).entity("Import not found").build();
+    }
+    job.cancel();
+    return Response.status(Response.Status.OK).entity(Collections.singletonMap("import", job.status())).build();
+  }
+
+  static Response submit(ImportJob.Type type, InputStream upload) {
+    try {
+      ImportJob job = ImportJobs.getInstance().submit(type, upload);
+      return Response.status(Response.Status.ACCEPTED)
+          .location(URI.create("/imports/" + job.getId()))
+          .entity(Collections.singletonMap("import", job.status()))
+          .build();
+    } catch (RejectedExecutionException e) {
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .header("Retry-After", "30")
+          .entity("Too many imports in progress, try again later").build();
+    } catch (Exception e) {
+      logger.error("Could not queue import: {}", e.getMessage());
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity("Error while saving the file: " + e.getMessage()).build();
+    }
+  }
+}
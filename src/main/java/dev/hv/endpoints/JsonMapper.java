@@ -0,0 +1,29 @@
+package dev.hv.endpoints;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Supplies the one ObjectMapper used for every request and response body. An ObjectMapper
+ * is thread-safe once configured and caches its (de)serializers, so it must not be
+ * created per request.
+ */
+@Provider
+public class JsonMapper implements ContextResolver<ObjectMapper> {
+
+  private static final ObjectMapper mapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  public static ObjectMapper mapper() {
+    return mapper;
+  }
+
+  @Override
+  public ObjectMapper getContext(Class<?> type) {
+    return mapper;
+  }
+}
@@ -0,0 +1,19 @@
+package dev.hv.endpoints;
+
+import dev.hv.metrics.MetricRegistry;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+
+@Path("metrics")
+public class Metrics {
+
+  private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+  @GET
+  @Produces(PROMETHEUS_TEXT)
+  public Response getMetrics() {
+    return Response.status(Response.Status.OK).entity(MetricRegistry.getInstance().scrape()).build();
+  }
+}
@@ -0,0 +1,39 @@
+package dev.hv.endpoints;
+
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Adds {@code Vary: Accept} to the responses of resource methods that produce more than one
+ * media type, such as JSON, CBOR and Smile, so that caches do not hand one format to a
+ * client that asked for another. {@link Compression} adds Accept-Encoding the same way.
+ */
+@Provider
+public class Negotiation implements ContainerResponseFilter {
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+      throws IOException {
+    Method method = resourceInfo.getResourceMethod();
+    if (method == null) {
+      return;
+    }
+    Produces produces = method.isAnnotationPresent(Produces.class) ? method.getAnnotation(Produces.class)
+        : resourceInfo.getResourceClass().getAnnotation(Produces.class);
+    if (produces != null && produces.value().length > 1) {
+      responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package dev.hv.endpoints;
+
+import dev.hv.Reading;
+
+/**
+ * Request and response body {@code {"reading": {...}}}.
+ */
+public record ReadingEnvelope(Reading reading) {
+}
@@ -0,0 +1,124 @@
+package dev.hv.endpoints;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import dev.hv.Customer;
+import dev.hv.ReadingRecord;
+import dev.hv.dao.CustomerDao;
+import dev.hv.dao.ReadingCursor;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Writes the rows of a {@link ReadingCursor} with the same properties Jackson writes for a
+ * {@link dev.hv.Reading}, without creating one: ids and dates are formatted into reused
+ * char buffers and consecutive rows of one customer share its lookup.
+ */
+final class ReadingWriter {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final JsonGenerator json;
+  private final CustomerDao customerDao = new CustomerDao();
+  private final char[] uuid = new char[36];
+  private final byte[] uuidBytes = new byte[16];
+  private final char[] date = new char[10];
+  private long customerMost;
+  private long customerLeast;
+  private Customer customer;
+
+  ReadingWriter(JsonGenerator json) {
+    this.json = json;
+  }
+
+  void write(ReadingCursor row) throws IOException {
+    json.writeStartObject();
+    json.writeFieldName("id");
+    writeUuid(row.idMost(), row.idLeast());
+    json.writeStringField("comment", row.comment());
+    json.writeFieldName("customer");
+    json.writeObject(customer(row.customerMost(), row.customerLeast()));
+    json.writeFieldName("dateOfReading");
+    writeDate(row.epochDay());
+    json.writeFieldName("kindOfMeter");
+    if (row.kindOfMeter() != null) {
+      json.writeString(row.kindOfMeter().name());
+    } else {
+      json.writeNull();
+    }
+    json.writeNumberField("meterCount", row.meterCount());
+    json.writeStringField("meterId", row.meterId());
+    json.writeBooleanField("substitute", row.substitute());
+    json.writeNumberField("version", row.version());
+    json.writeEndObject();
+  }
+
+  private Customer customer(long most, long least) {
+    if (most == 0 && least == 0) {
+      return null;
+    }
+    if (customer == null || most != customerMost || least != customerLeast) {
+      customerMost = most;
+      customerLeast = least;
+      customer = customerDao.read(new UUID(most, least));
+    }
+    return customer;
+  }
+
+  private void writeUuid(long most, long least) throws IOException {
+    // Binary formats get the 16 bytes, like Jackson's UUIDSerializer writes them
+    if (json.canWriteBinaryNatively()) {
+      for (int i = 0; i < 8; i++) {
+        uuidBytes[i] = (byte) (most >>> (56 - 8 * i));
+        uuidBytes[8 + i] = (byte) (least >>> (56 - 8 * i));
+      }
+      json.writeBinary(uuidBytes);
+      return;
+    }
+    hex(most >>> 32, 0, 8);
+    uuid[8] = '-';
+    hex(most >>> 16, 9, 4);
+    uuid[13] = '-';
+    hex(most, 14, 4);
+    uuid[18] = '-';
+    hex(least >>> 48, 19, 4);
+    uuid[23] = '-';
+    hex(least, 24, 12);
+    json.writeString(uuid, 0, uuid.length);
+  }
+
+  // The lowest 4 * digits bits of value as hex digits at uuid[offset]
+  private void hex(long value, int offset, int digits) {
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      uuid[i] = HEX[(int) value & 0xf];
+      value >>>= 4;
+    }
+  }
+
+  private void writeDate(int epochDay) throws IOException {
+    if (epochDay == ReadingRecord.NO_DATE) {
+      json.writeNull();
+      return;
+    }
+    LocalDate day = LocalDate.ofEpochDay(epochDay);
+    int year = day.getYear();
+    if (year < 0 || year > 9999) {
+      json.writeString(day.toString());
+      return;
+    }
+    digits(year, 0, 4);
+    date[4] = '-';
+    digits(day.getMonthValue(), 5, 2);
+    date[7] = '-';
+    digits(day.getDayOfMonth(), 8, 2);
+    json.writeString(date, 0, date.length);
+  }
+
+  private void digits(int value, int offset, int count) {
+    for (int i = offset + count - 1; i >= offset; i--) {
+      date[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+}
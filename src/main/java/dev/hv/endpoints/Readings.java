@@ -1,23 +1,34 @@
 package dev.hv.endpoints;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import dev.hv.Reading;
 import dev.hv.dao.ReadingDao;
+import dev.hv.dao.ReadingKey;
+import dev.hv.dao.TableVersions;
+import dev.hv.dao.VersionConflictException;
 import dev.hv.model.KindOfMeter;
 import dev.hv.services.CSVReader;
+import dev.hv.services.ImportJob;
+import dev.hv.services.ImportResult;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
-import java.io.File;
 import java.io.InputStream;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Path("readings")
@@ -25,13 +36,21 @@ public class Readings {
 
   private static final Logger logger = LogManager.getLogger(Readings.class);
 
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 1000;
+
   @GET
-  @Produces(MediaType.APPLICATION_JSON)
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
   public Response getReadings(
       @QueryParam("customer") UUID customerId,
       @QueryParam("start") String startDate,
       @QueryParam("end") String endDate,
-      @QueryParam("kindOfMeter") KindOfMeter kindOfMeter) {
+      @QueryParam("kindOfMeter") KindOfMeter kindOfMeter,
+      @QueryParam("limit") Integer limit,
+      @QueryParam("after") String after,
+      @QueryParam("stream") boolean stream,
+      @Context Request request,
+      @Context HttpHeaders headers) {
 
     LocalDate start = null;
     LocalDate end = null;
@@ -47,27 +66,75 @@ public class Readings {
           .entity("Invalid date format. Use yyyy-MM-dd.").build();
     }
 
+    ReadingKey afterKey = null;
+    try {
+      if (after != null) {
+        afterKey = ReadingKey.parse(after);
+      }
+    } catch (IllegalArgumentException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Invalid cursor. Use after=<yyyy-MM-dd>,<id>, or after=,<id> after a reading without date.").build();
+    }
+    if (limit != null && limit <= 0) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("limit has to be positive").build();
+    }
+
+    MediaType format = BinaryFormats.select(headers.getAcceptableMediaTypes());
+    EntityTag tag = ETags.of(TableVersions.Table.READING, customerId, start, end, kindOfMeter, limit, afterKey,
+        stream, format);
+    Response notModified = ETags.notModified(request, tag);
+    if (notModified != null) {
+      return notModified;
+    }
+
     ReadingDao rd = new ReadingDao();
+
+    if (stream) {
+      final LocalDate from = start;
+      final LocalDate to = end;
+      final ReadingKey key = afterKey;
+      final int max = limit != null ? limit : 0;
+      StreamingOutput body = output -> {
+        try (JsonGenerator json = BinaryFormats.mapper(format).getFactory().createGenerator(output)) {
+          json.writeStartObject();
+          json.writeArrayFieldStart("readings");
+          rd.streamRows(customerId, from, to, kindOfMeter, key, max, new ReadingWriter(json)::write);
+          json.writeEndArray();
+          json.writeEndObject();
+        }
+      };
+      return ETags.tagged(Response.status(Response.Status.OK).entity(body).type(format), tag).build();
+    }
+
+    if (limit != null || afterKey != null) {
+      int pageSize = Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+      List<Reading> page = rd.findPage(customerId, start, end, kindOfMeter, afterKey, pageSize);
+
+      Map<String, Object> entity = new LinkedHashMap<>();
+      entity.put("readings", page);
+      if (page.size() == pageSize) {
+        entity.put("next", ReadingKey.of(page.get(page.size() - 1)).toString());
+      }
+      return ETags.tagged(Response.status(Response.Status.OK).entity(entity), tag).build();
+    }
+
     List<Reading> readings = rd.find(customerId, start, end, kindOfMeter);
 
     // Wrap in object to match OpenAPI schema
-    return Response.status(Response.Status.OK)
-        .entity(java.util.Collections.singletonMap("readings", readings))
+    return ETags.tagged(Response.status(Response.Status.OK)
+        .entity(java.util.Collections.singletonMap("readings", readings)), tag)
         .build();
   }
 
   @POST
-  @Consumes(MediaType.APPLICATION_JSON)
-  @Produces(MediaType.APPLICATION_JSON)
-  public Response postReading(String body) {
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response postReading(ReadingEnvelope body) {
+    if (body == null || body.reading() == null) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'reading' property").build();
+    }
     try {
-      // Parse JSON and extract "reading" object
-      var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-      var node = mapper.readTree(body).get("reading");
-      if (node == null) {
-        return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'reading' property").build();
-      }
-      Reading reading = mapper.treeToValue(node, Reading.class);
+      Reading reading = body.reading();
 
       // Assign UUID if missing
       if (reading.getId() == null) {
@@ -78,40 +145,40 @@ public class Readings {
       dao.create(reading);
 
       return Response.status(Response.Status.CREATED)
-          .entity(java.util.Collections.singletonMap("reading", reading))
+          .entity(new ReadingEnvelope(reading))
           .build();
     } catch (Exception e) {
       return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request body: " + e.getMessage()).build();
     }
   }
 
+  /**
+   * A reading with a version is only stored if nobody changed it since; otherwise 409.
+   */
   @PUT
-  @Consumes(MediaType.APPLICATION_JSON)
-  @Produces(MediaType.APPLICATION_JSON)
-  public Response putReading(String body) {
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response putReading(ReadingEnvelope body) {
+    if (body == null || body.reading() == null) {
+      return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'reading' property").build();
+    }
     try {
-      var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-      var node = mapper.readTree(body).get("reading");
-      if (node == null) {
-        return Response.status(Response.Status.BAD_REQUEST).entity("Missing 'reading' property").build();
-      }
-      Reading reading = mapper.treeToValue(node, Reading.class);
+      Reading reading = body.reading();
 
       if (reading.getId() == null) {
         return Response.status(Response.Status.BAD_REQUEST).entity("Missing reading id").build();
       }
 
       ReadingDao dao = new ReadingDao();
-      Reading existing = dao.read(reading.getId());
-      if (existing == null) {
+      if (!dao.update(reading)) {
         return Response.status(Response.Status.NOT_FOUND).entity("Reading not found").build();
       }
 
-      dao.update(reading);
-
       return Response.status(Response.Status.OK)
-          .entity(java.util.Collections.singletonMap("reading", reading))
+          .entity(new ReadingEnvelope(reading))
           .build();
+    } catch (VersionConflictException e) {
+      return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
     } catch (Exception e) {
       return Response.status(Response.Status.BAD_REQUEST).entity("Invalid request body: " + e.getMessage()).build();
     }
@@ -119,7 +186,7 @@ public class Readings {
 
   @GET
   @Path("{id}")
-  @Produces(MediaType.APPLICATION_JSON)
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
   public Response getReading(@PathParam("id") UUID id) {
     ReadingDao readingDao = new ReadingDao();
     Reading reading = readingDao.read(id);
@@ -142,29 +209,84 @@ public class Readings {
     return Response.status(Response.Status.OK).build();
   }
 
+  /**
+   * Creates all readings in one transaction. With partial=true the valid readings are kept
+   * and the failed ones listed, otherwise nothing is stored if one of them fails.
+   */
+  @POST
+  @Path("batch")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response postReadings(ReadingsEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.readings() : null, "readings");
+    if (invalid != null) {
+      return invalid;
+    }
+    List<Reading> readings = body.readings();
+    for (Reading reading : readings) {
+      if (reading.getId() == null) {
+        reading.setId(UUID.randomUUID());
+      }
+    }
+    return Batches.respond(new ReadingDao().createAll(readings, partial), partial, Response.Status.CREATED);
+  }
+
+  @PUT
+  @Path("batch")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response putReadings(ReadingsEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.readings() : null, "readings");
+    if (invalid != null) {
+      return invalid;
+    }
+    return Batches.respond(new ReadingDao().updateAll(body.readings(), partial), partial, Response.Status.OK);
+  }
+
+  @POST
+  @Path("batch/delete")
+  @Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  @Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public Response deleteReadings(IdsEnvelope body, @QueryParam("partial") boolean partial) {
+    Response invalid = Batches.validate(body != null ? body.ids() : null, "ids");
+    if (invalid != null) {
+      return invalid;
+    }
+    return Batches.respond(new ReadingDao().deleteAll(body.ids(), partial), partial, Response.Status.OK);
+  }
+
   @POST
   @Path("import")
   @Consumes(MediaType.MULTIPART_FORM_DATA)
+  @Produces(MediaType.APPLICATION_JSON)
   public Response importData(@FormDataParam("file") InputStream fileInputStream,
-      @FormDataParam("file") FormDataContentDisposition fileMetaData) {
+      @FormDataParam("file") FormDataContentDisposition fileMetaData,
+      @QueryParam("wait") boolean wait) {
+    logger.debug("Importing upload {}", fileMetaData.getFileName());
+    return importCsv(fileInputStream, wait);
+  }
 
-    if (!fileMetaData.getType().equals("text/csv")) {
+  /**
+   * Queues the import and answers 202 with the job to poll under /imports/{id}.
+   * With wait=true the upload is parsed while it arrives and the request blocks until
+   * the import is done.
+   */
+  @POST
+  @Path("import")
+  @Consumes("text/csv")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response importCsv(InputStream body, @QueryParam("wait") boolean wait) {
+    if (!wait) {
+      return Imports.submit(ImportJob.Type.READINGS, body);
     }
 
-    File csv = new File(System.getProperty("java.io.tmpdir") + UUID.randomUUID().toString() + ".csv");
-
+    ImportResult result;
     try {
-      java.nio.file.Files.copy(
-          fileInputStream,
-          csv.toPath(),
-          StandardCopyOption.REPLACE_EXISTING);
+      result = CSVReader.parseReading(body);
     } catch (Exception e) {
-      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-          .entity("Error while saving the file: " + e.getMessage()).build();
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Error while importing the file: " + e.getMessage()).build();
     }
-
-    CSVReader.parseReading(csv.toPath());
-
-    return Response.ok("Data imported successfully").build();
+    return Response.ok(java.util.Collections.singletonMap("import", result)).build();
   }
 }
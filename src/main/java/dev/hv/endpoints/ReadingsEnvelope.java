@@ -0,0 +1,11 @@
+package dev.hv.endpoints;
+
+import dev.hv.Reading;
+
+import java.util.List;
+
+/**
+ * Request body {@code {"readings": [...]}} of the batch endpoints.
+ */
+public record ReadingsEnvelope(List<Reading> readings) {
+}
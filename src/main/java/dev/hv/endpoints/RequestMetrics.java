@@ -0,0 +1,107 @@
+package dev.hv.endpoints;
+
+import dev.hv.metrics.MetricRegistry;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+
+/**
+ * Records the latency and response size of every request per resource method. Requests
+ * with a body are recorded after the body has been written, so serialization and streamed
+ * responses are part of the latency.
+ */
+@Provider
+@PreMatching
+public class RequestMetrics implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  private static final String START = RequestMetrics.class.getName() + ".start";
+  private static final String ROUTE = RequestMetrics.class.getName() + ".route";
+  private static final String METHOD = RequestMetrics.class.getName() + ".method";
+  private static final String STATUS = RequestMetrics.class.getName() + ".status";
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public void filter(ContainerRequestContext request) {
+    request.setProperty(START, System.nanoTime());
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    Object start = request.getProperty(START);
+    if (start == null) {
+      return;
+    }
+    Method method = resourceInfo.getResourceMethod();
+    String route = method != null ? method.getDeclaringClass().getSimpleName() + "." + method.getName() : "unmatched";
+    if (response.hasEntity()) {
+      request.setProperty(ROUTE, route);
+      request.setProperty(METHOD, request.getMethod());
+      request.setProperty(STATUS, response.getStatus());
+    } else {
+      record(route, request.getMethod(), response.getStatus(), (Long) start, 0);
+    }
+  }
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+    Object start = context.getProperty(START);
+    Object route = context.getProperty(ROUTE);
+    if (start == null || route == null) {
+      context.proceed();
+      return;
+    }
+    CountingOutputStream counter = new CountingOutputStream(context.getOutputStream());
+    context.setOutputStream(counter);
+    try {
+      context.proceed();
+    } finally {
+      record((String) route, (String) context.getProperty(METHOD), (Integer) context.getProperty(STATUS),
+          (Long) start, counter.count);
+    }
+  }
+
+  private static void record(String route, String method, int status, long start, long bytes) {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.histogram("hv_http_request_duration_seconds", "Latency of HTTP requests per resource method",
+        "route", route, "method", method, "status", Integer.toString(status)).record(System.nanoTime() - start);
+    if (bytes > 0) {
+      registry.counter("hv_http_response_bytes_total", "Bytes of response bodies per resource method",
+          "route", route, "method", method).add(bytes);
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
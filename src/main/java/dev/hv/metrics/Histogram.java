@@ -0,0 +1,64 @@
+package dev.hv.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with one bucket per power of two of microseconds, so every bucket has
+ * the same relative width. Recording is a bit scan and one atomic increment; nothing is
+ * allocated and nothing is locked.
+ */
+public final class Histogram {
+
+  private static final int BUCKETS = 64;
+  // Exported bounds: 2^6 us (64 us) to 2^26 us (~67 s)
+  private static final int FIRST_EXPORTED = 6;
+  private static final int LAST_EXPORTED = 26;
+  private static final String[] BOUNDS = new String[BUCKETS];
+
+  static {
+    for (int i = FIRST_EXPORTED; i <= LAST_EXPORTED; i++) {
+      BOUNDS[i] = BigDecimal.valueOf(1L << i, 6).stripTrailingZeros().toPlainString();
+    }
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sumNanos = new LongAdder();
+
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos) / 1000;
+    // Bucket i holds [2^(i-1), 2^i) us, bucket 0 everything below 1 us
+    counts.incrementAndGet(64 - Long.numberOfLeadingZeros(micros));
+    sumNanos.add(nanos);
+  }
+
+  public long count() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Appends the {@code _bucket}, {@code _sum} and {@code _count} lines of one series.
+   *
+   * @param labels rendered labels without braces, may be empty
+   */
+  void write(StringBuilder out, String name, String labels) {
+    String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulative += counts.get(i);
+      if (i >= FIRST_EXPORTED && i <= LAST_EXPORTED) {
+        out.append(name).append("_bucket").append(prefix).append("le=\"").append(BOUNDS[i]).append("\"} ")
+            .append(cumulative).append('\n');
+      }
+    }
+    out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+    String series = labels.isEmpty() ? "" : "{" + labels + "}";
+    out.append(name).append("_sum").append(series).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+    out.append(name).append("_count").append(series).append(' ').append(cumulative).append('\n');
+  }
+}
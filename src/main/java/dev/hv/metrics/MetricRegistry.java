@@ -0,0 +1,116 @@
+package dev.hv.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide histograms, counters and gauges, rendered in the Prometheus text format.
+ * Labels are passed as name/value pairs; series are created on first use.
+ */
+public final class MetricRegistry {
+
+  private record Family(String name, String type, String help, ConcurrentMap<String, Object> series) {
+  }
+
+  private static final MetricRegistry INSTANCE = new MetricRegistry();
+
+  private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+  private MetricRegistry() {
+  }
+
+  public static MetricRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  public Histogram histogram(String name, String help, String... labels) {
+    return (Histogram) family(name, "histogram", help).series()
+        .computeIfAbsent(render(labels), key -> new Histogram());
+  }
+
+  public LongAdder counter(String name, String help, String... labels) {
+    return (LongAdder) family(name, "counter", help).series()
+        .computeIfAbsent(render(labels), key -> new LongAdder());
+  }
+
+  /**
+   * Registers a value that is read on every scrape. Registering the same series again
+   * replaces the supplier.
+   */
+  public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+    family(name, "gauge", help).series().put(render(labels), value);
+  }
+
+  /**
+   * Like {@link #gauge} for values that only ever grow and are counted elsewhere.
+   */
+  public void counterFunction(String name, String help, DoubleSupplier value, String... labels) {
+    family(name, "counter", help).series().put(render(labels), value);
+  }
+
+  private Family family(String name, String type, String help) {
+    Family family = families.computeIfAbsent(name,
+        key -> new Family(name, type, help, new ConcurrentSkipListMap<>()));
+    if (!family.type().equals(type)) {
+      throw new IllegalArgumentException(name + " is already registered as " + family.type());
+    }
+    return family;
+  }
+
+  public String scrape() {
+    StringBuilder out = new StringBuilder(16 * 1024);
+    for (Family family : families.values()) {
+      out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+      out.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+      for (Map.Entry<String, Object> series : family.series().entrySet()) {
+        String labels = series.getKey();
+        Object value = series.getValue();
+        if (value instanceof Histogram histogram) {
+          histogram.write(out, family.name(), labels);
+          continue;
+        }
+        out.append(family.name());
+        if (!labels.isEmpty()) {
+          out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value instanceof LongAdder adder) {
+          out.append(adder.sum());
+        } else {
+          out.append(((DoubleSupplier) value).getAsDouble());
+        }
+        out.append('\n');
+      }
+    }
+    return out.toString();
+  }
+
+  private static String render(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name/value pairs");
+    }
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append(labels[i]).append("=\"");
+      String value = labels[i + 1] == null ? "" : labels[i + 1];
+      for (int j = 0; j < value.length(); j++) {
+        char c = value.charAt(j);
+        switch (c) {
+          case '\\' -> out.append("\\\\");
+          case '"' -> out.append("\\\"");
+          case '\n' -> out.append("\\n");
+          default -> out.append(c);
+        }
+      }
+      out.append('"');
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,50 @@
+package dev.hv.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives the timings of the Hikari pool: how long callers waited for a connection and
+ * how long they kept it.
+ */
+public class PoolMetricsTracker implements IMetricsTracker {
+
+  private final Histogram acquire;
+  private final Histogram usage;
+  private final LongAdder timeouts;
+
+  public PoolMetricsTracker(String poolName, PoolStats stats) {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    acquire = registry.histogram("hv_pool_acquire_duration_seconds",
+        "Time spent waiting for a pooled connection", "pool", poolName);
+    usage = registry.histogram("hv_pool_usage_duration_seconds",
+        "Time a pooled connection was borrowed", "pool", poolName);
+    timeouts = registry.counter("hv_pool_timeouts_total",
+        "Requests for a connection that timed out", "pool", poolName);
+    String help = "Connections of the pool by state";
+    registry.gauge("hv_pool_connections", help, stats::getActiveConnections, "pool", poolName, "state", "active");
+    registry.gauge("hv_pool_connections", help, stats::getIdleConnections, "pool", poolName, "state", "idle");
+    registry.gauge("hv_pool_connections", help, stats::getTotalConnections, "pool", poolName, "state", "total");
+    registry.gauge("hv_pool_connections", help, stats::getMaxConnections, "pool", poolName, "state", "max");
+    registry.gauge("hv_pool_pending_threads", "Threads waiting for a connection",
+        stats::getPendingThreads, "pool", poolName);
+  }
+
+  @Override
+  public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+    acquire.record(elapsedAcquiredNanos);
+  }
+
+  @Override
+  public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+    usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+  }
+
+  @Override
+  public void recordConnectionTimeout() {
+    timeouts.increment();
+  }
+}
@@ -0,0 +1,40 @@
+package dev.hv.metrics;
+
+/**
+ * Times one DAO statement from preparing it until its rows are mapped:
+ * <pre>
+ * try (SqlTimer timer = SqlTimer.start("Reading.find")) {
+ *   ...
+ *   timer.rows(readings.size());
+ * }
+ * </pre>
+ */
+public final class SqlTimer implements AutoCloseable {
+
+  private final String statement;
+  private final long start = System.nanoTime();
+  private long rows;
+
+  private SqlTimer(String statement) {
+    this.statement = statement;
+  }
+
+  public static SqlTimer start(String statement) {
+    return new SqlTimer(statement);
+  }
+
+  public void rows(long rows) {
+    this.rows = rows;
+  }
+
+  @Override
+  public void close() {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.histogram("hv_sql_duration_seconds", "Duration of DAO statements including row mapping",
+        "statement", statement).record(System.nanoTime() - start);
+    if (rows > 0) {
+      registry.counter("hv_sql_rows_total", "Rows read or written by DAO statements",
+          "statement", statement).add(rows);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package dev.hv.model;
 
+import java.sql.Connection;
 import java.util.Properties;
 
 public interface IDatabaseConnection {
@@ -9,4 +10,5 @@ public interface IDatabaseConnection {
     void truncateAllTables();
     void removeAllTables();
     void closeConnection();
+    Connection acquireConnection();
 }
@@ -1,123 +1,351 @@
 package dev.hv.services;
 
-import dev.hv.dao.DbConnection;
+import dev.hv.ReadingRecord;
+import dev.hv.dao.CustomerCache;
+import dev.hv.dao.MeterMonths;
+import dev.hv.dao.ReadingColumns;
+import dev.hv.metrics.MetricRegistry;
 import dev.hv.model.Gender;
 import dev.hv.model.KindOfMeter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CSVReader {
 
     private static final Logger logger = LogManager.getLogger(CSVReader.class);
 
-    public static int parseReading(Path filePath) {
+    private static final String METER_EXCHANGE = "Zählertausch: neue Nummer ";
+    private static final int CHUNK_LINES = 5000;
+    // Date, count and comment; a comment may contain the delimiter
+    private static final int READING_FIELDS = 3;
 
-        long startTime = System.currentTimeMillis();
-        int rowsAffected;
+    private static final String INSERT_READING = "INSERT INTO Reading (id, comment, customer, dateOfReading, kindOfMeter, meterCount, meterId, substitute) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CUSTOMER = """
+            INSERT INTO Customer (id, firstName, lastName, birthDate, gender)
+            VALUES (?, ?, ?, ?, ? )
+            """;
 
-        Connection con = DbConnection.getInstance().getConnection();
+    // Values of the header rows ("Kunde", "Zählernummer", "Datum") that apply to all following rows
+    private record ReadingContext(UUID customer, String meterId, KindOfMeter kindOfMeter) {
+    }
+
+    private record CustomerRow(UUID id, String firstName, String lastName, LocalDate birthDate, Gender gender) {
+    }
+
+    /**
+     * Lines of one block that share the same header context. Line i spans
+     * {@code [lines[2i], lines[2i + 1])} of the block.
+     */
+    private record LineChunk<C>(C context, ByteBuffer block, int[] lines, int lineCount) {
+    }
+
+    private static final class ChunkCollector<C> {
+        private final ImportPipeline<LineChunk<C>, ?> pipeline;
+        private C context;
+        private ByteBuffer block;
+        private int[] lines = new int[CHUNK_LINES * 2];
+        private int lineCount;
+
+        ChunkCollector(ImportPipeline<LineChunk<C>, ?> pipeline, C context) {
+            this.pipeline = pipeline;
+            this.context = context;
+        }
+
+        void add(ByteBuffer lineBlock, int start, int end) {
+            if (lineBlock != block) {
+                // A chunk refers to exactly one block
+                flush();
+                block = lineBlock;
+            }
+            lines[lineCount * 2] = start;
+            lines[lineCount * 2 + 1] = end;
+            if (++lineCount == CHUNK_LINES) {
+                flush();
+            }
+        }
+
+        void changeContext(C next) {
+            if (!next.equals(context)) {
+                // Lines collected so far still belong to the old context
+                flush();
+                context = next;
+            }
+        }
+
+        C context() {
+            return context;
+        }
+
+        void flush() {
+            if (lineCount > 0) {
+                pipeline.submit(new LineChunk<>(context, block, lines, lineCount));
+                lines = new int[CHUNK_LINES * 2];
+                lineCount = 0;
+            }
+        }
+    }
 
-        String query = "INSERT INTO Reading (id, comment, customer, dateOfReading, kindOfMeter, meterCount, meterId, substitute) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Imports a reading file by mapping it into memory, without copying it onto the heap.
+     */
+    public static ImportResult parseReading(Path filePath) {
+        return parseReading(filePath, new ImportProgress());
+    }
 
+    public static ImportResult parseReading(Path filePath, ImportProgress progress) {
         logger.debug("Importing {}", filePath.toString());
-        // Read the file and split the lines into rows and columns and remove double quotes
-        try (BufferedReader reader = Files.newBufferedReader(filePath);
-             PreparedStatement preparedStatement = con.prepareStatement(query)) {
-            reader.lines()
-                    .forEach(line -> {
-
-                        try {
-                            String[] cells = line.replace("\"", "").split(";", 3);
-                            if (cells[0].isEmpty()) return; // Skip empty lines
-                            if (cells[2].contains("Zählertausch: neue Nummer ")) // Check if the comment mentions meter replacement
-                                preparedStatement.setString(7, cells[2].split(" ")[3]); // Extract the new meter id by splitting the comment and taking the last part
-
-                            // Check the first column of the row to determine if it's a special row
-                            switch (cells[0]) {
-                                case "Kunde" -> preparedStatement.setObject(3, UUID.fromString(cells[1]));
-
-                                case "Zählernummer" -> preparedStatement.setObject(7, cells[1]);
-
-                                case "Datum" -> preparedStatement.setObject(5, (switch (cells[1]) {
-                                    case "Zählerstand in MWh" -> KindOfMeter.HEIZUNG;
-                                    case "Zählerstand in m³" -> KindOfMeter.WASSER;
-                                    case "Zählerstand in kWh" -> KindOfMeter.STROM;
-                                    default -> KindOfMeter.UNBEKANNT;
-                                }).name()); // Kind of meter
-
-
-                                default -> {
-                                    preparedStatement.setObject(1, UUID.randomUUID()); // ID
-                                    preparedStatement.setObject(2, cells[2]); // Comment
-                                    preparedStatement.setObject(4, LocalDate.parse(cells[0], DateTimeFormatter.ofPattern("dd.MM.yyyy"))); // Date
-                                    preparedStatement.setObject(6, Double.parseDouble(cells[1].replace(",", "."))); // Meter count
-                                    preparedStatement.setObject(8, false); // Substitute
-                                    preparedStatement.addBatch();
-                                }
-                            }
-                        } catch (SQLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-
-            rowsAffected = Arrays.stream(preparedStatement.executeBatch()).sum();
-            logger.debug("Imported {} rows in {} ms", rowsAffected, System.currentTimeMillis() - startTime);
-            return rowsAffected;
-        } catch (IOException | SQLException e) {
+        return importReadings(open(filePath), progress);
+    }
+
+    /**
+     * Imports a reading file while it is still arriving, e.g. from an upload.
+     */
+    public static ImportResult parseReading(InputStream in) {
+        logger.debug("Importing readings from stream");
+        return importReadings(CsvLineReader.of(in), new ImportProgress());
+    }
+
+    public static ImportResult parseCustomer(Path filePath) {
+        return parseCustomer(filePath, new ImportProgress());
+    }
+
+    public static ImportResult parseCustomer(Path filePath, ImportProgress progress) {
+        logger.debug("Importing {}", filePath.toString());
+        return importCustomers(open(filePath), progress);
+    }
+
+    public static ImportResult parseCustomer(InputStream in) {
+        logger.debug("Importing customers from stream");
+        return importCustomers(CsvLineReader.of(in), new ImportProgress());
+    }
+
+    private static CsvLineReader open(Path filePath) {
+        try {
+            return CsvLineReader.of(FileChannel.open(filePath, StandardOpenOption.READ));
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public static int parseCustomer(Path filePath) {
-
-        Connection con = DbConnection.getInstance().getConnection();
-
-        String query = """
-                INSERT INTO Customer (id, firstName, lastName, birthDate, gender)
-                VALUES (?, ?, ?, ?, ? )
-                """;
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath);
-             PreparedStatement preparedStatement = con.prepareStatement(query)) {
-            reader.lines()
-                    .filter(line -> !line.split(",")[0].equals("UUID")) // Filter out the column names
-                    .forEach(line -> { // Lambda executed on every line
-                        String[] cells = line.split(",");
-
-                        try {
-                            preparedStatement.setObject(1, UUID.fromString(cells[0]));
-                            preparedStatement.setString(2, cells[2]);
-                            preparedStatement.setString(3, cells[3]);
-                            preparedStatement.setString(5,
-                                    (switch (cells[1]) {
-                                        case "Herr" -> Gender.M;
-                                        case "Frau" -> Gender.D;
-                                        default -> Gender.U;
-                                    }).toString());
-                            preparedStatement.setObject(4,
-                                    cells.length == 5 ? LocalDate.parse(cells[4], DateTimeFormatter.ofPattern("dd.MM.yyyy")) : null); // If the date is missing, set it to null
-                            preparedStatement.addBatch();
-                        } catch (SQLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-
-            return Arrays.stream(preparedStatement.executeBatch()).sum();
-
-        } catch (IOException | SQLException e) {
-            throw new RuntimeException(e);
+    private static ImportResult importReadings(CsvLineReader source, ImportProgress progress) {
+
+        long startTime = System.nanoTime();
+        long bytes = 0;
+
+        // Chunks are written by several threads; their meters are reloaded into ReadingColumns at the end
+        Set<String> meterIds = ConcurrentHashMap.newKeySet();
+        ImportPipeline<LineChunk<ReadingContext>, ReadingRecord> pipeline =
+                new ImportPipeline<>(CSVReader::parseReadingChunk, INSERT_READING, CSVReader::bindReading,
+                        (connection, rows) -> {
+                            addMeterMonths(connection, rows);
+                            rows.forEach(row -> {
+                                if (row.meterId() != null) {
+                                    meterIds.add(row.meterId());
+                                }
+                            });
+                        }, progress);
+
+        // Committed chunks stay in the database if the import fails, so their meters are reloaded either way
+        int rows;
+        try {
+            // The file is read on this thread, which only has to track the header context.
+            // Converting the values happens on the parse workers.
+            try (CsvLineReader reader = source) {
+                ChunkCollector<ReadingContext> chunks = new ChunkCollector<>(pipeline, new ReadingContext(null, null, null));
+                CsvTokenizer tokenizer = new CsvTokenizer(';');
+                while (reader.next()) {
+                    progress.setBytesRead(reader.bytesRead());
+                    tokenizer.reset(reader.block()).tokenize(reader.lineStart(), reader.lineEnd(), READING_FIELDS);
+                    if (tokenizer.isEmpty(0)) continue; // Skip empty lines
+
+                    boolean dataRow = Character.isDigit(tokenizer.firstChar(0));
+                    if (!dataRow || tokenizer.indexOf(2, METER_EXCHANGE) >= 0) {
+                        chunks.changeContext(applyHeader(chunks.context(), tokenizer));
+                        if (isHeader(tokenizer)) continue;
+                    }
+                    chunks.add(reader.block(), reader.lineStart(), reader.lineEnd());
+                }
+                chunks.flush();
+                bytes = reader.bytesRead();
+            } catch (IOException | RuntimeException e) {
+                pipeline.abort(e);
+            }
+            rows = pipeline.finish();
+        } finally {
+            ReadingColumns.getInstance().refresh(meterIds);
+        }
+        ImportResult result = ImportResult.of(rows, bytes, System.nanoTime() - startTime);
+        recordImport("readings", result, System.nanoTime() - startTime);
+        logger.debug("Imported {} rows in {} ms ({} rows/s, {} bytes/s)", result.rows(), result.millis(),
+                result.rowsPerSecond(), result.bytesPerSecond());
+        return result;
+    }
+
+    private static ImportResult importCustomers(CsvLineReader source, ImportProgress progress) {
+
+        long startTime = System.nanoTime();
+        long bytes = 0;
+
+        ImportPipeline<LineChunk<Boolean>, CustomerRow> pipeline =
+                new ImportPipeline<>(CSVReader::parseCustomerChunk, INSERT_CUSTOMER, CSVReader::bindCustomer, progress);
+
+        int rows;
+        try {
+            try (CsvLineReader reader = source) {
+                ChunkCollector<Boolean> chunks = new ChunkCollector<>(pipeline, Boolean.TRUE);
+                CsvTokenizer tokenizer = new CsvTokenizer(',');
+                while (reader.next()) {
+                    progress.setBytesRead(reader.bytesRead());
+                    tokenizer.reset(reader.block()).tokenize(reader.lineStart(), reader.lineEnd());
+                    if (tokenizer.isEmpty(0) || tokenizer.equals(0, "UUID")) continue; // Filter out the column names
+
+                    chunks.add(reader.block(), reader.lineStart(), reader.lineEnd());
+                }
+                chunks.flush();
+                bytes = reader.bytesRead();
+            } catch (IOException | RuntimeException e) {
+                pipeline.abort(e);
+            }
+            rows = pipeline.finish();
+        } finally {
+            // The import writes past CustomerDao, so nothing cached may be trusted afterwards,
+            // not even after a failure: the chunks committed before it stay
+            CustomerCache.getInstance().invalidateAll();
+        }
+        ImportResult result = ImportResult.of(rows, bytes, System.nanoTime() - startTime);
+        recordImport("customers", result, System.nanoTime() - startTime);
+        logger.debug("Imported {} customers in {} ms ({} rows/s, {} bytes/s)", result.rows(), result.millis(),
+                result.rowsPerSecond(), result.bytesPerSecond());
+        return result;
+    }
+
+    private static void recordImport(String type, ImportResult result, long nanos) {
+        MetricRegistry registry = MetricRegistry.getInstance();
+        registry.histogram("hv_import_duration_seconds", "Duration of completed CSV imports", "type", type)
+                .record(nanos);
+        registry.counter("hv_import_rows_total", "Rows stored by CSV imports", "type", type).add(result.rows());
+        registry.counter("hv_import_bytes_total", "Bytes read by CSV imports", "type", type).add(result.bytes());
+    }
+
+    private static boolean isHeader(CsvTokenizer tokenizer) {
+        return tokenizer.equals(0, "Kunde") || tokenizer.equals(0, "Zählernummer") || tokenizer.equals(0, "Datum");
+    }
+
+    private static ReadingContext applyHeader(ReadingContext context, CsvTokenizer tokenizer) {
+        UUID customer = context.customer();
+        String meterId = context.meterId();
+        KindOfMeter kindOfMeter = context.kindOfMeter();
+
+        // Check if the comment mentions meter replacement and extract the new meter id
+        int exchange = tokenizer.indexOf(2, METER_EXCHANGE);
+        if (exchange >= 0) {
+            String rest = tokenizer.string(2, exchange + tokenizer.encodedLength(METER_EXCHANGE)).trim();
+            int end = rest.indexOf(' ');
+            meterId = end < 0 ? rest : rest.substring(0, end);
         }
 
+        // Check the first column of the row to determine if it's a special row
+        if (tokenizer.equals(0, "Kunde")) {
+            customer = tokenizer.uuid(1);
+        } else if (tokenizer.equals(0, "Zählernummer")) {
+            meterId = tokenizer.string(1);
+        } else if (tokenizer.equals(0, "Datum")) {
+            if (tokenizer.equals(1, "Zählerstand in MWh")) {
+                kindOfMeter = KindOfMeter.HEIZUNG;
+            } else if (tokenizer.equals(1, "Zählerstand in m³")) {
+                kindOfMeter = KindOfMeter.WASSER;
+            } else if (tokenizer.equals(1, "Zählerstand in kWh")) {
+                kindOfMeter = KindOfMeter.STROM;
+            } else {
+                kindOfMeter = KindOfMeter.UNBEKANNT;
+            }
+        }
+        return new ReadingContext(customer, meterId, kindOfMeter);
+    }
+
+    private static List<ReadingRecord> parseReadingChunk(LineChunk<ReadingContext> chunk) {
+        ReadingContext context = chunk.context();
+        CsvTokenizer tokenizer = new CsvTokenizer(';').reset(chunk.block());
+        int[] lines = chunk.lines();
+        List<ReadingRecord> rows = new ArrayList<>(chunk.lineCount());
+        for (int i = 0; i < chunk.lineCount(); i++) {
+            tokenizer.tokenize(lines[2 * i], lines[2 * i + 1], READING_FIELDS);
+
+            rows.add(ReadingRecord.of(
+                    UUID.randomUUID(),
+                    tokenizer.string(2),
+                    context.customer(),
+                    tokenizer.date(0),
+                    context.kindOfMeter(),
+                    tokenizer.decimal(1),
+                    context.meterId(),
+                    false));
+        }
+        return rows;
+    }
+
+    private static List<CustomerRow> parseCustomerChunk(LineChunk<Boolean> chunk) {
+        CsvTokenizer tokenizer = new CsvTokenizer(',').reset(chunk.block());
+        int[] lines = chunk.lines();
+        List<CustomerRow> rows = new ArrayList<>(chunk.lineCount());
+        for (int i = 0; i < chunk.lineCount(); i++) {
+            tokenizer.tokenize(lines[2 * i], lines[2 * i + 1]);
+
+            Gender gender;
+            if (tokenizer.equals(1, "Herr")) {
+                gender = Gender.M;
+            } else if (tokenizer.equals(1, "Frau")) {
+                gender = Gender.D;
+            } else {
+                gender = Gender.U;
+            }
+            rows.add(new CustomerRow(
+                    tokenizer.uuid(0),
+                    tokenizer.string(2),
+                    tokenizer.string(3),
+                    tokenizer.isEmpty(4) ? null : tokenizer.date(4), // If the date is missing, set it to null
+                    gender));
+        }
+        return rows;
+    }
+
+    private static void bindReading(PreparedStatement preparedStatement, ReadingRecord row) throws SQLException {
+        preparedStatement.setObject(1, row.id()); // ID
+        preparedStatement.setString(2, row.comment()); // Comment
+        preparedStatement.setObject(3, row.customer());
+        preparedStatement.setObject(4, row.dateOfReading()); // Date
+        preparedStatement.setString(5, row.kindOfMeter() != null ? row.kindOfMeter().name() : null); // Kind of meter
+        preparedStatement.setDouble(6, row.meterCount()); // Meter count
+        preparedStatement.setString(7, row.meterId());
+        preparedStatement.setBoolean(8, row.substitute()); // Substitute
+    }
+
+    private static void addMeterMonths(Connection connection, List<ReadingRecord> rows) throws SQLException {
+        List<MeterMonths.Sample> samples = new ArrayList<>(rows.size());
+        for (ReadingRecord row : rows) {
+            samples.add(MeterMonths.Sample.of(row));
+        }
+        MeterMonths.add(connection, samples);
+    }
+
+    private static void bindCustomer(PreparedStatement preparedStatement, CustomerRow row) throws SQLException {
+        preparedStatement.setObject(1, row.id());
+        preparedStatement.setString(2, row.firstName());
+        preparedStatement.setString(3, row.lastName());
+        preparedStatement.setObject(4, row.birthDate());
+        preparedStatement.setString(5, row.gender().toString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package dev.hv.services;
+
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.model.KindOfMeter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Writes readings and customers in the layout that {@link CSVReader} imports, so an export
+ * can be imported again.
+ * <p>
+ * Readings are written in blocks with a "Kunde", "Zählernummer" and "Datum" header, a new
+ * block whenever one of them changes; the rows have to arrive grouped by customer, kind of
+ * meter and meter. Readings without a customer can only be written before the first block
+ * with one, because the importer keeps a customer until the next "Kunde" line.
+ * <p>
+ * The importer knows no quoting, so delimiters and line breaks in values are replaced, and
+ * the substitute flag of a reading is not part of the layout. Readings without a date are
+ * left out, the importer needs one; readings without a kind of meter get the plain
+ * "Zählerstand" header, which imports as {@link KindOfMeter#UNBEKANNT}.
+ */
+public final class CSVWriter {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final Writer out;
+    private boolean started;
+    private UUID customer;
+    private KindOfMeter kindOfMeter;
+    private String meterId;
+
+    public CSVWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void writeReading(Reading reading) throws IOException {
+        if (reading.getDateOfReading() == null) {
+            return;
+        }
+        UUID customerId = reading.getCustomer() instanceof Customer owner ? owner.getId() : null;
+        if (customerId == null && customer != null) {
+            throw new IllegalStateException("Readings without a customer have to come first");
+        }
+
+        boolean newCustomer = !started || !Objects.equals(customerId, customer);
+        boolean newMeter = newCustomer || !Objects.equals(reading.getMeterId(), meterId);
+        boolean newKind = newMeter || reading.getKindOfMeter() != kindOfMeter;
+        if (newKind) {
+            if (started) {
+                out.write(";;\n");
+            }
+            if (newCustomer && customerId != null) {
+                out.write("\"Kunde\";\"" + customerId + "\";\n");
+            }
+            if (newMeter) {
+                out.write("\"Zählernummer\";\"" + text(reading.getMeterId(), ';') + "\";\n");
+            }
+            out.write("\"Datum\";\"" + unit(reading.getKindOfMeter()) + "\";\"Kommentar\"\n");
+            started = true;
+            customer = customerId;
+            meterId = reading.getMeterId();
+            kindOfMeter = reading.getKindOfMeter();
+        }
+
+        out.write('"');
+        out.write(DATE.format(reading.getDateOfReading()));
+        out.write("\";");
+        out.write(BigDecimal.valueOf(reading.getMeterCount()).stripTrailingZeros().toPlainString().replace('.', ','));
+        out.write(';');
+        String comment = text(reading.getComment(), ';');
+        if (!comment.isEmpty()) {
+            out.write('"');
+            out.write(comment);
+            out.write('"');
+        }
+        out.write('\n');
+    }
+
+    public void writeCustomerHeader() throws IOException {
+        out.write("UUID,Anrede,Vorname,Nachname,Geburtsdatum\n");
+    }
+
+    public void writeCustomer(Customer customer) throws IOException {
+        out.write(customer.getId().toString());
+        out.write(',');
+        out.write(salutation(customer));
+        out.write(',');
+        out.write(text(customer.getFirstName(), ','));
+        out.write(',');
+        out.write(text(customer.getLastName(), ','));
+        out.write(',');
+        LocalDate birthDate = customer.getBirthDate();
+        if (birthDate != null) {
+            out.write(DATE.format(birthDate));
+        }
+        out.write('\n');
+    }
+
+    private static String unit(KindOfMeter kindOfMeter) {
+        if (kindOfMeter == null) {
+            return "Zählerstand";
+        }
+        return switch (kindOfMeter) {
+            case HEIZUNG -> "Zählerstand in MWh";
+            case WASSER -> "Zählerstand in m³";
+            case STROM -> "Zählerstand in kWh";
+            default -> "Zählerstand";
+        };
+    }
+
+    // The importer reads "Frau" as D, so W becomes D on the way back
+    private static String salutation(Customer customer) {
+        if (customer.getGender() == null) {
+            return "";
+        }
+        return switch (customer.getGender()) {
+            case M -> "Herr";
+            case D, W -> "Frau";
+            default -> "";
+        };
+    }
+
+    private static String text(String value, char delimiter) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace(delimiter, delimiter == ';' ? ',' : ';').replace('\r', ' ').replace('\n', ' ');
+    }
+}
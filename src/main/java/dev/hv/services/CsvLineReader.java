@@ -0,0 +1,181 @@
+package dev.hv.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reports line boundaries inside the current block of a byte source. A line never spans
+ * two blocks. Blocks are never overwritten once lines have been handed out, so chunks
+ * referring to a block can be parsed on other threads while reading continues.
+ * <p>
+ * {@link #of(InputStream)} reads the stream into heap blocks as it arrives,
+ * {@link #of(FileChannel)} maps the file window by window and copies nothing.
+ */
+abstract class CsvLineReader implements Closeable {
+
+  static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+  protected ByteBuffer block;
+  protected int limit;
+  protected int position;
+  protected boolean eof;
+
+  private int lineStart;
+  private int lineEnd;
+
+  static CsvLineReader of(InputStream in) {
+    return new StreamLineReader(in, DEFAULT_BLOCK_SIZE);
+  }
+
+  static CsvLineReader of(FileChannel channel) throws IOException {
+    return new MappedLineReader(channel, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * @return false at the end of the input
+   */
+  boolean next() throws IOException {
+    int scan = position;
+    while (true) {
+      for (int i = scan; i < limit; i++) {
+        if (block.get(i) == '\n') {
+          lineStart = position;
+          lineEnd = i > position && block.get(i - 1) == '\r' ? i - 1 : i;
+          position = i + 1;
+          return true;
+        }
+      }
+      if (eof) {
+        if (position < limit) {
+          // Last line without line break
+          lineStart = position;
+          lineEnd = block.get(limit - 1) == '\r' ? limit - 1 : limit;
+          position = limit;
+          return true;
+        }
+        return false;
+      }
+      scan = fill();
+    }
+  }
+
+  /**
+   * Makes more bytes available after {@code limit}, possibly in a new block that starts
+   * with the incomplete line.
+   *
+   * @return the index in the (new) block at which scanning continues
+   */
+  protected abstract int fill() throws IOException;
+
+  /**
+   * @return the number of bytes consumed from the source so far
+   */
+  abstract long bytesRead();
+
+  ByteBuffer block() {
+    return block;
+  }
+
+  int lineStart() {
+    return lineStart;
+  }
+
+  int lineEnd() {
+    return lineEnd;
+  }
+
+  private static final class StreamLineReader extends CsvLineReader {
+    private final InputStream in;
+    private final int blockSize;
+    private byte[] bytes;
+    private long bytesRead;
+
+    StreamLineReader(InputStream in, int blockSize) {
+      this.in = in;
+      this.blockSize = blockSize;
+      this.bytes = new byte[blockSize];
+      this.block = ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    protected int fill() throws IOException {
+      int scan = limit;
+      if (limit == bytes.length) {
+        int carry = limit - position;
+        byte[] next = new byte[Math.max(blockSize, carry * 2)];
+        System.arraycopy(bytes, position, next, 0, carry);
+        bytes = next;
+        block = ByteBuffer.wrap(next);
+        limit = carry;
+        position = 0;
+        scan = carry;
+      }
+      int read = in.read(bytes, limit, bytes.length - limit);
+      if (read < 0) {
+        eof = true;
+      } else {
+        limit += read;
+        bytesRead += read;
+      }
+      return scan;
+    }
+
+    @Override
+    long bytesRead() {
+      return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  private static final class MappedLineReader extends CsvLineReader {
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private long windowOffset;
+
+    MappedLineReader(FileChannel channel, long windowSize) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      this.windowSize = windowSize;
+      this.block = ByteBuffer.allocate(0);
+      this.eof = size == 0;
+    }
+
+    @Override
+    protected int fill() throws IOException {
+      // The next window starts at the incomplete line
+      long start = windowOffset + position;
+      int carry = limit - position;
+      long length = Math.min(Math.max(windowSize, carry * 2L), size - start);
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Line too long at byte " + start);
+      }
+      block = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      windowOffset = start;
+      position = 0;
+      limit = (int) length;
+      eof = start + length == size;
+      return carry;
+    }
+
+    @Override
+    long bytesRead() {
+      return windowOffset + limit;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
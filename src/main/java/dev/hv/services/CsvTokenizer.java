@@ -0,0 +1,290 @@
+package dev.hv.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits a line of a UTF-8 encoded block into fields without creating substrings.
+ * Surrounding double quotes are stripped from every field. Dates ({@code dd.MM.yyyy}),
+ * decimals with comma or dot and UUIDs are decoded straight from the bytes; only
+ * {@link #string(int)} decodes UTF-8 and allocates.
+ * <p>
+ * The delimiters, quotes and digits are ASCII, which never occurs inside a multi-byte
+ * UTF-8 sequence, so the bytes can be scanned without decoding them first.
+ * An instance is reused for many lines but must not be shared between threads.
+ */
+public final class CsvTokenizer {
+
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+  private static final int DATE_CACHE_SIZE = 256;
+
+  // UTF-8 form of the constants passed to equals() and indexOf()
+  private static final Map<String, byte[]> ENCODED = new ConcurrentHashMap<>();
+
+  private final byte delimiter;
+  private ByteBuffer buffer;
+  private int[] starts = new int[8];
+  private int[] ends = new int[8];
+  private int fieldCount;
+
+  // Direct-mapped cache, meter files repeat the same few hundred dates over and over
+  private final int[] cachedDateKeys = new int[DATE_CACHE_SIZE];
+  private final LocalDate[] cachedDates = new LocalDate[DATE_CACHE_SIZE];
+
+  public CsvTokenizer(char delimiter) {
+    this.delimiter = (byte) delimiter;
+  }
+
+  public CsvTokenizer reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.fieldCount = 0;
+    return this;
+  }
+
+  /**
+   * Splits the line {@code [lineStart, lineEnd)} of the current buffer.
+   *
+   * @return the number of fields
+   */
+  public int tokenize(int lineStart, int lineEnd) {
+    return tokenize(lineStart, lineEnd, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Splits the line into at most {@code maxFields} fields; the last one keeps the rest of
+   * the line, delimiters included, like {@code String.split(regex, maxFields)}.
+   *
+   * @return the number of fields
+   */
+  public int tokenize(int lineStart, int lineEnd, int maxFields) {
+    fieldCount = 0;
+    int start = lineStart;
+    for (int i = lineStart; i <= lineEnd; i++) {
+      if (i == lineEnd || (buffer.get(i) == delimiter && fieldCount < maxFields - 1)) {
+        addField(start, i);
+        start = i + 1;
+      }
+    }
+    return fieldCount;
+  }
+
+  private void addField(int start, int end) {
+    if (fieldCount == starts.length) {
+      starts = Arrays.copyOf(starts, fieldCount * 2);
+      ends = Arrays.copyOf(ends, fieldCount * 2);
+    }
+    if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+      start++;
+      end--;
+    }
+    starts[fieldCount] = start;
+    ends[fieldCount] = end;
+    fieldCount++;
+  }
+
+  public int fieldCount() {
+    return fieldCount;
+  }
+
+  public int length(int field) {
+    return field < fieldCount ? ends[field] - starts[field] : 0;
+  }
+
+  public boolean isEmpty(int field) {
+    return length(field) == 0;
+  }
+
+  public char firstChar(int field) {
+    return isEmpty(field) ? 0 : (char) (buffer.get(starts[field]) & 0xFF);
+  }
+
+  public boolean equals(int field, String value) {
+    byte[] encoded = encode(value);
+    int length = length(field);
+    if (length != encoded.length) {
+      return false;
+    }
+    int start = starts[field];
+    for (int i = 0; i < length; i++) {
+      if (buffer.get(start + i) != encoded[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the byte offset of {@code needle} inside the field, or -1
+   */
+  public int indexOf(int field, String needle) {
+    byte[] encoded = encode(needle);
+    int length = length(field);
+    int start = field < fieldCount ? starts[field] : 0;
+    outer:
+    for (int i = 0; i <= length - encoded.length; i++) {
+      for (int j = 0; j < encoded.length; j++) {
+        if (buffer.get(start + i + j) != encoded[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  public String string(int field) {
+    return string(field, 0);
+  }
+
+  /**
+   * Decodes the field from the given byte offset on.
+   */
+  public String string(int field, int offset) {
+    int length = length(field) - offset;
+    if (length <= 0) {
+      return "";
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(starts[field] + offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the number of bytes {@code value} takes up in the buffer
+   */
+  public int encodedLength(String value) {
+    return encode(value).length;
+  }
+
+  private static byte[] encode(String value) {
+    return ENCODED.computeIfAbsent(value, key -> key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a {@code dd.MM.yyyy} date.
+   */
+  public LocalDate date(int field) {
+    if (length(field) != 10) {
+      throw new IllegalArgumentException("Invalid date: " + string(field));
+    }
+    int s = starts[field];
+    if (buffer.get(s + 2) != '.' || buffer.get(s + 5) != '.') {
+      throw new IllegalArgumentException("Invalid date: " + string(field));
+    }
+    int day = digits(s, 2);
+    int month = digits(s + 3, 2);
+    int year = digits(s + 6, 4);
+    // The key has 5 bits for the day and 4 for the month, so check them before packing
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      throw new DateTimeException("Invalid date: " + string(field));
+    }
+
+    int key = (year << 9) | (month << 5) | day;
+    int slot = (key ^ (key >>> 8)) & (DATE_CACHE_SIZE - 1);
+    LocalDate date = cachedDates[slot];
+    if (date == null || cachedDateKeys[slot] != key) {
+      date = LocalDate.of(year, month, day);
+      cachedDates[slot] = date;
+      cachedDateKeys[slot] = key;
+    }
+    return date;
+  }
+
+  private int digits(int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("Invalid number at byte " + offset);
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Decodes a decimal number that uses either a comma (German) or a dot as separator.
+   */
+  public double decimal(int field) {
+    int length = length(field);
+    if (length == 0) {
+      throw new IllegalArgumentException("Missing number");
+    }
+    int i = starts[field];
+    int end = ends[field];
+    boolean negative = buffer.get(i) == '-';
+    if (negative || buffer.get(i) == '+') {
+      i++;
+    }
+
+    long mantissa = 0;
+    int significant = 0;
+    int scale = -1;
+    boolean anyDigit = false;
+    for (; i < end; i++) {
+      byte c = buffer.get(i);
+      if (c >= '0' && c <= '9') {
+        anyDigit = true;
+        if (mantissa != 0 || c != '0') {
+          significant++;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (scale >= 0) {
+          scale++;
+        }
+      } else if ((c == ',' || c == '.') && scale < 0) {
+        scale = 0;
+      } else {
+        return fallback(field);
+      }
+    }
+    if (!anyDigit) {
+      throw new IllegalArgumentException("Invalid number: " + string(field));
+    }
+    if (significant > 15 || scale >= POW10.length) {
+      // Beyond the exactly representable range
+      return fallback(field);
+    }
+    // Both operands are exact doubles, so the division is correctly rounded
+    double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private double fallback(int field) {
+    return Double.parseDouble(string(field).replace(',', '.'));
+  }
+
+  public UUID uuid(int field) {
+    if (length(field) != 36) {
+      throw new IllegalArgumentException("Invalid UUID: " + string(field));
+    }
+    int s = starts[field];
+    if (buffer.get(s + 8) != '-' || buffer.get(s + 13) != '-' || buffer.get(s + 18) != '-'
+        || buffer.get(s + 23) != '-') {
+      throw new IllegalArgumentException("Invalid UUID: " + string(field));
+    }
+    long msb = (hex(s, 8) << 32) | (hex(s + 9, 4) << 16) | hex(s + 14, 4);
+    long lsb = (hex(s + 19, 4) << 48) | hex(s + 24, 12);
+    return new UUID(msb, lsb);
+  }
+
+  private long hex(int offset, int count) {
+    long value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      int digit = Character.digit(buffer.get(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Invalid hex digit in UUID: " + (char) buffer.get(i));
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+}
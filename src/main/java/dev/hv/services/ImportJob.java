@@ -0,0 +1,112 @@
+package dev.hv.services;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A CSV import running in the background on the {@link ImportJobs} executor.
+ */
+public class ImportJob {
+
+  public enum Type {
+    READINGS,
+    CUSTOMERS
+  }
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+  }
+
+  /**
+   * Snapshot of a job as reported by {@code GET /imports/{id}}.
+   */
+  public record Status(UUID id, Type type, State state, long rowsParsed, long rowsWritten, long bytesRead,
+      double rowsPerSecond, double bytesPerSecond, String createdAt, String startedAt, String finishedAt,
+      List<String> errors) {
+  }
+
+  private final UUID id = UUID.randomUUID();
+  private final Type type;
+  private final Path file;
+  private final ImportProgress progress = new ImportProgress();
+  private final Instant createdAt = Instant.now();
+  private volatile Instant startedAt;
+  private volatile Instant finishedAt;
+  private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+  ImportJob(Type type, Path file) {
+    this.type = type;
+    this.file = file;
+  }
+
+  void run() {
+    // Loses against a cancel() of the queued job, which has finished it already
+    if (!state.compareAndSet(State.QUEUED, State.RUNNING)) {
+      return;
+    }
+    startedAt = Instant.now();
+    try {
+      switch (type) {
+        case READINGS -> CSVReader.parseReading(file, progress);
+        case CUSTOMERS -> CSVReader.parseCustomer(file, progress);
+      }
+      finish(State.COMPLETED);
+    } catch (RuntimeException e) {
+      if (progress.getErrors().isEmpty()) {
+        progress.addError(e.getMessage());
+      }
+      finish(progress.isCancelled() ? State.CANCELLED : State.FAILED);
+    }
+  }
+
+  private void finish(State result) {
+    finishedAt = Instant.now();
+    state.set(result);
+    ImportJobs.deleteQuietly(file);
+  }
+
+  /**
+   * Asks the import to stop. Chunks that are already committed stay in the database.
+   */
+  public void cancel() {
+    // A running import sees the flag after its current chunk
+    progress.cancel();
+    if (state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+      finish(State.CANCELLED);
+    }
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public boolean isFinished() {
+    return finishedAt != null;
+  }
+
+  Instant getFinishedAt() {
+    return finishedAt;
+  }
+
+  public Status status() {
+    Instant start = startedAt;
+    Instant end = finishedAt != null ? finishedAt : Instant.now();
+    double seconds = start != null ? Math.max(end.toEpochMilli() - start.toEpochMilli(), 1) / 1000.0 : 0;
+    long written = progress.getRowsWritten();
+    long bytes = progress.getBytesRead();
+    return new Status(id, type, state.get(), progress.getRowsParsed(), written, bytes,
+        seconds > 0 ? Math.round(written / seconds) : 0,
+        seconds > 0 ? Math.round(bytes / seconds) : 0,
+        createdAt.toString(),
+        start != null ? start.toString() : null,
+        finishedAt != null ? finishedAt.toString() : null,
+        progress.getErrors());
+  }
+}
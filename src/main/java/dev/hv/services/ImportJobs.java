@@ -0,0 +1,118 @@
+package dev.hv.services;
+
+import dev.hv.metrics.MetricRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs CSV imports in the background. The executor is bounded: a few imports run at the
+ * same time, a few more may wait, and everything beyond that is rejected so that uploads
+ * cannot pile up faster than the database takes them.
+ */
+public class ImportJobs {
+
+  private static final Logger logger = LogManager.getLogger(ImportJobs.class);
+
+  private static final int CONCURRENT_IMPORTS = Integer.getInteger("hv.import.concurrency", 2);
+  private static final int QUEUED_IMPORTS = Integer.getInteger("hv.import.queue", 8);
+  private static final Duration RETENTION = Duration.ofHours(1);
+
+  private static final ImportJobs INSTANCE = new ImportJobs();
+
+  private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      CONCURRENT_IMPORTS, CONCURRENT_IMPORTS, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(QUEUED_IMPORTS),
+      runnable -> {
+        Thread thread = new Thread(runnable, "import-job");
+        thread.setDaemon(true);
+        return thread;
+      },
+      new ThreadPoolExecutor.AbortPolicy());
+
+  private ImportJobs() {
+    MetricRegistry registry = MetricRegistry.getInstance();
+    registry.gauge("hv_import_jobs", "Import jobs by state", executor::getActiveCount, "state", "running");
+    registry.gauge("hv_import_jobs", "Import jobs by state", () -> executor.getQueue().size(), "state", "queued");
+  }
+
+  public static ImportJobs getInstance() {
+    return INSTANCE;
+  }
+
+  public boolean hasCapacity() {
+    return executor.getQueue().remainingCapacity() > 0
+        || executor.getActiveCount() < executor.getMaximumPoolSize();
+  }
+
+  /**
+   * Stores the upload in a temp file and queues its import.
+   *
+   * @throws RejectedExecutionException when the import queue is full
+   */
+  public ImportJob submit(ImportJob.Type type, InputStream upload) throws IOException {
+    if (!hasCapacity()) {
+      throw new RejectedExecutionException("Import queue is full");
+    }
+    evictFinished();
+
+    // The request body is gone once the response is sent, so the job works on a copy
+    Path file = Files.createTempFile("hv-import-", ".csv");
+    try {
+      Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      deleteQuietly(file);
+      throw e;
+    }
+
+    ImportJob job = new ImportJob(type, file);
+    jobs.put(job.getId(), job);
+    try {
+      executor.execute(job::run);
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.getId());
+      deleteQuietly(file);
+      throw e;
+    }
+    logger.debug("Queued {} import {}", type, job.getId());
+    return job;
+  }
+
+  public ImportJob get(UUID id) {
+    return jobs.get(id);
+  }
+
+  public Collection<ImportJob> all() {
+    evictFinished();
+    return jobs.values();
+  }
+
+  private void evictFinished() {
+    Instant cutoff = Instant.now().minus(RETENTION);
+    jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+  }
+
+  static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.warn("Could not delete {}: {}", file, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,268 @@
+package dev.hv.services;
+
+import dev.hv.dao.DbConnection;
+import dev.hv.dao.TableVersions;
+import dev.hv.metrics.SqlTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Two-stage import: raw chunks are parsed on a pool of worker threads and handed to the
+ * writer threads through a bounded queue. Every writer borrows a pooled connection and
+ * stores each chunk in its own transaction, sent as JDBC batches of {@code batchSize} rows.
+ *
+ * @param <C> raw chunk as produced by the reading thread
+ * @param <T> parsed row
+ */
+public class ImportPipeline<C, T> {
+
+  @FunctionalInterface
+  public interface ChunkParser<C, T> {
+    List<T> parse(C chunk);
+  }
+
+  @FunctionalInterface
+  public interface RowBinder<T> {
+    void bind(PreparedStatement statement, T row) throws SQLException;
+  }
+
+  /**
+   * Runs in the transaction of a chunk after its rows were inserted.
+   */
+  @FunctionalInterface
+  public interface ChunkWritten<T> {
+    void written(Connection connection, List<T> rows) throws SQLException;
+  }
+
+  private static final Logger logger = LogManager.getLogger(ImportPipeline.class);
+
+  private static final int CORES = Runtime.getRuntime().availableProcessors();
+  private static final List<?> END = new ArrayList<>();
+  private static final long POLL_MS = 100;
+
+  private final ChunkParser<C, T> parser;
+  private final String insertSql;
+  private final RowBinder<T> binder;
+  private final ChunkWritten<T> written;
+  private final int batchSize;
+
+  private final ExecutorService parsers;
+  private final List<Thread> writers = new ArrayList<>();
+  private final Semaphore inFlight;
+  private final BlockingQueue<List<T>> parsed;
+  private final ImportProgress progress;
+  private final AtomicInteger rowsWritten = new AtomicInteger();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  public ImportPipeline(ChunkParser<C, T> parser, String insertSql, RowBinder<T> binder, ImportProgress progress) {
+    this(parser, insertSql, binder, (connection, rows) -> { }, progress);
+  }
+
+  public ImportPipeline(ChunkParser<C, T> parser, String insertSql, RowBinder<T> binder, ChunkWritten<T> written,
+      ImportProgress progress) {
+    this(parser, insertSql, binder, written, progress, CORES, defaultWriters(), 1000);
+  }
+
+  public ImportPipeline(ChunkParser<C, T> parser, String insertSql, RowBinder<T> binder, ChunkWritten<T> written,
+      ImportProgress progress, int parseWorkers, int writeWorkers, int batchSize) {
+    this.parser = parser;
+    this.progress = progress;
+    this.insertSql = insertSql;
+    this.binder = binder;
+    this.written = written;
+    this.batchSize = batchSize;
+    this.parsers = Executors.newFixedThreadPool(parseWorkers, runnable -> {
+      Thread thread = new Thread(runnable, "csv-parse");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.inFlight = new Semaphore(parseWorkers * 2);
+    this.parsed = new ArrayBlockingQueue<>(writeWorkers * 2);
+
+    for (int i = 0; i < writeWorkers; i++) {
+      Thread writer = new Thread(this::writeLoop, "csv-write-" + i);
+      writer.setDaemon(true);
+      writer.start();
+      writers.add(writer);
+    }
+  }
+
+  private static int defaultWriters() {
+    // Leave half of the pool to the HTTP requests running next to an import
+    return Math.max(1, Math.min(CORES, DbConnection.getInstance().getMaxPoolSize() / 2));
+  }
+
+  /**
+   * Queues a raw chunk for parsing. Blocks while too many chunks are waiting, so the
+   * reading thread can never run far ahead of parsing and writing.
+   */
+  public void submit(C chunk) {
+    checkCancelled();
+    checkFailure();
+    try {
+      while (!inFlight.tryAcquire(POLL_MS, TimeUnit.MILLISECONDS)) {
+        checkFailure();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+      checkFailure();
+    }
+    parsers.execute(() -> {
+      try {
+        List<T> rows = parser.parse(chunk);
+        progress.addParsed(rows.size());
+        if (!rows.isEmpty()) {
+          put(rows);
+        }
+      } catch (Throwable e) {
+        fail(e);
+      } finally {
+        inFlight.release();
+      }
+    });
+  }
+
+  /**
+   * Waits until every submitted chunk is written and returns the number of stored rows.
+   */
+  @SuppressWarnings("unchecked")
+  public int finish() {
+    try {
+      parsers.shutdown();
+      while (!parsers.awaitTermination(POLL_MS, TimeUnit.MILLISECONDS)) {
+        if (failure.get() != null) {
+          parsers.shutdownNow();
+        }
+      }
+      for (int i = 0; i < writers.size(); i++) {
+        put((List<T>) END);
+      }
+      for (Thread writer : writers) {
+        writer.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    } finally {
+      parsers.shutdownNow();
+    }
+    checkFailure();
+    return rowsWritten.get();
+  }
+
+  /**
+   * Stops all workers after a failure in the reading thread.
+   */
+  public void abort(Throwable cause) {
+    fail(cause);
+    finish();
+  }
+
+  private void put(List<T> rows) {
+    try {
+      while (!parsed.offer(rows, POLL_MS, TimeUnit.MILLISECONDS)) {
+        if (failure.get() != null && rows != END) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    }
+  }
+
+  private void writeLoop() {
+    try {
+      while (true) {
+        List<T> rows = parsed.take();
+        if (rows == END) {
+          return;
+        }
+        checkCancelled();
+        if (failure.get() == null) {
+          write(rows);
+        }
+      }
+    } catch (Throwable e) {
+      fail(e);
+      // Keep draining so that parsers never block on a full queue
+      List<T> rows;
+      do {
+        try {
+          rows = parsed.take();
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+      } while (rows != END);
+    }
+  }
+
+  private void write(List<T> rows) throws SQLException {
+    try (SqlTimer timer = SqlTimer.start("Import.write");
+        Connection connection = DbConnection.getInstance().acquireConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+        int batched = 0;
+        for (T row : rows) {
+          binder.bind(statement, row);
+          statement.addBatch();
+          if (++batched == batchSize) {
+            statement.executeBatch();
+            batched = 0;
+          }
+        }
+        if (batched > 0) {
+          statement.executeBatch();
+        }
+        written.written(connection, rows);
+        connection.commit();
+        // The pipeline does not know its table; readings embed customers anyway
+        TableVersions.getInstance().changedAll();
+        timer.rows(rows.size());
+        rowsWritten.addAndGet(rows.size());
+        progress.addWritten(rows.size());
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  private void fail(Throwable e) {
+    if (failure.compareAndSet(null, e)) {
+      logger.error("Import failed: {}", e.getMessage());
+      progress.addError(e.getMessage());
+    }
+  }
+
+  private void checkCancelled() {
+    if (progress.isCancelled()) {
+      fail(new CancellationException("Import cancelled"));
+    }
+  }
+
+  private void checkFailure() {
+    Throwable e = failure.get();
+    if (e != null) {
+      throw e instanceof RuntimeException runtime ? runtime : new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package dev.hv.services;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of a running import. Updated by the pipeline stages and read by
+ * whoever polls the import; {@link #cancel()} stops the import after the chunks that
+ * are currently being written.
+ */
+public class ImportProgress {
+
+  private static final int MAX_ERRORS = 20;
+
+  private final AtomicLong rowsParsed = new AtomicLong();
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final List<String> errors = new CopyOnWriteArrayList<>();
+  private volatile boolean cancelled;
+
+  void addParsed(long rows) {
+    rowsParsed.addAndGet(rows);
+  }
+
+  void addWritten(long rows) {
+    rowsWritten.addAndGet(rows);
+  }
+
+  void setBytesRead(long bytes) {
+    bytesRead.lazySet(bytes);
+  }
+
+  void addError(String error) {
+    if (errors.size() < MAX_ERRORS) {
+      errors.add(error);
+    }
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public long getRowsParsed() {
+    return rowsParsed.get();
+  }
+
+  public long getRowsWritten() {
+    return rowsWritten.get();
+  }
+
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  public List<String> getErrors() {
+    return List.copyOf(errors);
+  }
+}
@@ -0,0 +1,12 @@
+package dev.hv.services;
+
+/**
+ * Outcome of a CSV import with its throughput.
+ */
+public record ImportResult(long rows, long bytes, long millis, double rowsPerSecond, double bytesPerSecond) {
+
+  static ImportResult of(long rows, long bytes, long nanos) {
+    double seconds = Math.max(nanos, 1) / 1e9;
+    return new ImportResult(rows, bytes, nanos / 1_000_000, Math.round(rows / seconds), Math.round(bytes / seconds));
+  }
+}
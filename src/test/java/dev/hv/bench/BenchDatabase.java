@@ -0,0 +1,48 @@
+package dev.hv.bench;
+
+import dev.hv.dao.DbConnection;
+
+import java.util.Properties;
+
+/**
+ * Opens DbConnection against an in-memory H2 database in MariaDB mode, so the DAO and
+ * import benchmarks run without a database server. Absolute numbers differ from MariaDB,
+ * the mapping and parsing code on our side is the same.
+ * <p>
+ * {@code -Dhv.bench.url}, {@code -Dhv.bench.user} and {@code -Dhv.bench.password} point the
+ * benchmarks at a real server instead; {@code db.pool.*} system properties are passed on
+ * to the pool, e.g. {@code -Ddb.pool.serverPrepStmts=false}.
+ */
+final class BenchDatabase {
+
+  private static final String URL = "jdbc:h2:mem:bench;MODE=MariaDB;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=FALSE";
+
+  private static boolean open;
+
+  private BenchDatabase() {
+  }
+
+  static synchronized void open() {
+    if (open) {
+      return;
+    }
+    String username = System.getProperty("user.name");
+    Properties properties = new Properties();
+    properties.setProperty(username + ".db.url", System.getProperty("hv.bench.url", URL));
+    properties.setProperty(username + ".db.user", System.getProperty("hv.bench.user", "sa"));
+    properties.setProperty(username + ".db.psw", System.getProperty("hv.bench.password", ""));
+    System.getProperties().stringPropertyNames().stream()
+        .filter(key -> key.startsWith("db.pool."))
+        .forEach(key -> properties.setProperty(key, System.getProperty(key)));
+    DbConnection.getInstance().openConnection(properties);
+    DbConnection.getInstance().createAllTables();
+    open = true;
+  }
+
+  static synchronized void close() {
+    if (open) {
+      DbConnection.getInstance().closeConnection();
+      open = false;
+    }
+  }
+}
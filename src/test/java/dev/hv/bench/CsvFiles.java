@@ -0,0 +1,91 @@
+package dev.hv.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates import files in the layout of dateien/csv.
+ */
+final class CsvFiles {
+
+  // A new "Kunde" header block starts every BLOCK_ROWS readings
+  static final int BLOCK_ROWS = 1000;
+
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+  private static final String[] SALUTATIONS = {"Herr", "Frau", "k.A."};
+  private static final String[] FIRST_NAMES = {"Pumukel", "André", "Jürgen", "Anna", "Zoë"};
+  private static final String[] LAST_NAMES = {"Kobold", "Schöne", "Müller", "Meier", "Weiß"};
+
+  private CsvFiles() {
+  }
+
+  static List<UUID> customerIds(int count, long seed) {
+    Random random = new Random(seed);
+    List<UUID> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return ids;
+  }
+
+  static Path customers(Path file, List<UUID> ids) throws IOException {
+    LocalDate birth = LocalDate.of(1930, 1, 1);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      out.write("UUID,Anrede,Vorname,Nachname,Geburtsdatum\n");
+      for (int i = 0; i < ids.size(); i++) {
+        out.write(ids.get(i).toString());
+        out.write(',');
+        out.write(SALUTATIONS[i % SALUTATIONS.length]);
+        out.write(',');
+        out.write(FIRST_NAMES[i % FIRST_NAMES.length]);
+        out.write(',');
+        out.write(LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]);
+        out.write(',');
+        if (i % 10 != 0) {
+          out.write(birth.plusDays(i % 25_000).format(DATE));
+        }
+        out.write('\n');
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Writes {@code rows} readings, switching to the next customer every {@link #BLOCK_ROWS} rows.
+   */
+  static Path readings(Path file, int rows, List<UUID> customers) throws IOException {
+    LocalDate start = LocalDate.of(2000, 1, 1);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < rows; i++) {
+        int block = i / BLOCK_ROWS;
+        if (i % BLOCK_ROWS == 0) {
+          out.write("\"Kunde\";\"" + customers.get(block % customers.size()) + "\";\n");
+          out.write("\"Zählernummer\";\"MST-" + block + "\";\n");
+          out.write(";;\n");
+          out.write("\"Datum\";\"Zählerstand in kWh\";\"Kommentar\"\n");
+        }
+        int row = i % BLOCK_ROWS;
+        out.write(start.plusDays(row).format(DATE));
+        out.write(';');
+        out.write(Integer.toString(1000 + row * 7));
+        out.write(',');
+        out.write(Integer.toString(row % 1000));
+        out.write(';');
+        if (row == BLOCK_ROWS / 2) {
+          out.write("Zählertausch: neue Nummer MST-" + block + "b");
+        }
+        out.write('\n');
+      }
+    }
+    return file;
+  }
+}
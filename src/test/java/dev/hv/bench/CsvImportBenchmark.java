@@ -0,0 +1,73 @@
+package dev.hv.bench;
+
+import dev.hv.dao.DbConnection;
+import dev.hv.services.CSVReader;
+import dev.hv.services.ImportResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole imports of generated files, parsing and writing included. Every iteration starts
+ * from empty tables. 10M rows are not in the default set, add them with
+ * {@code -Djmh.args="-p rows=10000000"} and enough heap for the in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class CsvImportBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int rows;
+
+  private Path directory;
+  private Path readingCustomerFile;
+  private Path customerFile;
+  private Path readingFile;
+
+  @Setup(Level.Trial)
+  public void createFiles() throws IOException {
+    BenchDatabase.open();
+    directory = Files.createTempDirectory("hv-bench");
+
+    List<UUID> readingCustomers = CsvFiles.customerIds(Math.max(1, rows / CsvFiles.BLOCK_ROWS), 1);
+    readingCustomerFile = CsvFiles.customers(directory.resolve("reading_kunden.csv"), readingCustomers);
+    readingFile = CsvFiles.readings(directory.resolve("readings.csv"), rows, readingCustomers);
+    customerFile = CsvFiles.customers(directory.resolve("kunden.csv"), CsvFiles.customerIds(rows, 2));
+  }
+
+  @Setup(Level.Iteration)
+  public void emptyTables() {
+    DbConnection.getInstance().truncateAllTables();
+    // The readings refer to these customers through the foreign key
+    CSVReader.parseCustomer(readingCustomerFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFiles() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+    BenchDatabase.close();
+  }
+
+  @Benchmark
+  public ImportResult parseReading() {
+    return CSVReader.parseReading(readingFile);
+  }
+
+  @Benchmark
+  public ImportResult parseCustomer() {
+    return CSVReader.parseCustomer(customerFile);
+  }
+}
@@ -0,0 +1,105 @@
+package dev.hv.bench;
+
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.dao.CustomerDao;
+import dev.hv.dao.DbConnection;
+import dev.hv.dao.ReadingDao;
+import dev.hv.model.KindOfMeter;
+import dev.hv.services.CSVReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query and row mapping cost of the DAOs on a database filled through the CSV import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+  @Param({"10000", "100000"})
+  public int readings;
+
+  private final ReadingDao readingDao = new ReadingDao();
+  private final CustomerDao customerDao = new CustomerDao();
+  private UUID customer;
+  private LocalDate firstDay;
+  private LocalDate lastDay;
+
+  @Setup(Level.Trial)
+  public void fillDatabase() throws IOException {
+    BenchDatabase.open();
+    DbConnection.getInstance().truncateAllTables();
+
+    Path directory = Files.createTempDirectory("hv-bench");
+    List<UUID> customers = CsvFiles.customerIds(Math.max(1, readings / CsvFiles.BLOCK_ROWS), 1);
+    Path customerFile = CsvFiles.customers(directory.resolve("kunden.csv"), customers);
+    Path readingFile = CsvFiles.readings(directory.resolve("readings.csv"), readings, customers);
+    CSVReader.parseCustomer(customerFile);
+    CSVReader.parseReading(readingFile);
+    Files.delete(customerFile);
+    Files.delete(readingFile);
+    Files.delete(directory);
+    customer = customers.get(0);
+    List<Reading> readingsOfCustomer = readingDao.find(customer, null, null, null);
+    firstDay = readingsOfCustomer.get(readingsOfCustomer.size() / 2).getDateOfReading();
+    lastDay = firstDay.plusMonths(1);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    BenchDatabase.close();
+  }
+
+  @Benchmark
+  public List<Reading> findAllReadings() {
+    return readingDao.find(null, null, null, null);
+  }
+
+  @Benchmark
+  public List<Reading> findReadingsOfCustomer() {
+    return readingDao.find(customer, null, null, KindOfMeter.STROM);
+  }
+
+  /**
+   * One narrow find for each of the 16 filter combinations, so the cost is dominated by
+   * preparing and planning the statements rather than by mapping rows.
+   */
+  @Benchmark
+  @OperationsPerInvocation(16)
+  public int findEveryFilterCombination() {
+    int rows = 0;
+    for (int filters = 0; filters < 16; filters++) {
+      rows += readingDao.findPage(
+          (filters & 1) != 0 ? customer : null,
+          (filters & 2) != 0 ? firstDay : null,
+          (filters & 4) != 0 ? lastDay : null,
+          (filters & 8) != 0 ? KindOfMeter.STROM : null,
+          null, 10).size();
+    }
+    return rows;
+  }
+
+  @Benchmark
+  @Threads(8)
+  @OperationsPerInvocation(16)
+  public int findEveryFilterCombinationUnderLoad() {
+    return findEveryFilterCombination();
+  }
+
+  @Benchmark
+  public List<Customer> findAllCustomers() {
+    return customerDao.findAll();
+  }
+}
@@ -0,0 +1,98 @@
+package dev.hv.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.endpoints.BinaryFormats;
+import dev.hv.endpoints.ReadingsEnvelope;
+import dev.hv.model.Gender;
+import dev.hv.model.KindOfMeter;
+import jakarta.ws.rs.core.MediaType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the list responses of GET /readings and GET /customers with the shared
+ * mapper, and the same in the binary formats that can be negotiated instead. The payload
+ * sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+  @Param({"100", "10000"})
+  public int size;
+
+  @Param({"application/json", BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+  public String format;
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private List<Reading> readings;
+  private List<Customer> customers;
+  private byte[] readingsBody;
+
+  @Setup(Level.Trial)
+  public void createObjects() {
+    List<UUID> ids = CsvFiles.customerIds(Math.max(1, size / 10), 1);
+    customers = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      customers.add(new Customer(ids.get(i), "André", "Schöne", Gender.values()[i % Gender.values().length],
+          LocalDate.of(1960, 1, 1).plusDays(i)));
+    }
+    readings = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      readings.add(new Reading(UUID.randomUUID(), i % 10 == 0 ? "Zählertausch" : "",
+          customers.get(i % customers.size()), LocalDate.of(2018, 1, 1).plusDays(i % 3650),
+          KindOfMeter.values()[i % KindOfMeter.values().length], 1000 + i * 0.125, "MST-" + (i % 100), false));
+    }
+
+    ObjectMapper mapper = BinaryFormats.mapper(MediaType.valueOf(format));
+    writer = mapper.writer();
+    reader = mapper.readerFor(ReadingsEnvelope.class);
+    try {
+      readingsBody = writer.writeValueAsBytes(new ReadingsEnvelope(readings));
+      System.out.printf("%n%s: %d bytes for %d readings, %d bytes for %d customers%n", format,
+          readingsBody.length, size, writer.writeValueAsBytes(Collections.singletonMap("customers", customers)).length,
+          customers.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Benchmark
+  public int serializeReadings() throws IOException {
+    out.reset();
+    writer.writeValue(out, Collections.singletonMap("readings", readings));
+    return out.size();
+  }
+
+  @Benchmark
+  public int deserializeReadings() throws IOException {
+    ReadingsEnvelope envelope = reader.readValue(readingsBody);
+    return envelope.readings().size();
+  }
+
+  @Benchmark
+  public int serializeCustomers() throws IOException {
+    out.reset();
+    writer.writeValue(out, Collections.singletonMap("customers", customers));
+    return out.size();
+  }
+}
@@ -0,0 +1,85 @@
+package dev.hv.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.hv.Reading;
+import dev.hv.endpoints.JsonMapper;
+import dev.hv.endpoints.ReadingEnvelope;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding a POST /readings body the old way (new ObjectMapper, tree, treeToValue) against
+ * the shared mapper reading the envelope straight from the stream. Run with the GC profiler
+ * to see the allocations per request:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.include=RequestBinding -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBindingBenchmark {
+
+  private static final byte[] BODY = """
+      {"reading": {
+        "id": "0b1c2d3e-4f50-6172-8394-a5b6c7d8e9f0",
+        "comment": "",
+        "customer": {
+          "id": "ec617965-88b4-4721-8158-ee36c38e4db3",
+          "firstName": "Pumukel",
+          "lastName": "Kobold",
+          "gender": "M",
+          "birthDate": "1962-02-21"
+        },
+        "dateOfReading": "2018-02-01",
+        "kindOfMeter": "HEIZUNG",
+        "meterCount": 5.965,
+        "meterId": "Xr-2018-2312456ab",
+        "substitute": false
+      }}
+      """.getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectReader envelopeReader = JsonMapper.mapper().readerFor(ReadingEnvelope.class);
+
+  @Benchmark
+  public Reading mapperPerRequest() throws IOException {
+    String body = new String(BODY, StandardCharsets.UTF_8);
+    ObjectMapper mapper = new ObjectMapper()
+        .registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
+    JsonNode node = mapper.readTree(body).get("reading");
+    return mapper.treeToValue(node, Reading.class);
+  }
+
+  @Benchmark
+  public Reading sharedMapperTree() throws IOException {
+    String body = new String(BODY, StandardCharsets.UTF_8);
+    ObjectMapper mapper = JsonMapper.mapper();
+    JsonNode node = mapper.readTree(body).get("reading");
+    return mapper.treeToValue(node, Reading.class);
+  }
+
+  @Benchmark
+  public Reading sharedMapperEnvelope() throws IOException {
+    ReadingEnvelope envelope = envelopeReader.readValue(new ByteArrayInputStream(BODY));
+    return envelope.reading();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(RequestBindingBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build()).run();
+  }
+}
@@ -0,0 +1,112 @@
+package dev.hv.bench;
+
+import dev.hv.Reading;
+import dev.hv.dao.DbConnection;
+import dev.hv.dao.ReadingDao;
+import dev.hv.dao.RowMapper;
+import dev.hv.model.KindOfMeter;
+import dev.hv.services.CSVReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of mapping all readings: by label as the DAOs used to, through a
+ * {@link RowMapper}, and end to end through ReadingDao.find.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+  private static final int ROWS = 20_000;
+  private static final String SELECT = "SELECT id, comment, customer, dateOfReading, kindOfMeter, meterCount, "
+      + "meterId, substitute, version FROM Reading";
+
+  private static final RowMapper<Reading> READINGS = RowMapper.of(row -> {
+    Reading reading = new Reading(row.uuid(0), row.string(1), null, row.date(3), row.kindOfMeter(4),
+        row.doubleValue(5), row.string(6), row.booleanValue(7));
+    reading.setVersion(row.longValue(8));
+    return reading;
+  }, "id", "comment", "customer", "dateOfReading", "kindOfMeter", "meterCount", "meterId", "substitute", "version");
+
+  private final ReadingDao readingDao = new ReadingDao();
+
+  @Setup(Level.Trial)
+  public void fillDatabase() throws IOException {
+    BenchDatabase.open();
+    DbConnection.getInstance().truncateAllTables();
+
+    Path directory = Files.createTempDirectory("hv-bench");
+    List<UUID> customers = CsvFiles.customerIds(Math.max(1, ROWS / CsvFiles.BLOCK_ROWS), 1);
+    Path customerFile = CsvFiles.customers(directory.resolve("kunden.csv"), customers);
+    Path readingFile = CsvFiles.readings(directory.resolve("readings.csv"), ROWS, customers);
+    CSVReader.parseCustomer(customerFile);
+    CSVReader.parseReading(readingFile);
+    Files.delete(customerFile);
+    Files.delete(readingFile);
+    Files.delete(directory);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    BenchDatabase.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void byLabel(Blackhole blackhole) throws SQLException {
+    try (Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(SELECT);
+        ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        Reading reading = new Reading(
+            resultSet.getObject("id", UUID.class),
+            resultSet.getString("comment"),
+            null,
+            resultSet.getObject("dateOfReading", LocalDate.class),
+            KindOfMeter.valueOf(resultSet.getString("kindOfMeter")),
+            resultSet.getDouble("meterCount"),
+            resultSet.getString("meterId"),
+            resultSet.getBoolean("substitute"));
+        reading.setVersion(resultSet.getLong("version"));
+        blackhole.consume(reading);
+        blackhole.consume(resultSet.getObject("customer", UUID.class));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void byPosition(Blackhole blackhole) throws SQLException {
+    try (Connection connection = DbConnection.getInstance().acquireConnection();
+        PreparedStatement statement = connection.prepareStatement(SELECT);
+        ResultSet resultSet = statement.executeQuery()) {
+      RowMapper.Row row = READINGS.row(resultSet);
+      while (resultSet.next()) {
+        blackhole.consume(READINGS.map(row));
+        blackhole.consume(row.uuid(2));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public List<Reading> findAllReadings() {
+    return readingDao.find(null, null, null, null);
+  }
+}
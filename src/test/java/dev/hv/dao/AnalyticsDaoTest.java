@@ -0,0 +1,129 @@
+package dev.hv.dao;
+
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.model.Gender;
+import dev.hv.model.KindOfMeter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the consumption queries on the database and compares them with the
+ * {@link ReadingColumns}, which implement the same rules in Java.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AnalyticsDaoTest {
+
+  private final AnalyticsDao analyticsDao = new AnalyticsDao();
+  private final ReadingColumns columns = new ReadingColumns();
+
+  @BeforeAll
+  void setUp() {
+    DbConnection dbConnection = DbConnection.getInstance();
+    dbConnection.openConnection(new Properties()); // Testcontainers
+    dbConnection.removeAllTables();
+    dbConnection.createAllTables();
+
+    Customer customer = new Customer(UUID.randomUUID(), "Test", "Customer", Gender.D, null);
+    new CustomerDao().createAll(List.of(customer), false);
+    List<Reading> readings = List.of(
+        reading(customer, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 1, 1), 100, ""),
+        reading(customer, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 1, 20), 150, ""),
+        // Counts down: the meter was reset
+        reading(customer, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 2, 10), 30, ""),
+        reading(customer, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 3, 1), 5, AnalyticsDao.METER_EXCHANGE),
+        reading(customer, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 3, 15), 25, ""),
+        // Reset in the middle of a month
+        reading(customer, KindOfMeter.STROM, "S-2", LocalDate.of(2024, 1, 3), 200, ""),
+        reading(customer, KindOfMeter.STROM, "S-2", LocalDate.of(2024, 1, 10), 20, ""),
+        reading(customer, KindOfMeter.STROM, "S-2", LocalDate.of(2024, 1, 25), 40, ""),
+        reading(customer, KindOfMeter.STROM, "S-2", LocalDate.of(2024, 2, 5), 45, ""),
+        reading(customer, KindOfMeter.WASSER, "W-1", LocalDate.of(2024, 1, 5), 10, ""),
+        reading(customer, KindOfMeter.WASSER, "W-1", LocalDate.of(2024, 2, 5), 12, ""),
+        // Without a kind of meter, as POST /readings may store them
+        reading(customer, null, "X-1", LocalDate.of(2024, 1, 10), 7, ""),
+        reading(customer, null, "X-1", LocalDate.of(2024, 2, 10), 9, ""));
+    assertTrue(new ReadingDao().createAll(readings, false).failures().isEmpty());
+
+    columns.load();
+  }
+
+  @AfterAll
+  void tearDown() {
+    DbConnection.getInstance().removeAllTables();
+    DbConnection.getInstance().closeConnection();
+  }
+
+  private static Reading reading(Customer customer, KindOfMeter kind, String meterId, LocalDate date, double count,
+      String comment) {
+    return new Reading(UUID.randomUUID(), comment, customer, date, kind, count, meterId, false);
+  }
+
+  @Test
+  void testConsumptionOfTheReadings() {
+    // Not whole months, so computed with LAG() on the readings
+    List<AnalyticsDao.Consumption> consumption = analyticsDao.consumption(null, null, LocalDate.of(2024, 1, 15),
+        LocalDate.of(2024, 3, 20), AnalyticsDao.Period.TOTAL, false);
+
+    // The reset restarts the count, the exchange has no predecessor
+    assertEquals(List.of(
+        new AnalyticsDao.Consumption(null, KindOfMeter.STROM, null, null, 125, 5),
+        new AnalyticsDao.Consumption(null, KindOfMeter.WASSER, null, null, 2, 1)), consumption);
+  }
+
+  @Test
+  void testConsumptionOfWholeMonths() {
+    // Whole months, so computed from MeterMonth, and from the readings for the months
+    // with a reset or an exchange
+    List<AnalyticsDao.Consumption> consumption = analyticsDao.consumption(null, KindOfMeter.STROM, null, null,
+        AnalyticsDao.Period.MONTH, false);
+
+    assertEquals(List.of(
+        new AnalyticsDao.Consumption(null, KindOfMeter.STROM, "2024-01", LocalDate.of(2024, 1, 1), 90, 3),
+        new AnalyticsDao.Consumption(null, KindOfMeter.STROM, "2024-02", LocalDate.of(2024, 2, 1), 35, 2),
+        new AnalyticsDao.Consumption(null, KindOfMeter.STROM, "2024-03", LocalDate.of(2024, 3, 1), 20, 1)),
+        consumption);
+  }
+
+  @Test
+  void testDatabaseAndReplicaAgree() {
+    // Whole months and others
+    LocalDate[][] ranges = {
+        {null, null},
+        {LocalDate.of(2024, 2, 1), null},
+        {null, LocalDate.of(2024, 1, 31)},
+        {LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29)},
+        {LocalDate.of(2024, 1, 2), null},
+        {null, LocalDate.of(2024, 2, 20)},
+        {LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 10)}};
+    for (LocalDate[] range : ranges) {
+      for (AnalyticsDao.Period period : AnalyticsDao.Period.values()) {
+        for (boolean byCustomer : new boolean[] {false, true}) {
+          assertEquals(columns.consumption(null, null, range[0], range[1], period, byCustomer),
+              analyticsDao.consumption(null, null, range[0], range[1], period, byCustomer),
+              Arrays.toString(range) + " " + period + " " + byCustomer);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testSummaryCountsReadingsWithoutKind() {
+    AnalyticsDao.Summary summary = analyticsDao.summary(null, null);
+
+    assertEquals(13, summary.readings());
+    assertEquals(Map.of(KindOfMeter.STROM, 9, KindOfMeter.WASSER, 2), summary.readingsByKind());
+    assertEquals(Map.of(KindOfMeter.STROM, 145.0, KindOfMeter.WASSER, 2.0), summary.consumptionByKind());
+  }
+}
@@ -0,0 +1,93 @@
+package dev.hv.dao;
+
+import dev.hv.Customer;
+import dev.hv.model.Gender;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Customer load(UUID id) {
+    loads.incrementAndGet();
+    return new Customer(id, "Test", "Customer", Gender.D, null);
+  }
+
+  @Test
+  void testReadThroughCountsHitsAndMisses() {
+    CustomerCache cache = new CustomerCache(10, Duration.ofMinutes(5), now::get);
+    UUID id = UUID.randomUUID();
+
+    Customer first = cache.get(id, this::load);
+    Customer second = cache.get(id, this::load);
+
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.stats().hits());
+    assertEquals(1, cache.stats().misses());
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    CustomerCache cache = new CustomerCache(2, Duration.ofMinutes(5), now::get);
+    UUID a = UUID.randomUUID();
+    UUID b = UUID.randomUUID();
+    UUID c = UUID.randomUUID();
+
+    cache.get(a, this::load);
+    cache.get(b, this::load);
+    cache.get(a, this::load); // a is now more recent than b
+    cache.get(c, this::load);
+    cache.get(a, this::load);
+    cache.get(b, this::load);
+
+    assertEquals(4, loads.get());
+    assertEquals(2, cache.stats().evictions());
+    assertEquals(2, cache.stats().size());
+  }
+
+  @Test
+  void testReloadsAfterTtlAndInvalidation() {
+    CustomerCache cache = new CustomerCache(10, Duration.ofSeconds(1), now::get);
+    UUID id = UUID.randomUUID();
+
+    cache.get(id, this::load);
+    now.addAndGet(Duration.ofSeconds(2).toNanos());
+    cache.get(id, this::load);
+    cache.invalidate(id);
+    cache.get(id, this::load);
+
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void testGetAllLoadsOnlyMissingIds() {
+    CustomerCache cache = new CustomerCache(10, Duration.ofMinutes(5), now::get);
+    UUID cached = UUID.randomUUID();
+    UUID missing = UUID.randomUUID();
+    UUID unknown = UUID.randomUUID();
+    cache.get(cached, this::load);
+
+    Map<UUID, Customer> result = cache.getAll(List.of(cached, missing, unknown), ids -> {
+      assertEquals(List.of(missing, unknown), ids);
+      Map<UUID, Customer> loaded = new HashMap<>();
+      loaded.put(missing, load(missing));
+      return loaded;
+    });
+
+    assertEquals(2, result.size());
+    assertNull(result.get(unknown));
+    assertEquals(2, loads.get());
+  }
+}
@@ -0,0 +1,87 @@
+package dev.hv.dao;
+
+import dev.hv.model.KindOfMeter;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadingColumnsTest {
+
+  private static final UUID FIRST = UUID.fromString("00000000-0000-0000-0000-000000000001");
+  private static final UUID SECOND = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+  // Rows in the order of the load query: customer, kind, meter, date, count
+  private static ReadingColumns columns() {
+    ReadingColumns.Builder builder = new ReadingColumns.Builder(2);
+    builder.add(FIRST, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 1, 1), 100, false, "");
+    builder.add(FIRST, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 1, 20), 150, true, "");
+    builder.add(FIRST, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 2, 10), 30, false, "");
+    builder.add(FIRST, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 3, 1), 5, false, AnalyticsDao.METER_EXCHANGE);
+    builder.add(FIRST, KindOfMeter.STROM, "S-1", LocalDate.of(2024, 3, 15), 25, false, "");
+    builder.add(FIRST, KindOfMeter.WASSER, "W-1", LocalDate.of(2024, 1, 5), 10, false, "");
+    builder.add(FIRST, KindOfMeter.WASSER, "W-1", LocalDate.of(2024, 2, 5), 12, false, "");
+    builder.add(SECOND, KindOfMeter.STROM, "S-2", LocalDate.of(2023, 12, 31), 1000, false, "");
+    builder.add(SECOND, KindOfMeter.STROM, "S-2", LocalDate.of(2024, 1, 31), 1100, false, "");
+    ReadingColumns columns = new ReadingColumns();
+    columns.install(builder.build());
+    return columns;
+  }
+
+  @Test
+  void testConsumptionPerMonthFollowsTheRulesOfTheDatabase() {
+    List<AnalyticsDao.Consumption> consumption = columns().consumption(FIRST, KindOfMeter.STROM, null, null,
+        AnalyticsDao.Period.MONTH, true);
+
+    // A lower count restarts the meter, a meter exchange has no predecessor
+    assertEquals(List.of(
+        new AnalyticsDao.Consumption(FIRST, KindOfMeter.STROM, "2024-01", LocalDate.of(2024, 1, 1), 50, 1),
+        new AnalyticsDao.Consumption(FIRST, KindOfMeter.STROM, "2024-02", LocalDate.of(2024, 2, 1), 30, 1),
+        new AnalyticsDao.Consumption(FIRST, KindOfMeter.STROM, "2024-03", LocalDate.of(2024, 3, 1), 20, 1)),
+        consumption);
+  }
+
+  @Test
+  void testFirstReadingInRangeSubtractsItsPredecessor() {
+    List<AnalyticsDao.Consumption> consumption = columns().consumption(null, KindOfMeter.STROM,
+        LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 31), AnalyticsDao.Period.TOTAL, false);
+
+    assertEquals(List.of(new AnalyticsDao.Consumption(null, KindOfMeter.STROM, null, null, 150, 2)), consumption);
+  }
+
+  @Test
+  void testGroupsAreOrderedByCustomerKindAndPeriod() {
+    List<AnalyticsDao.Consumption> consumption = columns().consumption(null, null, null,
+        LocalDate.of(2024, 2, 29), AnalyticsDao.Period.YEAR, true);
+
+    assertEquals(List.of(
+        new AnalyticsDao.Consumption(FIRST, KindOfMeter.STROM, "2024", LocalDate.of(2024, 1, 1), 80, 2),
+        new AnalyticsDao.Consumption(FIRST, KindOfMeter.WASSER, "2024", LocalDate.of(2024, 1, 1), 2, 1),
+        new AnalyticsDao.Consumption(SECOND, KindOfMeter.STROM, "2024", LocalDate.of(2024, 1, 1), 100, 1)),
+        consumption);
+  }
+
+  @Test
+  void testReadingsWithoutCustomerFormOneSeries() {
+    ReadingColumns.Builder builder = new ReadingColumns.Builder(3);
+    builder.add(null, KindOfMeter.STROM, "S-0", LocalDate.of(2024, 1, 1), 100, false, "");
+    builder.add(null, KindOfMeter.STROM, "S-0", LocalDate.of(2024, 2, 1), 130, false, "");
+    builder.add(FIRST, KindOfMeter.STROM, "S-0", LocalDate.of(2024, 3, 1), 170, false, "");
+    ReadingColumns columns = new ReadingColumns();
+    columns.install(builder.build());
+
+    List<AnalyticsDao.Consumption> consumption = columns.consumption(null, KindOfMeter.STROM, null, null,
+        AnalyticsDao.Period.TOTAL, true);
+
+    // The customer's single reading starts a series of its own and has no predecessor
+    assertEquals(List.of(new AnalyticsDao.Consumption(null, KindOfMeter.STROM, null, null, 30, 1)), consumption);
+  }
+
+  @Test
+  void testNotLoadedFallsBackToTheDatabase() {
+    assertNull(new ReadingColumns().consumption(null, null, null, null, AnalyticsDao.Period.TOTAL, false));
+  }
+}
@@ -0,0 +1,36 @@
+package dev.hv.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadingKeyTest {
+
+  private static final UUID ID = UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0");
+
+  @Test
+  void testRoundTrip() {
+    ReadingKey key = new ReadingKey(LocalDate.of(2024, 2, 29), ID);
+
+    assertEquals("2024-02-29," + ID, key.toString());
+    assertEquals(key, ReadingKey.parse(key.toString()));
+  }
+
+  @Test
+  void testReadingWithoutDate() {
+    ReadingKey key = new ReadingKey(null, ID);
+
+    assertEquals("," + ID, key.toString());
+    assertEquals(key, ReadingKey.parse(key.toString()));
+  }
+
+  @Test
+  void testInvalidCursors() {
+    assertThrows(IllegalArgumentException.class, () -> ReadingKey.parse(ID.toString()));
+    assertThrows(IllegalArgumentException.class, () -> ReadingKey.parse("null," + ID));
+    assertThrows(IllegalArgumentException.class, () -> ReadingKey.parse("2024-02-30," + ID));
+  }
+}
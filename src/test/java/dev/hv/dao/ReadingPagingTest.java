@@ -0,0 +1,82 @@
+package dev.hv.dao;
+
+import dev.hv.Reading;
+import dev.hv.model.KindOfMeter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset pagination over readings with and without a date.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReadingPagingTest {
+
+  // Readings without date span more than one batch of streamRows
+  private static final int WITHOUT_DATE = ReadingDao.STREAM_BATCH_SIZE + 10;
+  private static final int WITH_DATE = 6;
+
+  private final ReadingDao readingDao = new ReadingDao();
+  private List<UUID> ordered;
+
+  @BeforeAll
+  void setUp() {
+    DbConnection dbConnection = DbConnection.getInstance();
+    dbConnection.openConnection(new Properties()); // Testcontainers
+    dbConnection.removeAllTables();
+    dbConnection.createAllTables();
+
+    List<Reading> readings = new ArrayList<>();
+    for (int i = 0; i < WITHOUT_DATE + WITH_DATE; i++) {
+      LocalDate date = i < WITHOUT_DATE ? null : LocalDate.of(2024, 1, 1).plusDays(i % 3);
+      readings.add(new Reading(UUID.randomUUID(), "", null, date, KindOfMeter.STROM, i, "S-1", false));
+    }
+    assertTrue(readingDao.createAll(readings, false).failures().isEmpty());
+
+    ordered = readingDao.findPage(null, null, null, null, null, readings.size() + 1).stream()
+        .map(Reading::getId).toList();
+    assertEquals(readings.size(), ordered.size());
+  }
+
+  @AfterAll
+  void tearDown() {
+    DbConnection.getInstance().removeAllTables();
+    DbConnection.getInstance().closeConnection();
+  }
+
+  @Test
+  void testPagesContinueAfterReadingsWithoutDate() {
+    List<UUID> paged = new ArrayList<>();
+    ReadingKey after = null;
+    while (true) {
+      List<Reading> page = readingDao.findPage(null, null, null, null, after, 200);
+      page.forEach(reading -> paged.add(reading.getId()));
+      if (page.size() < 200) {
+        break;
+      }
+      // Through the query parameter, as a client would send it back
+      after = ReadingKey.parse(ReadingKey.of(page.get(page.size() - 1)).toString());
+    }
+
+    assertEquals(ordered, paged);
+  }
+
+  @Test
+  void testStreamContinuesAfterReadingsWithoutDate() throws IOException {
+    List<UUID> streamed = new ArrayList<>();
+    readingDao.streamRows(null, null, null, null, null, 0,
+        cursor -> streamed.add(new UUID(cursor.idMost(), cursor.idLeast())));
+
+    assertEquals(ordered, streamed);
+  }
+}
@@ -0,0 +1,81 @@
+package dev.hv.dao;
+
+import dev.hv.model.Gender;
+import dev.hv.model.KindOfMeter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowMapperTest {
+
+  private static final UUID ID = UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0");
+
+  // One row with the given values, labelled in upper case like H2 does
+  private static ResultSet resultSet(String[] labels, Object... values) {
+    ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(),
+        new Class<?>[] {ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+          case "getColumnCount" -> labels.length;
+          case "getColumnLabel" -> labels[(int) args[0] - 1].toUpperCase();
+          default -> throw new UnsupportedOperationException(method.getName());
+        });
+    return (ResultSet) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(),
+        new Class<?>[] {ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+          case "getMetaData" -> metaData;
+          case "getBytes", "getString" -> values[(int) args[0] - 1];
+          default -> throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  private static final RowMapper<Object[]> MAPPER = RowMapper.of(
+      row -> new Object[] {row.uuid(0), row.kindOfMeter(1), row.gender(2)}, "id", "kindOfMeter", "gender");
+
+  @Test
+  void testReadsBinaryAndTextUuids() throws SQLException {
+    byte[] binary = ByteBuffer.allocate(16).putLong(ID.getMostSignificantBits())
+        .putLong(ID.getLeastSignificantBits()).array();
+    byte[] text = ID.toString().getBytes(StandardCharsets.US_ASCII);
+    byte[] upperCase = ID.toString().toUpperCase().getBytes(StandardCharsets.US_ASCII);
+
+    for (byte[] bytes : new byte[][] {binary, text, upperCase}) {
+      ResultSet resultSet = resultSet(new String[] {"other", "id", "kindOfMeter", "gender"}, null, bytes, "STROM", "W");
+      assertEquals(ID, MAPPER.map(MAPPER.row(resultSet))[0]);
+    }
+  }
+
+  @Test
+  void testNullsStayNull() throws SQLException {
+    ResultSet resultSet = resultSet(new String[] {"id", "kindOfMeter", "gender"}, null, null, null);
+    RowMapper.Row row = MAPPER.row(resultSet);
+
+    assertFalse(row.readUuid(0));
+    assertArrayEquals(new Object[] {null, null, null}, MAPPER.map(row));
+  }
+
+  @Test
+  void testEnumsAreLookedUpLikeValueOf() throws SQLException {
+    for (KindOfMeter kind : KindOfMeter.values()) {
+      for (Gender gender : Gender.values()) {
+        ResultSet resultSet = resultSet(new String[] {"id", "kindOfMeter", "gender"}, null, kind.name(), gender.name());
+        Object[] mapped = MAPPER.map(MAPPER.row(resultSet));
+        assertSame(kind, mapped[1]);
+        assertSame(gender, mapped[2]);
+      }
+    }
+
+    RowMapper.Row row = MAPPER.row(resultSet(new String[] {"id", "kindOfMeter", "gender"}, null, "STROMX", "M"));
+    assertThrows(IllegalArgumentException.class, () -> row.kindOfMeter(1));
+  }
+
+  @Test
+  void testMissingColumnFails() {
+    assertThrows(SQLException.class, () -> MAPPER.row(resultSet(new String[] {"id", "gender"}, null, null)));
+  }
+}
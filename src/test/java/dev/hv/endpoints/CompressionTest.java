@@ -0,0 +1,29 @@
+package dev.hv.endpoints;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+  @Test
+  void testPrefersGzip() {
+    assertEquals("gzip", Compression.negotiate("gzip, deflate, br"));
+    assertEquals("gzip", Compression.negotiate("deflate, GZIP"));
+    assertEquals("gzip", Compression.negotiate("*"));
+  }
+
+  @Test
+  void testFollowsQValues() {
+    assertEquals("deflate", Compression.negotiate("gzip;q=0.5, deflate"));
+    assertEquals("deflate", Compression.negotiate("gzip;q=0, *;q=0.1"));
+    assertNull(Compression.negotiate("gzip;q=0, deflate;q=0"));
+  }
+
+  @Test
+  void testSkipsUnknownEncodings() {
+    assertNull(Compression.negotiate(null));
+    assertNull(Compression.negotiate("br, identity"));
+    assertNull(Compression.negotiate("*;q=0"));
+  }
+}
@@ -16,10 +16,13 @@ import dev.hv.dao.DbConnection;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class ReadingsEndpointTest {
@@ -145,6 +148,59 @@ public class ReadingsEndpointTest {
         .contentType(ContentType.JSON);
   }
 
+  @Test
+  void testGetReadingsNotModified() {
+    String etag = given()
+        .queryParam("kindOfMeter", "STROM")
+        .when()
+        .get("/readings")
+        .then()
+        .statusCode(200)
+        .header("ETag", notNullValue())
+        .extract().header("ETag");
+
+    given()
+        .queryParam("kindOfMeter", "STROM")
+        .header("If-None-Match", etag)
+        .when()
+        .get("/readings")
+        .then()
+        .statusCode(304);
+
+    // Another filter is another representation
+    given()
+        .queryParam("kindOfMeter", "WASSER")
+        .header("If-None-Match", etag)
+        .when()
+        .get("/readings")
+        .then()
+        .statusCode(200);
+  }
+
+  @Test
+  void testGetReadingsVaryByAccept() {
+    Response cbor = given()
+        .accept("application/cbor")
+        .when()
+        .get("/readings");
+    assertEquals(200, cbor.getStatusCode());
+    assertEquals("application/cbor", cbor.getContentType());
+    assertTrue(vary(cbor).contains("Accept"));
+
+    Response json = given()
+        .when()
+        .get("/readings");
+    assertEquals(200, json.getStatusCode());
+    assertTrue(vary(json).contains("Accept"));
+  }
+
+  private static List<String> vary(Response response) {
+    return response.getHeaders().getValues("Vary").stream()
+        .flatMap(value -> Arrays.stream(value.split(",")))
+        .map(String::trim)
+        .toList();
+  }
+
   @Test
   void testGetReadingById() {
     given()
@@ -249,6 +305,45 @@ public class ReadingsEndpointTest {
         .statusCode(200);
   }
 
+  @Test
+  void testUpdateReadingWithVersion() {
+    UUID id = UUID.randomUUID();
+    String reading = "{"
+        + "\"reading\": {"
+        + "\"id\": \"" + id + "\","
+        + "\"comment\": \"Version test\","
+        + "\"customer\": {"
+        + "\"id\": \"" + testCustomerId + "\","
+        + "\"firstName\": \"Test\","
+        + "\"lastName\": \"Customer\","
+        + "\"gender\": \"D\""
+        + "},"
+        + "\"dateOfReading\": \"" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + "\","
+        + "\"meterId\": \"VERSION123\","
+        + "\"substitute\": false,"
+        + "\"meterCount\": 10.0,"
+        + "\"kindOfMeter\": \"STROM\","
+        + "\"version\": 0"
+        + "}"
+        + "}";
+
+    given().contentType(ContentType.JSON).body(reading).when().put("/readings").then().statusCode(404);
+
+    given().contentType(ContentType.JSON).body(reading).when().post("/readings").then().statusCode(201);
+
+    given()
+        .contentType(ContentType.JSON)
+        .body(reading)
+        .when()
+        .put("/readings")
+        .then()
+        .statusCode(200)
+        .body("reading.version", equalTo(1));
+
+    // Still at version 0 from the client's point of view
+    given().contentType(ContentType.JSON).body(reading).when().put("/readings").then().statusCode(409);
+  }
+
   @Test
   void testDeleteReading() {
     given()
@@ -260,4 +355,50 @@ public class ReadingsEndpointTest {
         .contentType(ContentType.JSON)
         .body("reading.id", equalTo(testReadingId.toString()));
   }
+
+  @Test
+  void testBatchCreateReadings() {
+    UUID duplicateId = UUID.randomUUID();
+    String reading = "{"
+        + "\"id\": \"" + duplicateId + "\","
+        + "\"comment\": \"Batch test\","
+        + "\"dateOfReading\": \"" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + "\","
+        + "\"meterId\": \"BATCH123\","
+        + "\"substitute\": false,"
+        + "\"meterCount\": 1.0,"
+        + "\"kindOfMeter\": \"STROM\""
+        + "}";
+    String batchJson = "{\"readings\": [" + reading + ", " + reading + "]}";
+
+    // The duplicate id rolls back the whole batch
+    given()
+        .contentType(ContentType.JSON)
+        .body(batchJson)
+        .when()
+        .post("/readings/batch")
+        .then()
+        .statusCode(400)
+        .body("batch.processed", equalTo(0))
+        .body("batch.failures[0].index", equalTo(1));
+
+    given()
+        .contentType(ContentType.JSON)
+        .body(batchJson)
+        .queryParam("partial", true)
+        .when()
+        .post("/readings/batch")
+        .then()
+        .statusCode(200)
+        .body("batch.processed", equalTo(1))
+        .body("batch.failures.size()", equalTo(1));
+
+    given()
+        .contentType(ContentType.JSON)
+        .body("{\"ids\": [\"" + duplicateId + "\"]}")
+        .when()
+        .post("/readings/batch/delete")
+        .then()
+        .statusCode(200)
+        .body("batch.processed", equalTo(1));
+  }
 }
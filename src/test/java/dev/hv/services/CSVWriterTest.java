@@ -0,0 +1,100 @@
+package dev.hv.services;
+
+import dev.hv.Customer;
+import dev.hv.Reading;
+import dev.hv.model.Gender;
+import dev.hv.model.KindOfMeter;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVWriterTest {
+
+  private static final UUID CUSTOMER = UUID.fromString("ec617965-88b4-4721-8158-ee36c38e4db3");
+
+  private static Reading reading(Customer customer, String meterId, KindOfMeter kindOfMeter, LocalDate date,
+      double count, String comment) {
+    return new Reading(UUID.randomUUID(), comment, customer, date, kindOfMeter, count, meterId, false);
+  }
+
+  @Test
+  void testWritesReadingBlocksInImportLayout() throws Exception {
+    Customer customer = new Customer(CUSTOMER, "Pumukel", "Kobold", Gender.M, null);
+    StringWriter out = new StringWriter();
+    CSVWriter csv = new CSVWriter(out);
+
+    csv.writeReading(reading(null, "X-1", KindOfMeter.UNBEKANNT, LocalDate.of(2020, 1, 1), 1, null));
+    csv.writeReading(reading(customer, "MST-af34569", KindOfMeter.STROM, LocalDate.of(2018, 2, 1), 16573, ""));
+    csv.writeReading(reading(customer, "MST-af34569", KindOfMeter.STROM, LocalDate.of(2018, 3, 1), 5.965,
+        "a;b\nc"));
+    csv.writeReading(reading(customer, "786523123", KindOfMeter.WASSER, LocalDate.of(2020, 3, 3), 0, null));
+
+    assertEquals("""
+        "Zählernummer";"X-1";
+        "Datum";"Zählerstand";"Kommentar"
+        "01.01.2020";1;
+        ;;
+        "Kunde";"ec617965-88b4-4721-8158-ee36c38e4db3";
+        "Zählernummer";"MST-af34569";
+        "Datum";"Zählerstand in kWh";"Kommentar"
+        "01.02.2018";16573;
+        "01.03.2018";5,965;"a,b c"
+        ;;
+        "Zählernummer";"786523123";
+        "Datum";"Zählerstand in m³";"Kommentar"
+        "03.03.2020";0;
+        """, out.toString());
+  }
+
+  @Test
+  void testWritesReadingsWithoutKindAndSkipsThoseWithoutDate() throws Exception {
+    Customer customer = new Customer(CUSTOMER, "Pumukel", "Kobold", Gender.M, null);
+    StringWriter out = new StringWriter();
+    CSVWriter csv = new CSVWriter(out);
+
+    csv.writeReading(reading(customer, "X-1", null, null, 1, null));
+    csv.writeReading(reading(customer, "X-1", null, LocalDate.of(2020, 1, 1), 2, null));
+    csv.writeReading(reading(customer, "X-1", null, null, 3, null));
+    csv.writeReading(reading(customer, "X-1", null, LocalDate.of(2020, 2, 1), 4, null));
+
+    assertEquals("""
+        "Kunde";"ec617965-88b4-4721-8158-ee36c38e4db3";
+        "Zählernummer";"X-1";
+        "Datum";"Zählerstand";"Kommentar"
+        "01.01.2020";2;
+        "01.02.2020";4;
+        """, out.toString());
+  }
+
+  @Test
+  void testRejectsReadingsWithoutCustomerAfterOthers() throws Exception {
+    Customer customer = new Customer(CUSTOMER, "Pumukel", "Kobold", Gender.M, null);
+    CSVWriter csv = new CSVWriter(new StringWriter());
+    csv.writeReading(reading(customer, "M", KindOfMeter.STROM, LocalDate.of(2018, 2, 1), 1, null));
+
+    assertThrows(IllegalStateException.class,
+        () -> csv.writeReading(reading(null, "M", KindOfMeter.STROM, LocalDate.of(2018, 3, 1), 2, null)));
+  }
+
+  @Test
+  void testWritesCustomersInImportLayout() throws Exception {
+    StringWriter out = new StringWriter();
+    CSVWriter csv = new CSVWriter(out);
+
+    csv.writeCustomerHeader();
+    csv.writeCustomer(new Customer(CUSTOMER, "Pumukel", "Kobold", Gender.M, LocalDate.of(1962, 2, 21)));
+    csv.writeCustomer(new Customer(CUSTOMER, "Antje", "Kittler, geb. Lapp", Gender.W, null));
+    csv.writeCustomer(new Customer(CUSTOMER, "Siglinde", "Konietzko", Gender.U, null));
+
+    assertEquals("""
+        UUID,Anrede,Vorname,Nachname,Geburtsdatum
+        ec617965-88b4-4721-8158-ee36c38e4db3,Herr,Pumukel,Kobold,21.02.1962
+        ec617965-88b4-4721-8158-ee36c38e4db3,Frau,Antje,Kittler; geb. Lapp,
+        ec617965-88b4-4721-8158-ee36c38e4db3,,Siglinde,Konietzko,
+        """, out.toString());
+  }
+}
@@ -0,0 +1,87 @@
+package dev.hv.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvTokenizerTest {
+
+  private static CsvTokenizer tokenize(char delimiter, String line) {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    CsvTokenizer tokenizer = new CsvTokenizer(delimiter).reset(ByteBuffer.wrap(bytes));
+    tokenizer.tokenize(0, bytes.length);
+    return tokenizer;
+  }
+
+  @Test
+  void testSplitsQuotedReadingRow() {
+    CsvTokenizer tokenizer = tokenize(';', "\"01.02.2018\";16573;\"Zählertausch: neue Nummer 786523123\"");
+
+    assertEquals(3, tokenizer.fieldCount());
+    assertEquals(LocalDate.of(2018, 2, 1), tokenizer.date(0));
+    assertEquals(16573.0, tokenizer.decimal(1));
+    assertEquals("Zählertausch: neue Nummer 786523123", tokenizer.string(2));
+    assertEquals(0, tokenizer.indexOf(2, "Zählertausch"));
+    assertEquals("786523123", tokenizer.string(2, tokenizer.encodedLength("Zählertausch: neue Nummer ")));
+  }
+
+  @Test
+  void testParsesGermanDecimals() {
+    assertEquals(5.965, tokenize(';', "01.02.2018;5,965;").decimal(1));
+    assertEquals(9.42, tokenize(';', "04.03.2019;9,42;").decimal(1));
+    assertEquals(-0.5, tokenize(';', "04.03.2019;-0,5;").decimal(1));
+    assertEquals(Double.parseDouble("12345.678901234567"), tokenize(';', "x;12345,678901234567").decimal(1));
+  }
+
+  @Test
+  void testEmptyTrailingField() {
+    CsvTokenizer tokenizer = tokenize(';', "01.02.2018;5,965;");
+
+    assertEquals(3, tokenizer.fieldCount());
+    assertTrue(tokenizer.isEmpty(2));
+    assertEquals("", tokenizer.string(2));
+  }
+
+  @Test
+  void testParsesCustomerRow() {
+    CsvTokenizer tokenizer = tokenize(',', "ec617965-88b4-4721-8158-ee36c38e4db3,Herr,Pumukel,Kobold,21.02.1962");
+
+    assertEquals(UUID.fromString("ec617965-88b4-4721-8158-ee36c38e4db3"), tokenizer.uuid(0));
+    assertTrue(tokenizer.equals(1, "Herr"));
+    assertEquals("Kobold", tokenizer.string(3));
+    assertEquals(LocalDate.of(1962, 2, 21), tokenizer.date(4));
+  }
+
+  @Test
+  void testLastFieldKeepsTheDelimiters() {
+    byte[] bytes = "01.02.2018;5,965;\"a;b\"".getBytes(StandardCharsets.UTF_8);
+    CsvTokenizer tokenizer = new CsvTokenizer(';').reset(ByteBuffer.wrap(bytes));
+
+    assertEquals(3, tokenizer.tokenize(0, bytes.length, 3));
+    assertEquals("a;b", tokenizer.string(2));
+    assertEquals(4, tokenizer.tokenize(0, bytes.length));
+  }
+
+  @Test
+  void testOutOfRangeDateDoesNotHitTheCache() {
+    byte[] bytes = "01.01.2019;01.17.2018;33.01.2018;01.01.2018".getBytes(StandardCharsets.UTF_8);
+    CsvTokenizer tokenizer = new CsvTokenizer(';').reset(ByteBuffer.wrap(bytes));
+    tokenizer.tokenize(0, bytes.length);
+
+    assertEquals(LocalDate.of(2019, 1, 1), tokenizer.date(0));
+    assertThrows(java.time.DateTimeException.class, () -> tokenizer.date(1));
+    assertEquals(LocalDate.of(2018, 1, 1), tokenizer.date(3));
+    assertThrows(java.time.DateTimeException.class, () -> tokenizer.date(2));
+  }
+
+  @Test
+  void testRejectsInvalidDate() {
+    assertThrows(IllegalArgumentException.class, () -> tokenize(';', "1.2.2018;5").date(0));
+    assertThrows(java.time.DateTimeException.class, () -> tokenize(';', "31.02.2018;5").date(0));
+  }
+}
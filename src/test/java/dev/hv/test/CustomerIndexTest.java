@@ -0,0 +1,104 @@
+package dev.hv.test;
+
+import dev.hv.dao.DbConnection;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with EXPLAIN that the searches, sort orders and pages of CustomerDao.findPage are
+ * answered from the indexes of the schema migrations instead of a full table scan.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CustomerIndexTest {
+
+    private Connection connection;
+
+    @BeforeAll
+    void setUp() throws SQLException {
+        DbConnection dbConnection = DbConnection.getInstance();
+        dbConnection.openConnection(new Properties()); // Testcontainers
+        dbConnection.removeAllTables();
+        dbConnection.createAllTables();
+        connection = dbConnection.getConnection();
+
+        try (PreparedStatement insertCustomer = connection.prepareStatement(
+                "INSERT INTO Customer (id, firstName, lastName, birthDate, gender) VALUES (?, ?, ?, ?, 'U')")) {
+            for (int c = 0; c < 5000; c++) {
+                insertCustomer.setObject(1, UUID.randomUUID());
+                insertCustomer.setString(2, "First" + (c * 7919 % 5000));
+                insertCustomer.setString(3, "Last" + (c * 104729 % 5000));
+                insertCustomer.setDate(4, Date.valueOf(LocalDate.of(1940, 1, 1).plusDays(c * 13L)));
+                insertCustomer.addBatch();
+            }
+            insertCustomer.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE Customer");
+        }
+    }
+
+    @AfterAll
+    void tearDown() {
+        DbConnection.getInstance().removeAllTables();
+        DbConnection.getInstance().closeConnection();
+    }
+
+    private String explainKey(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            assertTrue(rs.next());
+            return rs.getString("key");
+        }
+    }
+
+    @Test
+    void testNameSearchUsesIndexes() throws SQLException {
+        // The search as findPage issues it: a prefix of the last or the first name. Either
+        // both name indexes are merged or the last name index is read in order; the table
+        // itself is never scanned.
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN SELECT * FROM Customer "
+                 + "WHERE (lastName LIKE 'Last12%' ESCAPE '!' OR firstName LIKE 'Last12%' ESCAPE '!') "
+                 + "ORDER BY lastName, id LIMIT 10")) {
+            assertTrue(rs.next());
+            assertNotEquals("ALL", rs.getString("type"));
+            String key = rs.getString("key");
+            assertNotNull(key);
+            for (String index : key.split(",")) {
+                assertTrue(Set.of("idx_customer_last_name_id", "idx_customer_first_name_id").contains(index), key);
+            }
+        }
+    }
+
+    @Test
+    void testNextLastNamePageUsesIndex() throws SQLException {
+        assertEquals("idx_customer_last_name_id", explainKey(
+            "SELECT id FROM Customer WHERE (lastName > 'Last3' OR (lastName = 'Last3' AND id > '"
+                + UUID.randomUUID() + "')) ORDER BY lastName, id LIMIT 10"));
+    }
+
+    @Test
+    void testFirstNameOrderUsesIndex() throws SQLException {
+        assertEquals("idx_customer_first_name_id", explainKey(
+            "SELECT id FROM Customer ORDER BY firstName DESC, id DESC LIMIT 10"));
+    }
+
+    @Test
+    void testBirthDateRangeUsesIndex() throws SQLException {
+        assertEquals("idx_customer_birth_date_id", explainKey(
+            "SELECT id FROM Customer WHERE birthDate >= '1960-01-01' AND birthDate <= '1960-12-31' "
+                + "ORDER BY birthDate, id LIMIT 10"));
+    }
+}
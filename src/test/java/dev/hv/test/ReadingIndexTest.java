@@ -0,0 +1,114 @@
+package dev.hv.test;
+
+import dev.hv.dao.DbConnection;
+import dev.hv.dao.SchemaMigrations;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with EXPLAIN that the queries ReadingDao builds are answered from the indexes
+ * of the schema migrations instead of a full table scan.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReadingIndexTest {
+
+    private static final String[] KINDS = {"HEIZUNG", "STROM", "WASSER"};
+
+    private Connection connection;
+    private UUID customer;
+
+    @BeforeAll
+    void setUp() throws SQLException {
+        DbConnection dbConnection = DbConnection.getInstance();
+        dbConnection.openConnection(new Properties()); // Testcontainers
+        dbConnection.removeAllTables();
+        dbConnection.createAllTables();
+        connection = dbConnection.getConnection();
+
+        // Enough rows that the optimizer prefers an index over scanning the table
+        try (PreparedStatement insertCustomer = connection.prepareStatement(
+                "INSERT INTO Customer (id, firstName, lastName) VALUES (?, 'Test', 'Customer')");
+             PreparedStatement insertReading = connection.prepareStatement(
+                "INSERT INTO Reading (id, comment, customer, dateOfReading, kindOfMeter, meterCount, meterId, substitute) "
+                    + "VALUES (?, '', ?, ?, ?, ?, ?, 0)")) {
+            for (int c = 0; c < 100; c++) {
+                UUID id = UUID.randomUUID();
+                if (c == 0) {
+                    customer = id;
+                }
+                insertCustomer.setObject(1, id);
+                insertCustomer.executeUpdate();
+                for (int r = 0; r < 60; r++) {
+                    insertReading.setObject(1, UUID.randomUUID());
+                    insertReading.setObject(2, id);
+                    insertReading.setDate(3, Date.valueOf(LocalDate.of(2020, 1, 1).plusMonths(r)));
+                    insertReading.setString(4, KINDS[r % KINDS.length]);
+                    insertReading.setDouble(5, r);
+                    insertReading.setString(6, "M-" + c + "-" + (r % KINDS.length));
+                    insertReading.addBatch();
+                }
+                insertReading.executeBatch();
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE Reading");
+        }
+    }
+
+    @AfterAll
+    void tearDown() {
+        DbConnection.getInstance().removeAllTables();
+        DbConnection.getInstance().closeConnection();
+    }
+
+    private String explainKey(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            assertTrue(rs.next());
+            return rs.getString("key");
+        }
+    }
+
+    @Test
+    void testMigrationsAreRecorded() throws SQLException {
+        assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(connection));
+        assertEquals(0, SchemaMigrations.migrate(connection), "Migrations must only run once");
+    }
+
+    @Test
+    void testCustomerFilterUsesIndex() throws SQLException {
+        assertEquals("idx_reading_customer_kind_date", explainKey(
+            "SELECT id FROM Reading WHERE customer = '" + customer + "'"));
+    }
+
+    @Test
+    void testCustomerKindAndDateFilterUsesIndex() throws SQLException {
+        assertEquals("idx_reading_customer_kind_date", explainKey(
+            "SELECT id FROM Reading WHERE customer = '" + customer + "' AND kindOfMeter = 'STROM' "
+                + "AND dateOfReading >= '2021-01-01' AND dateOfReading <= '2022-12-31'"));
+    }
+
+    @Test
+    void testMeterHistoryUsesIndex() throws SQLException {
+        assertEquals("idx_reading_meter_date", explainKey(
+            "SELECT id FROM Reading WHERE meterId = 'M-0-1' ORDER BY dateOfReading"));
+    }
+
+    @Test
+    void testDateRangeUsesIndex() throws SQLException {
+        assertEquals("idx_reading_date_id", explainKey(
+            "SELECT id FROM Reading WHERE dateOfReading >= '2024-06-01' AND dateOfReading <= '2024-07-01' "
+                + "ORDER BY dateOfReading, id LIMIT 100"));
+    }
+}